@@ -1,17 +1,35 @@
 package com.acme.orderbook.rest;
 
+import com.acme.orderbook.model.ExecutionPreview;
 import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.MarketStatistics;
 import com.acme.orderbook.model.Order;
 import com.acme.orderbook.model.Statistics;
 import com.acme.orderbook.rest.model.AddExecutionParams;
 import com.acme.orderbook.rest.model.AddOrderParams;
+import com.acme.orderbook.rest.model.CreateInstrumentParams;
+import com.acme.orderbook.rest.model.ExecutionPreviewResponse;
+import com.acme.orderbook.rest.model.MarketStatisticsResponse;
+import com.acme.orderbook.rest.model.OrderResponse;
+import com.acme.orderbook.rest.model.StatisticsResponse;
 import com.acme.orderbook.service.OrderBookService;
 import com.acme.orderbook.service.PerformanceMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by robertk on 6/8/2019.
@@ -20,11 +38,17 @@ import java.util.List;
 @RequestMapping("/")
 public class AppRestController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final OrderBookService orderBookService;
+    private final ObjectMapper objectMapper;
+    private final StatisticsStream statisticsStream;
 
     @Autowired
-    public AppRestController(OrderBookService orderBookService) {
+    public AppRestController(OrderBookService orderBookService, ObjectMapper objectMapper, StatisticsStream statisticsStream) {
         this.orderBookService = orderBookService;
+        this.objectMapper = objectMapper;
+        this.statisticsStream = statisticsStream;
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "instruments")
@@ -34,6 +58,22 @@ public class AppRestController {
         return ResponseEntity.ok(instruments);
     }
 
+    @RequestMapping(method = RequestMethod.POST, value = "instruments")
+    public ResponseEntity<?> createInstrument(
+            @RequestBody CreateInstrumentParams p) {
+
+        Instrument instrument = orderBookService.createInstrument(p.getId(), p.getTickSize(), p.isOffHeap());
+        return ResponseEntity.ok(instrument);
+    }
+
+    @RequestMapping(method = RequestMethod.DELETE, value = "instruments/{instrumentId}")
+    public ResponseEntity<?> retireInstrument(
+            @PathVariable("instrumentId") long instrumentId) {
+
+        orderBookService.retireInstrument(instrumentId);
+        return ResponseEntity.ok().build();
+    }
+
     @RequestMapping(method = RequestMethod.PUT, value = "order-book/{instrumentId}/open")
     public ResponseEntity<?> openOrderBook(
             @PathVariable("instrumentId") long instrumentId) {
@@ -57,13 +97,38 @@ public class AppRestController {
         return orderBookService.isOpen(instrumentId);
     }
 
+    /**
+     * Answered asynchronously, the container thread is released while the order waits for its book.
+     */
     @RequestMapping(method = RequestMethod.POST, value = "order-book/{instrumentId}/add-order")
-    public ResponseEntity<?> addOrder(
+    public CompletableFuture<ResponseEntity<?>> addOrder(
             @PathVariable("instrumentId") long instrumentId,
             @RequestBody AddOrderParams p) {
 
-        orderBookService.addOrder(instrumentId, p.getQuantity(), p.getLimitPrice());
-        return ResponseEntity.ok().build();
+        Instrument instrument = orderBookService.getInstrument(instrumentId);
+        long limitPrice = p.getLimitPrice() != null ? toTicks(instrument, p.getLimitPrice()) : Order.MARKET_PRICE;
+
+        return okOrUnavailable(orderBookService.addOrderAsync(instrumentId, p.getQuantity(), limitPrice));
+    }
+
+    /**
+     * Adds a JSON array or newline delimited stream of orders in one batch and returns their ids in the same order.
+     */
+    @RequestMapping(method = RequestMethod.POST, value = "order-book/{instrumentId}/add-orders",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<?> addOrders(
+            @PathVariable("instrumentId") long instrumentId,
+            HttpServletRequest request) throws IOException {
+
+        OrderBatchReader reader = new OrderBatchReader(orderBookService.getInstrument(instrumentId));
+        try {
+            reader.read(objectMapper.getFactory(), request.getInputStream());
+        } catch (JsonProcessingException | IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed order batch: " + e.getMessage(), e);
+        }
+
+        long[] orderIds = orderBookService.addOrders(instrumentId, reader.getQuantities(), reader.getLimitPrices(), reader.getCount());
+        return ResponseEntity.ok(orderIds);
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "order/{orderId}")
@@ -73,19 +138,36 @@ public class AppRestController {
         Order order = orderBookService.getOrder(orderId);
 
         if (order != null) {
-            return ResponseEntity.ok(order);
+            return ResponseEntity.ok(new OrderResponse(order, orderBookService.getInstrument(order.getInstrumentId())));
         } else {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    /**
+     * Answered asynchronously, the container thread is released while the execution waits for its book.
+     */
     @RequestMapping(method = RequestMethod.POST, value = "order-book/{instrumentId}/add-execution")
-    public ResponseEntity<?> addExecution(
+    public CompletableFuture<ResponseEntity<?>> addExecution(
             @PathVariable("instrumentId") long instrumentId,
             @RequestBody AddExecutionParams p) {
 
-        orderBookService.addExecution(instrumentId, p.getQuantity(), p.getPrice());
-        return ResponseEntity.ok().build();
+        Instrument instrument = orderBookService.getInstrument(instrumentId);
+        return okOrUnavailable(orderBookService.addExecutionAsync(instrumentId, p.getQuantity(), toTicks(instrument, p.getPrice())));
+    }
+
+    /**
+     * Fills the execution would give to the book's orders and whether the book would be executed, the book is unchanged.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "order-book/{instrumentId}/preview-execution")
+    public ResponseEntity<?> previewExecution(
+            @PathVariable("instrumentId") long instrumentId,
+            @RequestParam("quantity") int quantity,
+            @RequestParam("price") double price) {
+
+        Instrument instrument = orderBookService.getInstrument(instrumentId);
+        ExecutionPreview preview = orderBookService.previewExecution(instrumentId, quantity, toTicks(instrument, price));
+        return ResponseEntity.ok(new ExecutionPreviewResponse(preview, instrument));
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "order-book/{instrumentId}/is-executed")
@@ -100,14 +182,67 @@ public class AppRestController {
             @PathVariable("instrumentId") long instrumentId) {
 
         Statistics statistics = orderBookService.generateStatistics(instrumentId);
-        return ResponseEntity.ok(statistics);
+        return ResponseEntity.ok(new StatisticsResponse(statistics, orderBookService.getInstrument(instrumentId)));
     }
 
+    /**
+     * Highest limit price at which the book's demand takes the whole supply, no content if there is none. An empty
+     * 200 when only market orders are active and take the supply, they clear at any price.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "order-book/{instrumentId}/indicative-price")
+    public ResponseEntity<?> getIndicativePrice(
+            @PathVariable("instrumentId") long instrumentId,
+            @RequestParam("supply") long supply) {
+
+        long price = orderBookService.getIndicativePrice(instrumentId, supply);
+        if (price == Order.MARKET_PRICE) {
+            return ResponseEntity.ok().build();
+        } else if (price != 0) {
+            return ResponseEntity.ok(orderBookService.getInstrument(instrumentId).toPrice(price));
+        } else {
+            return ResponseEntity.noContent().build();
+        }
+    }
+
+    /**
+     * Statistics of the given instruments or of all of them, with their totals.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "statistics")
+    public ResponseEntity<?> getMarketStatistics(
+            @RequestParam(value = "instrumentIds", required = false) List<Long> instrumentIds) {
+
+        MarketStatistics statistics = orderBookService.generateMarketStatistics(instrumentIds);
+        return ResponseEntity.ok(new MarketStatisticsResponse(statistics, orderBookService));
+    }
+
+    /**
+     * Server sent events with the statistics deltas of the book, at most maxRate events per second.
+     */
+    @RequestMapping(method = RequestMethod.GET, value = "order-book/{instrumentId}/statistics/stream",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderBookStatistics(
+            @PathVariable("instrumentId") long instrumentId,
+            @RequestParam(value = "maxRate", defaultValue = "10") double maxRate) {
+
+        return statisticsStream.subscribe(instrumentId, maxRate);
+    }
+
+    /**
+     * Latencies since startup, or with interval since the reader's previous interval request.
+     */
     @RequestMapping(method = RequestMethod.GET, value = "application/performance-metrics")
-    public ResponseEntity<?> getApplicationPerformanceMetrics() {
+    public ResponseEntity<?> getApplicationPerformanceMetrics(
+            @RequestParam(value = "interval", defaultValue = "false") boolean interval,
+            @RequestParam(value = "reader", defaultValue = "default") String reader) {
 
         PerformanceMetrics performanceMetrics = orderBookService.getPerformanceMetrics();
-        return ResponseEntity.ok(performanceMetrics);
+        return ResponseEntity.ok(interval ? performanceMetrics.intervalReport(reader) : performanceMetrics.report());
+    }
+
+    @RequestMapping(method = RequestMethod.PUT, value = "application/snapshot")
+    public ResponseEntity<?> writeSnapshot() {
+
+        return ResponseEntity.ok(orderBookService.writeSnapshot().toString());
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "test/graceful-shutdown")
@@ -119,4 +254,34 @@ public class AppRestController {
         }
         return "Process finished";
     }
+
+    /**
+     * 400 with the instrument's message for a price off the tick grid.
+     */
+    static long toTicks(Instrument instrument, double price) {
+        try {
+            return instrument.toTicks(price);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 503 when the book has too many pending commands, other failures are handled like those of synchronous calls.
+     */
+    private static CompletableFuture<ResponseEntity<?>> okOrUnavailable(CompletableFuture<?> future) {
+        CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        future.whenComplete((result, t) -> {
+            Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (cause == null) {
+                response.complete(ResponseEntity.ok().build());
+            } else if (cause instanceof RejectedExecutionException) {
+                response.complete(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build());
+            } else {
+                response.completeExceptionally(cause); // unwrapped, so the error response shows the book's message
+            }
+        });
+        return response;
+    }
 }
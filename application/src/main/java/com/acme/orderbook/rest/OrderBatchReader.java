@@ -0,0 +1,95 @@
+package com.acme.orderbook.rest;
+
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.Order;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streams a batch of orders from a request body into primitive arrays, prices are converted to ticks on the way. The
+ * body is either a JSON array of orders or newline delimited orders, every order an object with the quantity and an
+ * optional limitPrice like the single order endpoint takes. The body is parsed token by token, so no intermediate
+ * objects are created per order. Malformed JSON surfaces as a JsonProcessingException, a body that is not a batch of
+ * orders as an IllegalStateException.
+ */
+class OrderBatchReader {
+
+    private final Instrument instrument;
+
+    private int[] quantities = new int[1024];
+    private long[] limitPrices = new long[1024];
+    private int count;
+
+    OrderBatchReader(Instrument instrument) {
+        this.instrument = instrument;
+    }
+
+    void read(JsonFactory jsonFactory, InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    readOrder(parser, token);
+                }
+            } else {
+                // newline delimited, a sequence of root level objects
+                while (token != null) {
+                    readOrder(parser, token);
+                    token = parser.nextToken();
+                }
+            }
+        }
+    }
+
+    int[] getQuantities() {
+        return quantities;
+    }
+
+    long[] getLimitPrices() {
+        return limitPrices;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    private void readOrder(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalStateException("order " + count + " is not an object, " + token);
+        }
+        int quantity = 0;
+        long limitPrice = Order.MARKET_PRICE;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("quantity".equals(field)) {
+                quantity = parser.getIntValue();
+            } else if ("limitPrice".equals(field)) {
+                if (value != JsonToken.VALUE_NULL) {
+                    limitPrice = AppRestController.toTicks(instrument, parser.getDoubleValue());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        add(quantity, limitPrice);
+    }
+
+    private void add(int quantity, long limitPrice) {
+        if (count == quantities.length) {
+            quantities = Arrays.copyOf(quantities, count * 2);
+            limitPrices = Arrays.copyOf(limitPrices, count * 2);
+        }
+        quantities[count] = quantity;
+        limitPrices[count] = limitPrice;
+        count++;
+    }
+}
@@ -0,0 +1,252 @@
+package com.acme.orderbook.rest;
+
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.model.StatisticsDelta;
+import com.acme.orderbook.rest.model.StatisticsDeltaResponse;
+import com.acme.orderbook.service.OrderBookService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes statistics deltas of the books to server sent event subscribers. Every poll interval the books with
+ * subscribers are checked for changes by their version, a changed book's statistics are generated and diffed once
+ * and the delta is handed to all its subscribers. A subscriber is sent at most maxRate events per second, deltas
+ * arriving in between are conflated into one. Subscribers start with a full snapshot. When the instrument is retired
+ * its subscribers are completed, a failing channel does not hold up the others.
+ *
+ * The events are written to the clients by a pool of senderThreads, a subscriber has at most one send in flight and
+ * the deltas arriving meanwhile are conflated as well, so a slow client neither holds up the polling nor piles up
+ * events.
+ */
+@Component
+public class StatisticsStream {
+    private static final Logger log = LoggerFactory.getLogger(StatisticsStream.class);
+
+    private final OrderBookService orderBookService;
+    private final ObjectMapper objectMapper;
+    private final long pollMillis;
+    private final long timeoutMillis;
+    private final int senderThreads;
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>(); // instrumentId -> channel
+    private ScheduledExecutorService scheduler;
+    private ExecutorService senders;
+
+    @Autowired
+    public StatisticsStream(OrderBookService orderBookService, ObjectMapper objectMapper,
+                            @Value("${statistics.stream.pollMillis:10}") long pollMillis,
+                            @Value("${statistics.stream.timeoutMillis:0}") long timeoutMillis,
+                            @Value("${statistics.stream.senderThreads:4}") int senderThreads) {
+        this.orderBookService = orderBookService;
+        this.objectMapper = objectMapper;
+        this.pollMillis = pollMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.senderThreads = senderThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "orderbook-statistics-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger senderCount = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread thread = new Thread(r, "orderbook-statistics-sender-" + senderCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publish, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+        channels.values().forEach(Channel::complete);
+    }
+
+    public SseEmitter subscribe(long instrumentId, double maxRate) {
+        if (maxRate <= 0) {
+            throw new IllegalStateException("max rate must be greater than 0");
+        }
+        Instrument instrument = orderBookService.getInstrument(instrumentId);
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, (long) (1_000_000_000L / maxRate));
+
+        // joined within the map's update, so a channel closed concurrently never takes on the subscriber
+        channels.compute(instrumentId, (id, current) -> {
+            Channel channel = current;
+            if (channel == null || channel.instrument != instrument) {
+                if (channel != null) {
+                    channel.complete(); // of the retired instrument
+                }
+                channel = new Channel(instrument);
+            }
+            List<Subscriber> subscribers = channel.subscribers;
+            subscribers.add(subscriber);
+            emitter.onCompletion(() -> subscribers.remove(subscriber));
+            emitter.onTimeout(() -> subscribers.remove(subscriber));
+            return channel;
+        });
+        return emitter;
+    }
+
+    private void publish() {
+        long now = System.nanoTime();
+        channels.values().forEach(channel -> {
+            try {
+                if (channel.isRetired()) {
+                    close(channel);
+                } else {
+                    channel.publish(now);
+                }
+            } catch (RuntimeException e) {
+                if (channel.isRetired()) {
+                    close(channel); // retired while publishing
+                } else {
+                    log.error("statistics stream of instrument " + channel.instrument.getId() + " failed", e);
+                }
+            }
+        });
+    }
+
+    private void close(Channel channel) {
+        channels.remove(channel.instrument.getId(), channel); // subscribers join within the map's update, so all are completed below
+        channel.complete();
+        log.info("closed statistics stream of retired instrument " + channel.instrument.getId());
+    }
+
+    private class Channel {
+        private final Instrument instrument;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+        private long version = -1;
+        private Statistics statistics;
+
+        // serialized deltas of this round, subscribers sharing a delta share the serialization
+        private final Map<StatisticsDelta, String> serialized = new IdentityHashMap<>();
+
+        Channel(Instrument instrument) {
+            this.instrument = instrument;
+        }
+
+        boolean isRetired() {
+            return orderBookService.findInstrument(instrument.getId()) != instrument;
+        }
+
+        void complete() {
+            subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+
+        void publish(long now) {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            long instrumentId = instrument.getId();
+            StatisticsDelta delta = null;
+
+            long currentVersion = orderBookService.getVersion(instrumentId);
+            if (currentVersion != version) {
+                Statistics current = orderBookService.generateStatistics(instrumentId);
+                delta = statistics != null ? StatisticsDelta.between(statistics, current) : null;
+
+                version = currentVersion;
+                statistics = current;
+            }
+            StatisticsDelta snapshot = null;
+
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.pending == null && !subscriber.subscribed) {
+                    if (snapshot == null) {
+                        snapshot = StatisticsDelta.between(null, statistics);
+                    }
+                    subscriber.pending = snapshot;
+                    subscriber.subscribed = true;
+
+                } else if (delta != null && !delta.isEmpty()) {
+                    subscriber.pending = subscriber.pending != null ? subscriber.pending.merge(delta) : delta;
+                }
+
+                if (subscriber.pending != null && now >= subscriber.nextSendTime && subscriber.sending.compareAndSet(false, true)) {
+                    send(subscriber, subscriber.pending);
+                    subscriber.pending = null;
+                    subscriber.nextSendTime = now + subscriber.minIntervalNanos;
+                }
+            }
+            serialized.clear();
+        }
+
+        /**
+         * Serializes the delta on the polling thread and writes it on a sender thread, the subscriber's send flag is
+         * already taken and is released once the write is done.
+         */
+        private void send(Subscriber subscriber, StatisticsDelta delta) {
+            String json;
+            try {
+                json = serialized.computeIfAbsent(delta, d -> {
+                    try {
+                        return objectMapper.writeValueAsString(new StatisticsDeltaResponse(d, instrument));
+                    } catch (JsonProcessingException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                senders.execute(() -> {
+                    try {
+                        subscriber.emitter.send(SseEmitter.event().name("statistics").data(json, MediaType.APPLICATION_JSON));
+                    } catch (IOException | IllegalStateException e) {
+                        subscribers.remove(subscriber); // client gone
+                    } finally {
+                        subscriber.sending.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                subscriber.sending.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final long minIntervalNanos;
+
+        // only touched by the publishing thread
+        private boolean subscribed;
+        private StatisticsDelta pending;
+        private long nextSendTime;
+
+        private final AtomicBoolean sending = new AtomicBoolean(); // a send is in flight on a sender thread
+
+        Subscriber(SseEmitter emitter, long minIntervalNanos) {
+            this.emitter = emitter;
+            this.minIntervalNanos = minIntervalNanos;
+        }
+    }
+}
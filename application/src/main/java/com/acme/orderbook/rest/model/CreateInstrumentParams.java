@@ -0,0 +1,19 @@
+package com.acme.orderbook.rest.model;
+
+public class CreateInstrumentParams {
+    private long id;
+    private double tickSize;
+    private boolean offHeap;
+
+    public long getId() {
+        return id;
+    }
+
+    public double getTickSize() {
+        return tickSize;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+}
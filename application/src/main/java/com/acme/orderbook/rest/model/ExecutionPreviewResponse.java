@@ -0,0 +1,74 @@
+package com.acme.orderbook.rest.model;
+
+import com.acme.orderbook.model.ExecutionPreview;
+import com.acme.orderbook.model.Instrument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Execution preview with the price converted from ticks.
+ */
+public class ExecutionPreviewResponse {
+
+    private final long instrumentId;
+    private final int quantity;
+    private final double price;
+    private final long filledQuantity;
+    private final boolean executed;
+    private final List<Fill> fills = new ArrayList<>();
+
+    public ExecutionPreviewResponse(ExecutionPreview preview, Instrument instrument) {
+        instrumentId = preview.getExecution().getInstrumentId();
+        quantity = preview.getExecution().getQuantity();
+        price = instrument.toPrice(preview.getExecution().getPrice());
+        filledQuantity = preview.getFilledQuantity();
+        executed = preview.isExecuted();
+
+        for (int i = 0; i < preview.getFillCount(); i++) {
+            fills.add(new Fill(preview.getOrderId(i), preview.getFillQuantity(i)));
+        }
+    }
+
+    public long getInstrumentId() {
+        return instrumentId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public List<Fill> getFills() {
+        return fills;
+    }
+
+    public static class Fill {
+        private final long orderId;
+        private final int quantity;
+
+        Fill(long orderId, int quantity) {
+            this.orderId = orderId;
+            this.quantity = quantity;
+        }
+
+        public long getOrderId() {
+            return orderId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
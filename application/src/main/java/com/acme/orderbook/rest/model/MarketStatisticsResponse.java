@@ -0,0 +1,98 @@
+package com.acme.orderbook.rest.model;
+
+import com.acme.orderbook.model.MarketStatistics;
+import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.service.OrderBookService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Totals over many books followed by the statistics of every book with the book version they were taken at.
+ */
+public class MarketStatisticsResponse {
+
+    private final MarketStatistics statistics;
+    private final List<Entry> instruments = new ArrayList<>();
+
+    public MarketStatisticsResponse(MarketStatistics statistics, OrderBookService orderBookService) {
+        this.statistics = statistics;
+
+        for (int i = 0; i < statistics.getInstrumentCount(); i++) {
+            Statistics s = statistics.getInstruments().get(i);
+            instruments.add(new Entry(statistics.getVersion(i), new StatisticsResponse(s, orderBookService.getInstrument(s.getInstrumentId()))));
+        }
+    }
+
+    public int getInstrumentCount() {
+        return statistics.getInstrumentCount();
+    }
+
+    public long getActiveOrders() {
+        return statistics.getActiveOrders();
+    }
+
+    public long getExecutedOrders() {
+        return statistics.getExecutedOrders();
+    }
+
+    public long getCanceledOrders() {
+        return statistics.getCanceledOrders();
+    }
+
+    public long getActiveValidOrders() {
+        return statistics.getActiveValidOrders();
+    }
+
+    public long getActiveInvalidOrders() {
+        return statistics.getActiveInvalidOrders();
+    }
+
+    public long getActiveValidOrdersDemand() {
+        return statistics.getActiveValidOrdersDemand();
+    }
+
+    public long getActiveInvalidOrdersDemand() {
+        return statistics.getActiveInvalidOrdersDemand();
+    }
+
+    public int getLargestActiveOrderQuantity() {
+        return statistics.getLargestActiveOrderQuantity();
+    }
+
+    public int getSmallestActiveOrderQuantity() {
+        return statistics.getSmallestActiveOrderQuantity();
+    }
+
+    public LocalDateTime getFirstActiveOrderEntry() {
+        return statistics.getFirstActiveOrderEntry();
+    }
+
+    public LocalDateTime getLastActiveOrderEntry() {
+        return statistics.getLastActiveOrderEntry();
+    }
+
+    public List<Entry> getInstruments() {
+        return instruments;
+    }
+
+    public static class Entry {
+
+        private final long version;
+        private final StatisticsResponse statistics;
+
+        Entry(long version, StatisticsResponse statistics) {
+            this.version = version;
+            this.statistics = statistics;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public StatisticsResponse getStatistics() {
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.acme.orderbook.rest.model;
+
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order with prices converted from ticks.
+ */
+public class OrderResponse {
+
+    private final long instrumentId;
+    private final long orderId;
+    private final LocalDateTime entryDate;
+    private final int quantity;
+    private final Double limitPrice;
+    private final int executedQuantity;
+    private final boolean executed;
+    private final LocalDateTime executionDate;
+    private final List<PartialExecution> partialExecutions = new ArrayList<>();
+
+    public OrderResponse(Order order, Instrument instrument) {
+        instrumentId = order.getInstrumentId();
+        orderId = order.getOrderId();
+        entryDate = order.getEntryDate();
+        quantity = order.getQuantity();
+        limitPrice = order.isLimitOrder() ? instrument.toPrice(order.getLimitPrice()) : null;
+        executedQuantity = order.getExecutedQuantity();
+        executed = order.isExecuted();
+        executionDate = order.getExecutionDate();
+
+        for (OrderPartialExecution pe : order.getPartialExecutions()) {
+            partialExecutions.add(new PartialExecution(pe.getQuantity(), instrument.toPrice(pe.getPrice())));
+        }
+    }
+
+    public long getInstrumentId() {
+        return instrumentId;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public LocalDateTime getEntryDate() {
+        return entryDate;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Double getLimitPrice() {
+        return limitPrice;
+    }
+
+    public boolean isLimitOrder() {
+        return limitPrice != null;
+    }
+
+    public int getExecutedQuantity() {
+        return executedQuantity;
+    }
+
+    public int getUnexecutedQuantity() {
+        return quantity - executedQuantity;
+    }
+
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public LocalDateTime getExecutionDate() {
+        return executionDate;
+    }
+
+    public List<PartialExecution> getPartialExecutions() {
+        return partialExecutions;
+    }
+
+    public static class PartialExecution {
+        private final int quantity;
+        private final double price;
+
+        PartialExecution(int quantity, double price) {
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+    }
+}
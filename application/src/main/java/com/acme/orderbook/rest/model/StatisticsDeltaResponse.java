@@ -0,0 +1,43 @@
+package com.acme.orderbook.rest.model;
+
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.StatisticsDelta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics delta with prices converted from ticks.
+ */
+public class StatisticsDeltaResponse {
+
+    private final StatisticsDelta delta;
+    private final Map<String, Object> counters = new LinkedHashMap<>();
+    private final Map<Double, Integer> activeOrderLimitBreakDownTable = new TreeMap<>();
+
+    public StatisticsDeltaResponse(StatisticsDelta delta, Instrument instrument) {
+        this.delta = delta;
+
+        counters.putAll(delta.getCounters());
+        counters.computeIfPresent("lastExecutionPrice", (k, ticks) -> instrument.toPrice((Long) ticks));
+
+        delta.getLimitDemands().forEach((ticks, demand) -> activeOrderLimitBreakDownTable.put(instrument.toPrice(ticks), demand));
+    }
+
+    public long getInstrumentId() {
+        return delta.getInstrumentId();
+    }
+
+    public boolean isSnapshot() {
+        return delta.isSnapshot();
+    }
+
+    public Map<String, Object> getCounters() {
+        return counters;
+    }
+
+    public Map<Double, Integer> getActiveOrderLimitBreakDownTable() {
+        return activeOrderLimitBreakDownTable;
+    }
+}
@@ -0,0 +1,97 @@
+package com.acme.orderbook.rest.model;
+
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.model.Statistics;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics with prices converted from ticks.
+ */
+public class StatisticsResponse {
+
+    private final Statistics statistics;
+    private final double lastExecutionPrice;
+    private final Map<Double, Integer> activeOrderLimitBreakDownTable = new TreeMap<>();
+    private final Map<Double, Long> demandCurve = new TreeMap<>(); // valid demand by limit price
+
+    public StatisticsResponse(Statistics statistics, Instrument instrument) {
+        this.statistics = statistics;
+        this.lastExecutionPrice = instrument.toPrice(statistics.getLastExecutionPrice());
+
+        long[] limitPrices = statistics.getActiveOrderLimitPrices();
+        int[] limitDemands = statistics.getActiveOrderLimitDemands();
+        long[] validDemands = statistics.getActiveOrderValidDemands();
+
+        for (int i = 0; i < limitPrices.length; i++) {
+            activeOrderLimitBreakDownTable.put(instrument.toPrice(limitPrices[i]), limitDemands[i]);
+            demandCurve.put(instrument.toPrice(limitPrices[i]), validDemands[i]);
+        }
+    }
+
+    public long getInstrumentId() {
+        return statistics.getInstrumentId();
+    }
+
+    public int getActiveOrders() {
+        return statistics.getActiveOrders();
+    }
+
+    public int getExecutedOrders() {
+        return statistics.getExecutedOrders();
+    }
+
+    public int getCanceledOrders() {
+        return statistics.getCanceledOrders();
+    }
+
+    public int getActiveValidOrders() {
+        return statistics.getActiveValidOrders();
+    }
+
+    public int getActiveInvalidOrders() {
+        return statistics.getActiveInvalidOrders();
+    }
+
+    public double getLastExecutionPrice() {
+        return lastExecutionPrice;
+    }
+
+    public int getActiveValidOrdersDemand() {
+        return statistics.getActiveValidOrdersDemand();
+    }
+
+    public int getActiveInvalidOrdersDemand() {
+        return statistics.getActiveInvalidOrdersDemand();
+    }
+
+    public int getLargestActiveOrderQuantity() {
+        return statistics.getLargestActiveOrderQuantity();
+    }
+
+    public int getSmallestActiveOrderQuantity() {
+        return statistics.getSmallestActiveOrderQuantity();
+    }
+
+    public LocalDateTime getFirstActiveOrderEntry() {
+        return statistics.getFirstActiveOrderEntry();
+    }
+
+    public LocalDateTime getLastActiveOrderEntry() {
+        return statistics.getLastActiveOrderEntry();
+    }
+
+    public Map<Double, Integer> getActiveOrderLimitBreakDownTable() {
+        return activeOrderLimitBreakDownTable;
+    }
+
+    public long getActiveMarketOrdersDemand() {
+        return statistics.getActiveMarketOrdersDemand();
+    }
+
+    public Map<Double, Long> getDemandCurve() {
+        return demandCurve;
+    }
+}
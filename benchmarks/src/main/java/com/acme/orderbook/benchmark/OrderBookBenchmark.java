@@ -0,0 +1,99 @@
+package com.acme.orderbook.benchmark;
+
+import com.acme.orderbook.book.OrderBook;
+import com.acme.orderbook.book.OrderBookImpl;
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.Statistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single book operations at different book sizes. Orders are limit orders spread over 100 price levels, validFraction
+ * is the share of the levels at or above the execution price. Books are rebuilt for every iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class OrderBookBenchmark {
+
+    static final long INSTRUMENT_ID = 1;
+    static final int PRICE_LEVELS = 100;
+    static final long LOWEST_PRICE = 10_000; // ticks
+
+    @State(Scope.Thread)
+    public static abstract class AbstractBookState {
+
+        @Param({"1000", "100000", "1000000"})
+        int bookSize;
+
+        @Param({"0.1", "0.5", "0.9"})
+        double validFraction;
+
+        OrderBook orderBook;
+        long executionPrice;
+        int executionQuantity;
+        long nextOrderId;
+        Random random;
+
+        void build() {
+            random = new Random(42);
+            orderBook = new OrderBookImpl(INSTRUMENT_ID);
+            executionPrice = LOWEST_PRICE + Math.round(PRICE_LEVELS * (1d - validFraction));
+            // large orders so the book is not executed before the iteration ends
+            executionQuantity = bookSize;
+
+            for (nextOrderId = 1; nextOrderId <= bookSize; nextOrderId++) {
+                orderBook.addOrder(newOrder(1_000_000));
+            }
+        }
+
+        Order newOrder(int quantity) {
+            long limitPrice = LOWEST_PRICE + random.nextInt(PRICE_LEVELS);
+            return new Order(INSTRUMENT_ID, nextOrderId++, LocalDateTime.now(), quantity, limitPrice);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BookState extends AbstractBookState {
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            build();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClosedBookState extends AbstractBookState {
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            build();
+            orderBook.close();
+            // one execution so statistics include the valid/invalid split
+            orderBook.addExecution(new Execution(INSTRUMENT_ID, executionQuantity, executionPrice));
+        }
+    }
+
+    @Benchmark
+    public OrderBook addOrder(BookState state) {
+        state.orderBook.addOrder(state.newOrder(1 + state.random.nextInt(1000)));
+        return state.orderBook;
+    }
+
+    @Benchmark
+    public OrderBook addExecution(ClosedBookState state) {
+        state.orderBook.addExecution(new Execution(INSTRUMENT_ID, state.executionQuantity, state.executionPrice));
+        return state.orderBook;
+    }
+
+    @Benchmark
+    public Statistics generateStatistics(ClosedBookState state) {
+        return state.orderBook.generateStatistics();
+    }
+}
@@ -0,0 +1,142 @@
+package com.acme.orderbook.benchmark;
+
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.service.OrderBookService;
+import com.acme.orderbook.service.PerformanceMetrics;
+import com.acme.orderbook.store.TieredOrderStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End to end service calls. The multi threaded variants either share one instrument across all threads or give every
+ * thread its own instrument, which shows how much the shared state costs. With sequencerWorkers above 0 the books are
+ * driven by the sequencer's worker threads instead of the calling threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class OrderBookServiceBenchmark {
+
+    static final int INSTRUMENTS = 8;
+    static final long LOWEST_PRICE = 10_000; // ticks
+
+    public static abstract class AbstractServiceState {
+
+        OrderBookService orderBookService;
+
+        void build(int sequencerWorkers) {
+            StringBuilder instrumentIds = new StringBuilder();
+            for (int i = 1; i <= INSTRUMENTS; i++) {
+                instrumentIds.append(i > 1 ? "," : "").append(i);
+            }
+            orderBookService = new OrderBookService(new PerformanceMetrics(), new TieredOrderStore(), instrumentIds.toString(), "", 0.01, Integer.MAX_VALUE, 64, sequencerWorkers, 65536, 4, 1024, "", Journal.SyncPolicy.NONE, 0, "");
+
+            for (long instrumentId = 1; instrumentId <= INSTRUMENTS; instrumentId++) {
+                for (int i = 0; i < 10_000; i++) {
+                    orderBookService.addOrder(instrumentId, 100, LOWEST_PRICE + i % 100);
+                }
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            orderBookService.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ServiceState extends AbstractServiceState {
+
+        @Param({"0", "4"})
+        int sequencerWorkers;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            build(sequencerWorkers);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ClosedServiceState extends AbstractServiceState {
+
+        @Param({"0", "4"})
+        int sequencerWorkers;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            build(sequencerWorkers);
+            // large orders so the books are not executed before the iteration ends
+            for (long instrumentId = 1; instrumentId <= INSTRUMENTS; instrumentId++) {
+                for (int i = 0; i < 10_000; i++) {
+                    orderBookService.addOrder(instrumentId, 1_000_000, LOWEST_PRICE + i % 100);
+                }
+                orderBookService.close(instrumentId);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private static final AtomicInteger threadCounter = new AtomicInteger();
+
+        long ownInstrumentId;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ownInstrumentId = 1 + threadCounter.getAndIncrement() % INSTRUMENTS;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addOrder(ServiceState state) {
+        addOrder(state, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addOrderSharedInstrument4Threads(ServiceState state) {
+        addOrder(state, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addOrderOwnInstrument4Threads(ServiceState state, ThreadState threadState) {
+        addOrder(state, threadState.ownInstrumentId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Statistics generateStatistics(ServiceState state) {
+        return state.orderBookService.generateStatistics(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Statistics generateStatistics4Threads(ServiceState state, ThreadState threadState) {
+        return state.orderBookService.generateStatistics(threadState.ownInstrumentId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addExecution(ClosedServiceState state) {
+        state.orderBookService.addExecution(1, 1_000, LOWEST_PRICE + 50);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addExecutionOwnInstrument4Threads(ClosedServiceState state, ThreadState threadState) {
+        state.orderBookService.addExecution(threadState.ownInstrumentId, 1_000, LOWEST_PRICE + 50);
+    }
+
+    private void addOrder(AbstractServiceState state, long instrumentId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        state.orderBookService.addOrder(instrumentId, 1 + random.nextInt(1000), LOWEST_PRICE + random.nextInt(100));
+    }
+}
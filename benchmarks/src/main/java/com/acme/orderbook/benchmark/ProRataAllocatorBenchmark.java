@@ -0,0 +1,51 @@
+package com.acme.orderbook.benchmark;
+
+import com.acme.orderbook.book.ProRataAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with -prof gc to check the allocation rate, which should stay at zero bytes per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProRataAllocatorBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int validOrders;
+
+    @Param({"0.1", "0.9"})
+    private double executedFraction; // execution quantity relative to the cumulative demand
+
+    private ProRataAllocator allocator;
+    private int[] demands;
+    private int quantity;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        allocator = new ProRataAllocator(validOrders);
+
+        demands = new int[validOrders];
+        long cumulativeDemand = 0;
+        for (int i = 0; i < validOrders; i++) {
+            demands[i] = 1 + random.nextInt(1000);
+            cumulativeDemand += demands[i];
+        }
+        quantity = (int) Math.min(Integer.MAX_VALUE, (long) (cumulativeDemand * executedFraction));
+    }
+
+    @Benchmark
+    public int allocate() {
+        int[] buffer = allocator.demands(validOrders);
+        System.arraycopy(demands, 0, buffer, 0, validOrders);
+
+        return allocator.allocate(validOrders, quantity)[validOrders - 1];
+    }
+}
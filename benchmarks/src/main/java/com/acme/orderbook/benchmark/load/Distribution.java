@@ -0,0 +1,37 @@
+package com.acme.orderbook.benchmark.load;
+
+import java.util.Random;
+
+/**
+ * Distribution of order sizes and prices, given as fixed:value, uniform:min:max, normal:mean:stddev or
+ * exponential:mean.
+ */
+interface Distribution {
+
+    long sample(Random random);
+
+    static Distribution parse(String spec) {
+        String[] p = spec.split(":");
+        try {
+            switch (p[0]) {
+                case "fixed":
+                    long value = Long.parseLong(p[1]);
+                    return random -> value;
+                case "uniform":
+                    long min = Long.parseLong(p[1]);
+                    long range = Long.parseLong(p[2]) - min + 1;
+                    return random -> min + (long) (random.nextDouble() * range);
+                case "normal":
+                    double mean = Double.parseDouble(p[1]);
+                    double stddev = Double.parseDouble(p[2]);
+                    return random -> Math.round(mean + random.nextGaussian() * stddev);
+                case "exponential":
+                    double expMean = Double.parseDouble(p[1]);
+                    return random -> Math.round(-expMean * Math.log(1d - random.nextDouble()));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("invalid distribution " + spec, e);
+        }
+        throw new IllegalStateException("unknown distribution " + spec);
+    }
+}
@@ -0,0 +1,49 @@
+package com.acme.orderbook.benchmark.load;
+
+/**
+ * One command sent to the service under load. Prices are in ticks of the instrument.
+ */
+final class LoadCommand {
+
+    enum Type {
+        CREATE_INSTRUMENT, RETIRE_INSTRUMENT, OPEN, CLOSE, ADD_ORDER, ADD_EXECUTION
+    }
+
+    final Type type;
+    final long instrumentId;
+    final int quantity;
+    final long price; // Order.MARKET_PRICE for market orders
+    final double tickSize; // for CREATE_INSTRUMENT
+
+    private LoadCommand(Type type, long instrumentId, int quantity, long price, double tickSize) {
+        this.type = type;
+        this.instrumentId = instrumentId;
+        this.quantity = quantity;
+        this.price = price;
+        this.tickSize = tickSize;
+    }
+
+    static LoadCommand createInstrument(long instrumentId, double tickSize) {
+        return new LoadCommand(Type.CREATE_INSTRUMENT, instrumentId, 0, 0, tickSize);
+    }
+
+    static LoadCommand retireInstrument(long instrumentId) {
+        return new LoadCommand(Type.RETIRE_INSTRUMENT, instrumentId, 0, 0, 0);
+    }
+
+    static LoadCommand open(long instrumentId) {
+        return new LoadCommand(Type.OPEN, instrumentId, 0, 0, 0);
+    }
+
+    static LoadCommand close(long instrumentId) {
+        return new LoadCommand(Type.CLOSE, instrumentId, 0, 0, 0);
+    }
+
+    static LoadCommand addOrder(long instrumentId, int quantity, long limitPrice) {
+        return new LoadCommand(Type.ADD_ORDER, instrumentId, quantity, limitPrice, 0);
+    }
+
+    static LoadCommand addExecution(long instrumentId, int quantity, long price) {
+        return new LoadCommand(Type.ADD_EXECUTION, instrumentId, quantity, price, 0);
+    }
+}
@@ -0,0 +1,277 @@
+package com.acme.orderbook.benchmark.load;
+
+import com.acme.orderbook.common.LatencyHistogram;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load generator for the order book service, in process or over the REST API. Every driver thread sends
+ * its commands on a fixed schedule derived from the target rate and the latency of a command is measured from the
+ * time it was scheduled to be sent, not from the time it actually was sent. A stall of the service therefore shows
+ * up in the latency of every command that should have been sent during the stall instead of only in the one command
+ * that hit it (coordinated omission), the service time from the actual send is reported next to it. Without a target
+ * rate the drivers send as fast as the service takes the commands and both latencies are the same.
+ *
+ * Usage: java -cp benchmarks.jar com.acme.orderbook.benchmark.load.LoadGenerator [--option=value ...]
+ *
+ * --target=service|http://host:port/  in process service (default) or a running application
+ * --rate=10000                        commands per second over all threads, 0 for as fast as possible
+ * --threads=4 --duration=30 --warmup=5 --reportInterval=1 (seconds)
+ * --instruments=16 --firstInstrumentId=1 --tickSize=0.01 --offHeap=false
+ * --ordersPerCycle=1000 --orderSize=uniform:1:100 --limitPrice=normal:10000:20 --marketOrderRatio=0.05
+ * --executionSize=uniform:100:2000 --executionPrice=normal:10000:20 (prices in ticks)
+ * --replay=journalDir                 replays the recorded commands of a journal instead of the synthetic flow
+ * --sequencerWorkers=0 --parallelThreshold=1000000 --seed=1 (in process service)
+ */
+public class LoadGenerator {
+
+    private final LoadTarget target;
+    private final List<? extends Workload> workloads;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long reportIntervalNanos;
+
+    private final LatencyHistogram[] latencies = newHistograms(); // from the scheduled send, by command type
+    private final LatencyHistogram[] serviceTimes = newHistograms(); // from the actual send, by command type
+    private final LatencyHistogram intervalLatencies = new LatencyHistogram();
+    private final LongAdder[] errors = new LongAdder[LoadCommand.Type.values().length];
+    private final LongAdder completed = new LongAdder(); // after the warmup
+    private final LongAdder sent = new LongAdder();
+
+    private volatile long measureStart;
+    private volatile long deadline;
+
+    private LoadGenerator(LoadTarget target, List<? extends Workload> workloads, double rate, long warmupNanos, long durationNanos, long reportIntervalNanos) {
+        this.target = target;
+        this.workloads = workloads;
+        this.rate = rate;
+        this.warmupNanos = warmupNanos;
+        this.durationNanos = durationNanos;
+        this.reportIntervalNanos = reportIntervalNanos;
+
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalStateException("invalid argument " + arg + ", expected --option=value");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        String targetName = options.getOrDefault("target", "service");
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        double tickSize = Double.parseDouble(options.getOrDefault("tickSize", "0.01"));
+        boolean offHeap = Boolean.parseBoolean(options.getOrDefault("offHeap", "false"));
+        long firstInstrumentId = Long.parseLong(options.getOrDefault("firstInstrumentId", "1"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        String replay = options.get("replay");
+
+        LoadTarget target = targetName.equals("service") ?
+                new ServiceLoadTarget(firstInstrumentId, tickSize, offHeap, Integer.parseInt(options.getOrDefault("sequencerWorkers", "0")),
+                        Integer.parseInt(options.getOrDefault("parallelThreshold", "1000000"))) :
+                new RestLoadTarget(targetName, offHeap);
+
+        List<? extends Workload> workloads;
+        if (replay != null) {
+            List<ReplayWorkload> replayWorkloads = ReplayWorkload.load(Paths.get(replay), threads, tickSize);
+            System.out.println("replaying " + replayWorkloads.stream().mapToInt(ReplayWorkload::size).sum() + " commands from " + replay);
+            workloads = replayWorkloads;
+        } else {
+            SyntheticWorkload.Settings settings = new SyntheticWorkload.Settings();
+            settings.tickSize = tickSize;
+            settings.ordersPerCycle = Integer.parseInt(options.getOrDefault("ordersPerCycle", "1000"));
+            settings.orderSize = Distribution.parse(options.getOrDefault("orderSize", "uniform:1:100"));
+            settings.limitPrice = Distribution.parse(options.getOrDefault("limitPrice", "normal:10000:20"));
+            settings.marketOrderRatio = Double.parseDouble(options.getOrDefault("marketOrderRatio", "0.05"));
+            settings.executionSize = Distribution.parse(options.getOrDefault("executionSize", "uniform:100:2000"));
+            settings.executionPrice = Distribution.parse(options.getOrDefault("executionPrice", "normal:10000:20"));
+
+            int instruments = Integer.parseInt(options.getOrDefault("instruments", "16"));
+            threads = Math.min(threads, instruments);
+
+            List<SyntheticWorkload> syntheticWorkloads = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long[] instrumentIds = new long[(instruments - t + threads - 1) / threads];
+                for (int i = 0; i < instrumentIds.length; i++) {
+                    instrumentIds[i] = firstInstrumentId + t + (long) i * threads;
+                }
+                syntheticWorkloads.add(new SyntheticWorkload(target, settings, seed + t, instrumentIds, instruments));
+            }
+            workloads = syntheticWorkloads;
+        }
+        long defaultDuration = replay != null ? 0 : 30; // a replay runs to its end by default
+
+        LoadGenerator generator = new LoadGenerator(target, workloads,
+                Double.parseDouble(options.getOrDefault("rate", "10000")),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", replay != null ? "0" : "5"))),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", String.valueOf(defaultDuration)))),
+                TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("reportInterval", "1"))));
+        try {
+            generator.run();
+        } finally {
+            target.shutdown();
+        }
+    }
+
+    private void run() throws InterruptedException {
+        for (Workload workload : workloads) {
+            workload.prepare(target);
+        }
+        long start = System.nanoTime();
+        measureStart = start + warmupNanos;
+        deadline = durationNanos > 0 ? measureStart + durationNanos : Long.MAX_VALUE;
+
+        List<Thread> drivers = new ArrayList<>();
+        long interval = rate > 0 ? (long) (workloads.size() * 1e9 / rate) : 0;
+        for (int i = 0; i < workloads.size(); i++) {
+            Workload workload = workloads.get(i);
+            Thread driver = new Thread(() -> drive(workload, start, interval), "load-driver-" + i);
+            driver.start();
+            drivers.add(driver);
+        }
+        System.out.println(String.format(Locale.ROOT, "%d threads, target rate %s, warmup %ds%n",
+                workloads.size(), rate > 0 ? String.format(Locale.ROOT, "%.0f/s", rate) : "unlimited", TimeUnit.NANOSECONDS.toSeconds(warmupNanos)));
+        System.out.println(String.format(Locale.ROOT, "%8s %10s %10s %10s %10s %10s %8s", "time", "ops/s", "p50", "p99", "p99.9", "max", "errors"));
+
+        long nextReport = start + reportIntervalNanos;
+        long previousCompleted = 0;
+        long previousErrors = 0;
+        LatencyHistogram.Snapshot previousLatencies = null;
+        while (drivers.stream().anyMatch(Thread::isAlive)) {
+            long now = System.nanoTime();
+            if (now < nextReport) {
+                drivers.get(0).join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextReport - now)));
+                continue;
+            }
+            LatencyHistogram.Snapshot cumulative = intervalLatencies.snapshot();
+            LatencyHistogram.Snapshot s = cumulative.since(previousLatencies);
+            long totalCompleted = sent.sum();
+            long totalErrors = errorCount();
+            System.out.println(String.format(Locale.ROOT, "%7ds %10.0f %10s %10s %10s %10s %8d%s",
+                    TimeUnit.NANOSECONDS.toSeconds(now - start), (totalCompleted - previousCompleted) * 1e9 / reportIntervalNanos,
+                    format(s.getP50Nanos()), format(s.getP99Nanos()), format(s.getP999Nanos()), format(s.getMaxNanos()),
+                    totalErrors - previousErrors, now < measureStart ? "  (warmup)" : ""));
+
+            previousCompleted = totalCompleted;
+            previousErrors = totalErrors;
+            previousLatencies = cumulative;
+            nextReport += reportIntervalNanos;
+        }
+        report(System.nanoTime());
+    }
+
+    private void drive(Workload workload, long start, long interval) {
+        long scheduled = start;
+
+        for (LoadCommand command; (command = workload.next()) != null; ) {
+            if (interval > 0) {
+                waitUntil(scheduled);
+            } else {
+                scheduled = System.nanoTime();
+            }
+            if (scheduled >= deadline) {
+                return;
+            }
+            long sendTime = System.nanoTime();
+            boolean failed = false;
+            try {
+                target.execute(command);
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            long done = System.nanoTime();
+
+            if (failed) {
+                errors[command.type.ordinal()].increment();
+            }
+            if (scheduled >= measureStart) {
+                latencies[command.type.ordinal()].recordNanos(done - scheduled);
+                serviceTimes[command.type.ordinal()].recordNanos(done - sendTime);
+                completed.increment();
+            }
+            intervalLatencies.recordNanos(done - scheduled);
+            sent.increment();
+            scheduled += interval;
+        }
+    }
+
+    private void report(long end) {
+        double seconds = Math.max(1, end - measureStart) / 1e9;
+        long commands = completed.sum();
+        double throughput = commands / seconds;
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%d commands in %.1fs, sustained %.0f/s, %d errors", commands, seconds, throughput, errorCount()));
+        if (rate > 0 && throughput < rate * 0.95) {
+            System.out.println(String.format(Locale.ROOT, "target rate %.0f/s not sustained, the latencies include the growing backlog", rate));
+        }
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-18s %-8s %10s %10s %10s %10s %10s %8s", "command", "latency", "count", "p50", "p99", "p99.9", "max", "errors"));
+
+        for (LoadCommand.Type type : LoadCommand.Type.values()) {
+            LatencyHistogram.Snapshot latency = latencies[type.ordinal()].snapshot();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            LatencyHistogram.Snapshot serviceTime = serviceTimes[type.ordinal()].snapshot();
+            System.out.println(String.format(Locale.ROOT, "%-18s %-8s %10d %10s %10s %10s %10s %8d", type, "corr",
+                    latency.getCount(), format(latency.getP50Nanos()), format(latency.getP99Nanos()), format(latency.getP999Nanos()),
+                    format(latency.getMaxNanos()), errors[type.ordinal()].sum()));
+            System.out.println(String.format(Locale.ROOT, "%-18s %-8s %10s %10s %10s %10s %10s", "", "service",
+                    "", format(serviceTime.getP50Nanos()), format(serviceTime.getP99Nanos()), format(serviceTime.getP999Nanos()),
+                    format(serviceTime.getMaxNanos())));
+        }
+    }
+
+    private long errorCount() {
+        long sum = 0;
+        for (LongAdder e : errors) {
+            sum += e.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * Parks until shortly before the time and spins the rest, parking alone overshoots by tens of microseconds.
+     */
+    private static void waitUntil(long time) {
+        for (long remaining; (remaining = time - System.nanoTime()) > 0; ) {
+            if (remaining > 100_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[LoadCommand.Type.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
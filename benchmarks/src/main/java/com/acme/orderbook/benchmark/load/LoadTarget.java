@@ -0,0 +1,18 @@
+package com.acme.orderbook.benchmark.load;
+
+/**
+ * The service under load, called by many driver threads at once. Failed commands throw.
+ */
+interface LoadTarget {
+
+    /**
+     * Creates the instrument unless it exists and opens its book unless it is open, called before the load starts.
+     */
+    void prepare(long instrumentId, double tickSize);
+
+    void execute(LoadCommand command);
+
+    boolean isExecuted(long instrumentId);
+
+    void shutdown();
+}
@@ -0,0 +1,100 @@
+package com.acme.orderbook.benchmark.load;
+
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.journal.JournalHandler;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays the commands recorded in a journal directory. The commands are split by instrument over the driver threads
+ * so every book sees its commands in the recorded order, the instruments the journal does not create (the configured
+ * ones of the recording service) are created with the default tick size before the replay.
+ */
+class ReplayWorkload implements Workload {
+
+    private final List<LoadCommand> commands;
+    private final Map<Long, Double> preparedInstruments;
+    private int next;
+
+    private ReplayWorkload(List<LoadCommand> commands, Map<Long, Double> preparedInstruments) {
+        this.commands = commands;
+        this.preparedInstruments = preparedInstruments;
+    }
+
+    static List<ReplayWorkload> load(Path journalDir, int threads, double tickSize) {
+        List<List<LoadCommand>> partitions = new ArrayList<>();
+        List<Map<Long, Double>> prepared = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<>());
+            prepared.add(new LinkedHashMap<>());
+        }
+        Set<Long> created = new HashSet<>();
+
+        Journal.replay(journalDir, new JournalHandler() {
+            @Override
+            public void createInstrument(long sequence, long instrumentId, double instrumentTickSize, boolean offHeap) {
+                created.add(instrumentId);
+                add(LoadCommand.createInstrument(instrumentId, instrumentTickSize));
+            }
+
+            @Override
+            public void retireInstrument(long sequence, long instrumentId) {
+                add(LoadCommand.retireInstrument(instrumentId));
+            }
+
+            @Override
+            public void open(long sequence, long instrumentId) {
+                add(LoadCommand.open(instrumentId));
+            }
+
+            @Override
+            public void close(long sequence, long instrumentId) {
+                add(LoadCommand.close(instrumentId));
+            }
+
+            @Override
+            public void addOrder(long sequence, long instrumentId, long orderId, long entryTime, int quantity, long limitPrice) {
+                add(LoadCommand.addOrder(instrumentId, quantity, limitPrice));
+            }
+
+            @Override
+            public void addExecution(long sequence, long instrumentId, int quantity, long price) {
+                add(LoadCommand.addExecution(instrumentId, quantity, price));
+            }
+
+            private void add(LoadCommand command) {
+                int partition = (int) Math.floorMod(command.instrumentId, (long) threads);
+                if (!created.contains(command.instrumentId)) {
+                    prepared.get(partition).putIfAbsent(command.instrumentId, tickSize);
+                }
+                partitions.get(partition).add(command);
+            }
+        });
+
+        List<ReplayWorkload> workloads = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workloads.add(new ReplayWorkload(partitions.get(i), prepared.get(i)));
+        }
+        return workloads;
+    }
+
+    int size() {
+        return commands.size();
+    }
+
+    @Override
+    public void prepare(LoadTarget target) {
+        preparedInstruments.forEach(target::prepare);
+    }
+
+    @Override
+    public LoadCommand next() {
+        return next < commands.size() ? commands.get(next++) : null;
+    }
+}
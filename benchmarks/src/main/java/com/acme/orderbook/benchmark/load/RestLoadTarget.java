@@ -0,0 +1,133 @@
+package com.acme.orderbook.benchmark.load;
+
+import com.acme.orderbook.model.Order;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives a running application over its REST API. Connections are kept alive by the JDK as long as every response is
+ * read completely. Prices in ticks are converted with the tick size of the instrument.
+ */
+class RestLoadTarget implements LoadTarget {
+
+    private final String baseUrl;
+    private final boolean offHeap;
+    private final Map<Long, Double> tickSizes = new ConcurrentHashMap<>();
+
+    RestLoadTarget(String baseUrl, boolean offHeap) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.offHeap = offHeap;
+    }
+
+    @Override
+    public void prepare(long instrumentId, double tickSize) {
+        tickSizes.put(instrumentId, tickSize);
+        request("POST", "instruments", createInstrumentJson(instrumentId, tickSize), null); // fails if it exists, the next request if it does not
+        StringBuilder open = new StringBuilder();
+        check(request("GET", "order-book/" + instrumentId + "/is-open", null, open));
+        if (!Boolean.parseBoolean(open.toString().trim())) {
+            check(request("PUT", "order-book/" + instrumentId + "/open", null, null));
+        }
+    }
+
+    @Override
+    public void execute(LoadCommand command) {
+        long instrumentId = command.instrumentId;
+        String book = "order-book/" + instrumentId;
+
+        switch (command.type) {
+            case CREATE_INSTRUMENT:
+                tickSizes.put(instrumentId, command.tickSize);
+                check(request("POST", "instruments", createInstrumentJson(instrumentId, command.tickSize), null));
+                break;
+            case RETIRE_INSTRUMENT:
+                check(request("DELETE", "instruments/" + instrumentId, null, null));
+                break;
+            case OPEN:
+                check(request("PUT", book + "/open", null, null));
+                break;
+            case CLOSE:
+                check(request("PUT", book + "/close", null, null));
+                break;
+            case ADD_ORDER:
+                String limitPrice = command.price != Order.MARKET_PRICE ? ",\"limitPrice\":" + toPrice(instrumentId, command.price) : "";
+                check(request("POST", book + "/add-order", "{\"quantity\":" + command.quantity + limitPrice + "}", null));
+                break;
+            case ADD_EXECUTION:
+                check(request("POST", book + "/add-execution", "{\"quantity\":" + command.quantity + ",\"price\":" + toPrice(instrumentId, command.price) + "}", null));
+                break;
+        }
+    }
+
+    @Override
+    public boolean isExecuted(long instrumentId) {
+        StringBuilder executed = new StringBuilder();
+        check(request("GET", "order-book/" + instrumentId + "/is-executed", null, executed));
+        return Boolean.parseBoolean(executed.toString().trim());
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private String createInstrumentJson(long instrumentId, double tickSize) {
+        return "{\"id\":" + instrumentId + ",\"tickSize\":" + tickSize + ",\"offHeap\":" + offHeap + "}";
+    }
+
+    private double toPrice(long instrumentId, long ticks) {
+        return Math.round(ticks * tickSizes.getOrDefault(instrumentId, 0.01) * 1e8) / 1e8;
+    }
+
+    private static void check(int status) {
+        if (status >= 300) {
+            throw new IllegalStateException("HTTP " + status);
+        }
+    }
+
+    /**
+     * Sends the request and reads the whole response, into the body builder if there is one.
+     */
+    private int request(String method, String path, String json, StringBuilder body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+
+            if (json != null) {
+                byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+            if (in != null) {
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                try (InputStream input = in) {
+                    for (int n; (n = input.read(buffer)) > 0; ) {
+                        response.write(buffer, 0, n);
+                    }
+                }
+                if (body != null) {
+                    body.append(new String(response.toByteArray(), StandardCharsets.UTF_8));
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
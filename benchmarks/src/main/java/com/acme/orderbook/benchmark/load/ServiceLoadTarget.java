@@ -0,0 +1,67 @@
+package com.acme.orderbook.benchmark.load;
+
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.service.OrderBookService;
+import com.acme.orderbook.service.PerformanceMetrics;
+import com.acme.orderbook.store.TieredOrderStore;
+
+/**
+ * Drives an {@link OrderBookService} in the same process, without journal and snapshots.
+ */
+class ServiceLoadTarget implements LoadTarget {
+
+    private final OrderBookService orderBookService;
+
+    private final boolean offHeap;
+
+    ServiceLoadTarget(long firstInstrumentId, double tickSize, boolean offHeap, int sequencerWorkers, int executionParallelThreshold) {
+        this.offHeap = offHeap;
+        this.orderBookService = new OrderBookService(new PerformanceMetrics(), new TieredOrderStore(), String.valueOf(firstInstrumentId),
+                offHeap ? String.valueOf(firstInstrumentId) : "", tickSize, executionParallelThreshold, 64, sequencerWorkers, 65536, 4, 1024, "",
+                Journal.SyncPolicy.NONE, 0, "");
+    }
+
+    @Override
+    public void prepare(long instrumentId, double tickSize) {
+        if (orderBookService.getInstruments().stream().noneMatch(instrument -> instrument.getId() == instrumentId)) {
+            orderBookService.createInstrument(instrumentId, tickSize, offHeap);
+        }
+        if (!orderBookService.isOpen(instrumentId)) {
+            orderBookService.open(instrumentId);
+        }
+    }
+
+    @Override
+    public void execute(LoadCommand command) {
+        switch (command.type) {
+            case CREATE_INSTRUMENT:
+                orderBookService.createInstrument(command.instrumentId, command.tickSize, offHeap);
+                break;
+            case RETIRE_INSTRUMENT:
+                orderBookService.retireInstrument(command.instrumentId);
+                break;
+            case OPEN:
+                orderBookService.open(command.instrumentId);
+                break;
+            case CLOSE:
+                orderBookService.close(command.instrumentId);
+                break;
+            case ADD_ORDER:
+                orderBookService.addOrder(command.instrumentId, command.quantity, command.price);
+                break;
+            case ADD_EXECUTION:
+                orderBookService.addExecution(command.instrumentId, command.quantity, command.price);
+                break;
+        }
+    }
+
+    @Override
+    public boolean isExecuted(long instrumentId) {
+        return orderBookService.isExecuted(instrumentId);
+    }
+
+    @Override
+    public void shutdown() {
+        orderBookService.shutdown();
+    }
+}
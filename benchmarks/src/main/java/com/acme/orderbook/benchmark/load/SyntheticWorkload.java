@@ -0,0 +1,91 @@
+package com.acme.orderbook.benchmark.load;
+
+import com.acme.orderbook.model.Order;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic flow over a fixed number of books, taking turns. Every book runs through the auction cycle: orders while
+ * open, close, executions until the book is executed, then the instrument is retired and a new one with the next free
+ * id takes its place, since an executed book does not take orders again.
+ */
+class SyntheticWorkload implements Workload {
+
+    private enum Phase {
+        ORDERS, CLOSE, EXECUTIONS, CREATE
+    }
+
+    private final LoadTarget target;
+    private final Settings settings;
+    private final Random random;
+
+    private final long[] instrumentIds;
+    private final Phase[] phases;
+    private final int[] orderCounts;
+    private final int idStride; // instruments of all driver threads together
+    private int turn;
+
+    static class Settings {
+        double tickSize = 0.01;
+        int ordersPerCycle = 1000;
+        Distribution orderSize = Distribution.parse("uniform:1:100");
+        Distribution limitPrice = Distribution.parse("normal:10000:20");
+        double marketOrderRatio = 0.05;
+        Distribution executionSize = Distribution.parse("uniform:100:2000");
+        Distribution executionPrice = Distribution.parse("normal:10000:20");
+    }
+
+    SyntheticWorkload(LoadTarget target, Settings settings, long seed, long[] instrumentIds, int idStride) {
+        this.target = target;
+        this.settings = settings;
+        this.random = new Random(seed);
+        this.instrumentIds = instrumentIds.clone();
+        this.phases = new Phase[instrumentIds.length];
+        this.orderCounts = new int[instrumentIds.length];
+        this.idStride = idStride;
+
+        Arrays.fill(phases, Phase.ORDERS);
+    }
+
+    @Override
+    public void prepare(LoadTarget target) {
+        for (long instrumentId : instrumentIds) {
+            target.prepare(instrumentId, settings.tickSize);
+        }
+    }
+
+    @Override
+    public LoadCommand next() {
+        int i = turn;
+        turn = (turn + 1) % instrumentIds.length;
+        long instrumentId = instrumentIds[i];
+
+        switch (phases[i]) {
+            case ORDERS:
+                if (++orderCounts[i] == settings.ordersPerCycle) {
+                    phases[i] = Phase.CLOSE;
+                }
+                int quantity = (int) Math.max(1, settings.orderSize.sample(random));
+                long limitPrice = random.nextDouble() < settings.marketOrderRatio ? Order.MARKET_PRICE :
+                        Math.max(1, settings.limitPrice.sample(random));
+                return LoadCommand.addOrder(instrumentId, quantity, limitPrice);
+            case CLOSE:
+                phases[i] = Phase.EXECUTIONS;
+                return LoadCommand.close(instrumentId);
+            case EXECUTIONS:
+                if (!target.isExecuted(instrumentId)) {
+                    int executionQuantity = (int) Math.max(1, settings.executionSize.sample(random));
+                    return LoadCommand.addExecution(instrumentId, executionQuantity, Math.max(1, settings.executionPrice.sample(random)));
+                }
+                phases[i] = Phase.CREATE;
+                return LoadCommand.retireInstrument(instrumentId);
+            case CREATE:
+            default:
+                instrumentIds[i] += idStride;
+                orderCounts[i] = 0;
+                phases[i] = Phase.ORDERS;
+                return LoadCommand.createInstrument(instrumentIds[i], settings.tickSize);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.acme.orderbook.benchmark.load;
+
+/**
+ * Commands of one driver thread. The instruments of the driver threads are disjoint, so the commands of every book
+ * are sent in order.
+ */
+interface Workload {
+
+    /**
+     * Instruments that have to exist and be open before the first command, with their tick size.
+     */
+    void prepare(LoadTarget target);
+
+    /**
+     * The next command, null when there are no more.
+     */
+    LoadCommand next();
+}
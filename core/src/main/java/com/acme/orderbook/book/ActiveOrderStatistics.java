@@ -0,0 +1,106 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.common.OrderBookUtil;
+
+import java.time.LocalDateTime;
+
+/**
+ * Incrementally maintained aggregates over the active orders of a book, updated whenever an order enters or leaves
+ * the active state. The extremes are kept as plain values, an arriving order only widens them, and when an order at
+ * an extreme leaves they are marked stale and found again by one walk over the active orders on the next read.
+ */
+class ActiveOrderStatistics {
+
+    private int activeOrders;
+    private int smallestQuantity;
+    private int largestQuantity;
+    private long firstEntryTime; // epoch nanos
+    private long lastEntryTime;
+    private boolean extremesStale;
+
+    private int executedOrders;
+    private int canceledOrders;
+
+    void orderAdded(int quantity, long entryTime) {
+        activeOrders++;
+        if (extremesStale) {
+            return;
+        }
+        if (activeOrders == 1) {
+            smallestQuantity = largestQuantity = quantity;
+            firstEntryTime = lastEntryTime = entryTime;
+        } else {
+            include(quantity, entryTime);
+        }
+    }
+
+    void orderExecuted(int quantity, long entryTime) {
+        activeOrders--;
+        executedOrders++;
+        if (quantity == smallestQuantity || quantity == largestQuantity || entryTime == firstEntryTime || entryTime == lastEntryTime) {
+            extremesStale = true;
+        }
+    }
+
+    void allOrdersCanceled(int activeOrders) {
+        this.activeOrders = 0;
+        extremesStale = false;
+        canceledOrders += activeOrders;
+    }
+
+    void ordersRestored(int executedOrders, int canceledOrders) {
+        this.executedOrders += executedOrders;
+        this.canceledOrders += canceledOrders;
+    }
+
+    /**
+     * Finds the extremes again if an order at one of them left, called before they are read.
+     */
+    void rescanIfStale(PriceLadder priceLadder, OrderStore orderStore) {
+        if (!extremesStale) {
+            return;
+        }
+        smallestQuantity = Integer.MAX_VALUE;
+        largestQuantity = Integer.MIN_VALUE;
+        firstEntryTime = Long.MAX_VALUE;
+        lastEntryTime = Long.MIN_VALUE;
+
+        priceLadder.forEachOrder(slot -> include(orderStore.getQuantity(slot), orderStore.getEntryTime(slot)));
+        extremesStale = false;
+    }
+
+    private void include(int quantity, long entryTime) {
+        smallestQuantity = Math.min(smallestQuantity, quantity);
+        largestQuantity = Math.max(largestQuantity, quantity);
+        firstEntryTime = Math.min(firstEntryTime, entryTime);
+        lastEntryTime = Math.max(lastEntryTime, entryTime);
+    }
+
+    int getExecutedOrders() {
+        return executedOrders;
+    }
+
+    int getCanceledOrders() {
+        return canceledOrders;
+    }
+
+    boolean hasActiveOrders() {
+        return activeOrders > 0;
+    }
+
+    int getLargestQuantity() {
+        return largestQuantity;
+    }
+
+    int getSmallestQuantity() {
+        return smallestQuantity;
+    }
+
+    LocalDateTime getFirstEntryDate() {
+        return OrderBookUtil.fromEpochNanos(firstEntryTime);
+    }
+
+    LocalDateTime getLastEntryDate() {
+        return OrderBookUtil.fromEpochNanos(lastEntryTime);
+    }
+}
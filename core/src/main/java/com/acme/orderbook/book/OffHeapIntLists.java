@@ -0,0 +1,124 @@
+package com.acme.orderbook.book;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable int lists in direct buffers. A list lives in one block of a power of two number of ints, blocks are carved
+ * out of large chunks and every size class keeps a free list threaded through the first ints of its freed blocks, so
+ * a list that outgrows its block moves to a block of the next class and its old block is reused by another list.
+ * A block is addressed by chunk index << 32 | offset. Not thread safe, every book owns its lists.
+ */
+class OffHeapIntLists {
+
+    static final long NONE = -1L;
+
+    private static final int MIN_SIZE_CLASS = 4; // 16 ints
+    private static final int CHUNK_SIZE_CLASS = 20; // 4MB chunks, larger blocks get a chunk of their own
+
+    private IntBuffer[] chunks = new IntBuffer[4];
+    private int chunkCount;
+    private int chunkUsed; // ints handed out from the last shared chunk
+    private int sharedChunk = -1;
+    private final long[] freeBlocks = new long[32]; // size class -> first free block
+
+    private long allocatedInts;
+
+    OffHeapIntLists() {
+        Arrays.fill(freeBlocks, NONE);
+    }
+
+    static int minSizeClass() {
+        return MIN_SIZE_CLASS;
+    }
+
+    long allocate(int sizeClass) {
+        long block = freeBlocks[sizeClass];
+        if (block != NONE) {
+            freeBlocks[sizeClass] = getLong(block);
+            return block;
+        }
+        int size = 1 << sizeClass;
+
+        if (sizeClass >= CHUNK_SIZE_CLASS) {
+            return (long) newChunk(size) << 32;
+        }
+        if (sharedChunk < 0 || chunkUsed + size > 1 << CHUNK_SIZE_CLASS) {
+            sharedChunk = newChunk(1 << CHUNK_SIZE_CLASS);
+            chunkUsed = 0;
+        }
+        block = (long) sharedChunk << 32 | chunkUsed;
+        chunkUsed += size;
+        return block;
+    }
+
+    void free(long block, int sizeClass) {
+        putLong(block, freeBlocks[sizeClass]);
+        freeBlocks[sizeClass] = block;
+    }
+
+    /**
+     * Moves the first count ints of the block to a block of the next size class and frees the old one.
+     */
+    long grow(long block, int sizeClass, int count) {
+        long newBlock = allocate(sizeClass + 1);
+
+        IntBuffer source = chunks[chunk(block)].duplicate();
+        source.position(offset(block)).limit(offset(block) + count);
+        IntBuffer target = chunks[chunk(newBlock)].duplicate();
+        target.position(offset(newBlock));
+        target.put(source);
+
+        free(block, sizeClass);
+        return newBlock;
+    }
+
+    int get(long block, int i) {
+        return chunks[chunk(block)].get(offset(block) + i);
+    }
+
+    void set(long block, int i, int value) {
+        chunks[chunk(block)].put(offset(block) + i, value);
+    }
+
+    /**
+     * Appends the first count ints of the block to the list with a bulk copy.
+     */
+    void copyTo(long block, int count, SlotList list) {
+        IntBuffer source = chunks[chunk(block)].duplicate();
+        source.position(offset(block));
+        list.addAll(source, count);
+    }
+
+    long getAllocatedBytes() {
+        return allocatedInts * 4;
+    }
+
+    private int newChunk(int size) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount] = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        allocatedInts += size;
+        return chunkCount++;
+    }
+
+    private long getLong(long block) {
+        return (long) get(block, 0) << 32 | get(block, 1) & 0xFFFFFFFFL;
+    }
+
+    private void putLong(long block, long value) {
+        set(block, 0, (int) (value >>> 32));
+        set(block, 1, (int) value);
+    }
+
+    private static int chunk(long block) {
+        return (int) (block >>> 32);
+    }
+
+    private static int offset(long block) {
+        return (int) block;
+    }
+}
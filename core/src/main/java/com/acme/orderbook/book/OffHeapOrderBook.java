@@ -0,0 +1,806 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.common.OrderBookUtil;
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.ExecutionPreview;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.snapshot.BookSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.acme.orderbook.book.OffHeapSlab.NONE;
+
+/**
+ * Order book for very large books that keeps its orders, price levels and fills in off-heap slabs, so a book of
+ * millions of orders adds no objects for the garbage collector to trace. Orders handed to the book are copied into
+ * order records and not referenced afterwards, {@link #getOrder(long)} returns detached copies. The arrival log maps
+ * the arrival index of every order, which is its time priority, to the order id and its record, an off-heap open
+ * addressing index maps order ids to arrival indexes. With an archive the records of finished orders are freed after
+ * the order was archived and reused by later orders. Behaves exactly like {@link OrderBookImpl}.
+ *
+ * Like the heap book's {@link OrderStore} the executions form a tape, an order record holds the range of the tape the
+ * order was active for and only its non-zero fills, so orders skipped by an execution cost nothing.
+ */
+public class OffHeapOrderBook implements OrderBook {
+    private static final Logger log = LoggerFactory.getLogger(OffHeapOrderBook.class);
+
+    // order record layout
+    static final int ORDER_ID = 0;
+    static final int ENTRY_TIME = 8; // epoch nanos
+    static final int EXECUTION_TIME = 16; // epoch nanos
+    static final int LIMIT_PRICE = 24; // ticks, Order.MARKET_PRICE for market orders
+    static final int ARRIVAL = 32;
+    static final int QUANTITY = 36;
+    static final int EXECUTED_QUANTITY = 40;
+    static final int FILLS = 44; // latest fill, every one links to the previous
+    static final int FILL_COUNT = 48;
+    static final int STATE = 52;
+    static final int HISTORY_START = 56; // first execution on the tape the order took part in
+    static final int HISTORY_END = 60; // end of the range on the tape, ACTIVE_HISTORY while the order takes part in executions
+    static final int ORDER_SIZE = 64; // padded to one cache line
+
+    // fill record layout
+    private static final int FILL_EXECUTION = 0; // index on the tape
+    private static final int FILL_QUANTITY = 4;
+    private static final int FILL_PREVIOUS = 8;
+    private static final int FILL_SIZE = 12;
+
+    // arrival record layout
+    private static final int ARRIVAL_ORDER_ID = 0;
+    static final int ARRIVAL_ORDER = 8; // order record, NONE once archived
+    private static final int ARRIVAL_SIZE = 12;
+
+    private static final long NO_EXECUTION = Long.MIN_VALUE;
+    private static final int ACTIVE_HISTORY = -1;
+    private static final int CHUNK_BITS = 16; // 64k records per chunk
+
+    private final long instrumentId;
+    private final OrderArchive archive; // null when finished orders stay in the book
+    private final RecordOrder finishedOrder = new RecordOrder(); // hands an order record to the archive
+
+    private AtomicBoolean open = new AtomicBoolean(true);
+    private AtomicBoolean executed = new AtomicBoolean(false);
+
+    private final OffHeapSlab orders = new OffHeapSlab(ORDER_SIZE, CHUNK_BITS);
+    private final OffHeapSlab fills = new OffHeapSlab(FILL_SIZE, CHUNK_BITS);
+    private final OffHeapSlab arrivals = new OffHeapSlab(ARRIVAL_SIZE, CHUNK_BITS); // never freed, the reference is the arrival index
+    private final OffHeapPriceLadder priceLadder = new OffHeapPriceLadder(orders, arrivals); // active orders by limit price
+    private final List<Execution> executions = new ArrayList<>(); // the execution tape
+    private final Map<Integer, List<OrderPartialExecution>> earlierPartialExecutions = new HashMap<>(); // order record -> the ones an order came with
+    private int fillCount; // of the orders in the book
+    private final ProRataAllocator allocator = new ProRataAllocator(16);
+
+    private ByteBuffer index = newIndex(1024); // orderId -> arrival index, open addressing over int slots
+    private int indexSize;
+
+    private int executedOrders;
+    private int canceledOrders;
+
+    // quantity and entry time extremes of the active orders, rescanned when an order holding one of them left
+    private int smallestQuantity;
+    private int largestQuantity;
+    private long firstEntryTime;
+    private long lastEntryTime;
+    private boolean extremesStale;
+
+    // scratch lists reused by every execution
+    private final SlotList validArrivals = new SlotList();
+    private final SlotList invalidArrivals = new SlotList();
+    private final SlotList executedOrderRefs = new SlotList();
+
+    public OffHeapOrderBook(long instrumentId, OrderArchive archive) {
+        this.instrumentId = instrumentId;
+        this.archive = archive;
+    }
+
+    /**
+     * Restores the book from a snapshot, the finished orders go straight to the archive if there is one.
+     */
+    public OffHeapOrderBook(BookSnapshot snapshot, OrderArchive archive) {
+        this(snapshot.getInstrumentId(), archive);
+
+        open.set(snapshot.isOpen());
+        executed.set(snapshot.isExecuted());
+
+        for (int i = 0; i < snapshot.getExecutionCount(); i++) {
+            executions.add(new Execution(instrumentId, snapshot.getExecutionQuantities()[i], snapshot.getExecutionPrices()[i]));
+        }
+
+        int[] partialOffsets = snapshot.getPartialOffsets();
+        int[] fillOffsets = snapshot.getFillOffsets();
+        for (int i = 0; i < snapshot.getOrderCount(); i++) {
+            int order = append(snapshot.getOrderIds()[i], snapshot.getEntryTimes()[i], snapshot.getQuantities()[i], snapshot.getLimitPrices()[i]);
+            orders.putInt(order, EXECUTED_QUANTITY, snapshot.getExecutedQuantities()[i]);
+            orders.putLong(order, EXECUTION_TIME, snapshot.getExecutionTimes()[i]);
+            orders.putInt(order, HISTORY_START, snapshot.getHistoryStarts()[i]);
+            orders.putInt(order, HISTORY_END, snapshot.getHistoryEnds()[i]);
+
+            List<OrderPartialExecution> earlier = new ArrayList<>();
+            for (int p = partialOffsets[i]; p < partialOffsets[i + 1]; p++) {
+                earlier.add(new OrderPartialExecution(snapshot.getPartialQuantities()[p], snapshot.getPartialPrices()[p]));
+            }
+            addEarlierPartialExecutions(order, earlier);
+            for (int f = fillOffsets[i]; f < fillOffsets[i + 1]; f++) {
+                long fill = snapshot.getFills()[f];
+                appendFill(order, (int) (fill >>> 32), (int) fill);
+            }
+
+            byte state = snapshot.getStates()[i];
+            orders.putByte(order, STATE, state);
+
+            if (state == OrderStore.ACTIVE) {
+                activate(order);
+            } else {
+                if (state == OrderStore.EXECUTED) {
+                    executedOrders++;
+                } else {
+                    canceledOrders++;
+                }
+                release(order);
+            }
+        }
+    }
+
+    @Override
+    public void open() {
+        if (!isOpen()) {
+            open.set(true);
+        } else {
+            log.warn("book " + instrumentId + " already open");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (isOpen()) {
+            open.set(false);
+        } else {
+            log.warn("book " + instrumentId + " already closed");
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    @Override
+    public void addOrder(Order order) {
+        validate(order.getInstrumentId());
+
+        if (isOpen()) {
+            add(order);
+        } else {
+            throw new IllegalStateException("cannot add orders to closed book " + instrumentId);
+        }
+    }
+
+    /**
+     * Adds all orders or none of them.
+     */
+    @Override
+    public void addOrders(List<Order> orders) {
+        for (Order order : orders) {
+            validate(order.getInstrumentId());
+        }
+
+        if (isOpen()) {
+            for (Order order : orders) {
+                add(order);
+            }
+        } else {
+            throw new IllegalStateException("cannot add orders to closed book " + instrumentId);
+        }
+    }
+
+    @Override
+    public void addExecution(Execution execution) {
+        validate(execution.getInstrumentId());
+
+        long executionPrice = execution.getPrice();
+        int executionQuantity = execution.getQuantity();
+
+        if (!isOpen()) {
+            checkIfBookExecuted(executionPrice);
+
+            if (!isExecuted()) {
+                executions.add(execution);
+                priceLadder.getValidOrders(executionPrice, validArrivals); // the invalid orders take part on the tape
+
+                int validCount = validArrivals.size();
+                int[] demands = allocator.demands(validCount);
+                for (int i = 0; i < validCount; i++) {
+                    demands[i] = unexecutedQuantity(orderOf(validArrivals.get(i)));
+                }
+                int[] orderPartialExecutionQuantities = allocator.allocate(validCount, executionQuantity);
+
+                for (int i = 0; i < validCount; i++) {
+                    int order = orderOf(validArrivals.get(i));
+                    int partialExecutionQuantity = orderPartialExecutionQuantities[i];
+
+                    addPartialExecution(order, partialExecutionQuantity, executionPrice);
+                    priceLadder.reduceDemand(order, partialExecutionQuantity);
+                }
+
+                executedOrderRefs.clear();
+                priceLadder.removeExecutedOrders(executionPrice, executedOrderRefs);
+
+                for (int i = 0; i < executedOrderRefs.size(); i++) {
+                    int order = executedOrderRefs.get(i);
+                    deactivated(order);
+                    executedOrders++;
+                    release(order);
+                }
+
+                checkIfBookExecuted(executionPrice);
+            } else {
+                throw new IllegalStateException("cannot add execution to already executed book " + instrumentId);
+            }
+        } else {
+            throw new IllegalStateException("cannot add execution to open book " + instrumentId);
+        }
+    }
+
+    /**
+     * Off-heap books have no optimistic reads, the preview runs between the book's commands like them.
+     */
+    @Override
+    public ExecutionPreview previewExecution(Execution execution) {
+        validate(execution.getInstrumentId());
+
+        if (isOpen()) {
+            throw new IllegalStateException("cannot add execution to open book " + instrumentId);
+        } else if (isExecuted()) {
+            throw new IllegalStateException("cannot add execution to already executed book " + instrumentId);
+        }
+        long executionPrice = execution.getPrice();
+        long validDemand = priceLadder.getValidDemand(executionPrice);
+        if (validDemand == 0) {
+            return new ExecutionPreview(execution, new long[0], new int[0], 0, true); // executed without a fill
+        }
+        SlotList validArrivals = new SlotList();
+        priceLadder.getValidOrders(executionPrice, validArrivals);
+
+        int quantity = execution.getQuantity();
+        int capacity = Math.min(quantity, validArrivals.size()); // every fill takes at least one
+        long[] orderIds = new long[capacity];
+        int[] fills = new int[capacity];
+        int fillCount = 0;
+        int filled = 0;
+
+        for (int i = 0; i < validArrivals.size() && filled < quantity; i++) {
+            int order = orderOf(validArrivals.get(i));
+            int fill = ProRataAllocator.allocation(unexecutedQuantity(order), validDemand, quantity, filled);
+            if (fill > 0) {
+                orderIds[fillCount] = orders.getLong(order, ORDER_ID);
+                fills[fillCount++] = fill;
+                filled += fill;
+            }
+        }
+        return new ExecutionPreview(execution, orderIds, fills, fillCount, filled == validDemand);
+    }
+
+    private void checkIfBookExecuted(long executionPrice) {
+        if (!isExecuted()) {
+            if (priceLadder.getValidDemand(executionPrice) == 0) {
+                executed.set(true);
+
+                priceLadder.getOrders(invalidArrivals);
+                for (int i = 0; i < invalidArrivals.size(); i++) {
+                    int order = orderOf(invalidArrivals.get(i));
+                    finish(order, OrderStore.CANCELED);
+                    release(order);
+                }
+                canceledOrders += invalidArrivals.size();
+                priceLadder.clear();
+                extremesStale = false;
+            }
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed.get();
+    }
+
+    @Override
+    public Statistics generateStatistics() {
+        Statistics s = new Statistics(instrumentId);
+
+        int activeOrders = priceLadder.getOrderCount();
+        s.setActiveOrders(activeOrders);
+        s.setExecutedOrders(executedOrders);
+        s.setCanceledOrders(canceledOrders);
+
+        if (!executions.isEmpty()) {
+            long lastExecutionPrice = executions.get(executions.size() - 1).getPrice();
+
+            s.setLastExecutionPrice(lastExecutionPrice);
+
+            s.setActiveValidOrders(priceLadder.getValidOrderCount(lastExecutionPrice));
+            s.setActiveInvalidOrders(priceLadder.getInvalidOrderCount(lastExecutionPrice));
+
+            s.setActiveValidOrdersDemand((int) priceLadder.getValidDemand(lastExecutionPrice));
+            s.setActiveInvalidOrdersDemand((int) priceLadder.getInvalidDemand(lastExecutionPrice));
+        }
+
+        if (activeOrders > 0) {
+            rescanExtremesIfStale();
+            s.setLargestActiveOrderQuantity(largestQuantity);
+            s.setSmallestActiveOrderQuantity(smallestQuantity);
+
+            s.setFirstActiveOrderEntry(OrderBookUtil.fromEpochNanos(firstEntryTime));
+            s.setLastActiveOrderEntry(OrderBookUtil.fromEpochNanos(lastEntryTime));
+        }
+
+        int levelCount = priceLadder.getLimitLevelCount();
+        long[] limitPrices = new long[levelCount];
+        int[] limitDemands = new int[levelCount];
+        long[] validDemands = new long[levelCount];
+        long validDemand = priceLadder.getMarketDemand();
+
+        for (int i = levelCount - 1; i >= 0; i--) {
+            long levelDemand = priceLadder.getLimitLevelDemand(i);
+            limitPrices[i] = priceLadder.getLimitLevelPrice(i);
+            limitDemands[i] = (int) levelDemand;
+
+            validDemand += levelDemand;
+            validDemands[i] = validDemand;
+        }
+        s.setActiveOrderLimitBreakDown(limitPrices, limitDemands);
+        s.setDemandCurve(priceLadder.getMarketDemand(), validDemands);
+        return s;
+    }
+
+    /**
+     * Copies the book's state in arrival order, writing the copy out is left to the caller. The histories stay in tape
+     * form like the heap book writes them, archived orders bring theirs as partial executions.
+     */
+    @Override
+    public BookSnapshot snapshot() {
+        int orderCount = arrivals.getHighWaterMark();
+        Order[] archivedOrders = new Order[orderCount]; // looked up once, archived orders are decoded on every lookup
+        int partialCount = 0;
+
+        for (int arrival = 0; arrival < orderCount; arrival++) {
+            int order = orderOf(arrival);
+            if (order != NONE) {
+                List<OrderPartialExecution> earlier = earlierPartialExecutions.get(order);
+                partialCount += earlier != null ? earlier.size() : 0;
+            } else {
+                archivedOrders[arrival] = archive.get(arrivals.getLong(arrival, ARRIVAL_ORDER_ID));
+                partialCount += archivedOrders[arrival].getPartialExecutions().size();
+            }
+        }
+
+        BookSnapshot s = new BookSnapshot(instrumentId, isOpen(), isExecuted(), executions.size(), orderCount, fillCount, partialCount);
+
+        for (int i = 0; i < executions.size(); i++) {
+            s.getExecutionQuantities()[i] = executions.get(i).getQuantity();
+            s.getExecutionPrices()[i] = executions.get(i).getPrice();
+        }
+
+        int f = 0;
+        int p = 0;
+        for (int arrival = 0; arrival < orderCount; arrival++) {
+            int order = orderOf(arrival);
+            s.getOrderIds()[arrival] = arrivals.getLong(arrival, ARRIVAL_ORDER_ID);
+            s.getFillOffsets()[arrival] = f;
+            s.getPartialOffsets()[arrival] = p;
+
+            if (order != NONE) {
+                s.getQuantities()[arrival] = orders.getInt(order, QUANTITY);
+                s.getLimitPrices()[arrival] = orders.getLong(order, LIMIT_PRICE);
+                s.getExecutedQuantities()[arrival] = orders.getInt(order, EXECUTED_QUANTITY);
+                s.getEntryTimes()[arrival] = orders.getLong(order, ENTRY_TIME);
+                s.getExecutionTimes()[arrival] = orders.getLong(order, EXECUTION_TIME);
+                s.getStates()[arrival] = orders.getByte(order, STATE);
+                s.getHistoryStarts()[arrival] = orders.getInt(order, HISTORY_START);
+                s.getHistoryEnds()[arrival] = orders.getInt(order, HISTORY_END);
+
+                f += orders.getInt(order, FILL_COUNT);
+                int i = f;
+                for (int fill = orders.getInt(order, FILLS); fill != NONE; fill = fills.getInt(fill, FILL_PREVIOUS)) {
+                    s.getFills()[--i] = (long) fills.getInt(fill, FILL_EXECUTION) << 32 | fills.getInt(fill, FILL_QUANTITY);
+                }
+
+                List<OrderPartialExecution> earlier = earlierPartialExecutions.get(order);
+                if (earlier != null) {
+                    for (OrderPartialExecution partialExecution : earlier) {
+                        s.getPartialQuantities()[p] = partialExecution.getQuantity();
+                        s.getPartialPrices()[p] = partialExecution.getPrice();
+                        p++;
+                    }
+                }
+            } else {
+                Order archived = archivedOrders[arrival];
+                LocalDateTime executionDate = archived.getExecutionDate();
+
+                s.getQuantities()[arrival] = archived.getQuantity();
+                s.getLimitPrices()[arrival] = archived.getLimitPrice();
+                s.getExecutedQuantities()[arrival] = archived.getExecutedQuantity();
+                s.getEntryTimes()[arrival] = OrderBookUtil.toEpochNanos(archived.getEntryDate());
+                s.getExecutionTimes()[arrival] = executionDate != null ? OrderBookUtil.toEpochNanos(executionDate) : NO_EXECUTION;
+                s.getStates()[arrival] = archived.isExecuted() ? OrderStore.EXECUTED : OrderStore.CANCELED;
+                s.getHistoryStarts()[arrival] = executions.size(); // the partials hold the whole history
+                s.getHistoryEnds()[arrival] = executions.size();
+
+                for (OrderPartialExecution partialExecution : archived.getPartialExecutions()) {
+                    s.getPartialQuantities()[p] = partialExecution.getQuantity();
+                    s.getPartialPrices()[p] = partialExecution.getPrice();
+                    p++;
+                }
+            }
+        }
+        s.getFillOffsets()[orderCount] = f;
+        s.getPartialOffsets()[orderCount] = p;
+        return s;
+    }
+
+    @Override
+    public Order getOrder(long orderId) {
+        int arrival = index.getInt(indexSlot(orderId) << 2);
+        if (arrival == NONE) {
+            return null;
+        }
+        int order = orderOf(arrival);
+        if (order != NONE) {
+            return toOrder(order);
+        }
+        Order archived = archive.get(orderId); // may be shared with the archive's cache
+        return archived != null ? archived.copy() : null;
+    }
+
+    /**
+     * Hands copies of the active orders to the archive, called before the book is dropped so the orders stay available.
+     */
+    public void archiveActiveOrders() {
+        if (archive != null) {
+            priceLadder.forEachOrder(order -> {
+                finishedOrder.order = order;
+                archive.archive(finishedOrder);
+            });
+        }
+    }
+
+    /**
+     * Direct memory taken by the book's slabs and index.
+     */
+    public long getAllocatedBytes() {
+        return orders.getAllocatedBytes() + fills.getAllocatedBytes() + arrivals.getAllocatedBytes()
+                + priceLadder.getAllocatedBytes() + index.capacity();
+    }
+
+    private void add(Order order) {
+        int ref = append(order.getOrderId(), OrderBookUtil.toEpochNanos(order.getEntryDate()), order.getQuantity(), order.getLimitPrice());
+        orders.putInt(ref, EXECUTED_QUANTITY, order.getExecutedQuantity());
+        addEarlierPartialExecutions(ref, order.getPartialExecutions());
+        activate(ref);
+    }
+
+    /**
+     * Partial executions an order came with, they precede its range on the tape. Only orders restored from snapshots
+     * written before the tape have any.
+     */
+    private void addEarlierPartialExecutions(int order, List<OrderPartialExecution> earlier) {
+        if (!earlier.isEmpty()) {
+            earlierPartialExecutions.put(order, new ArrayList<>(earlier));
+        }
+    }
+
+    /**
+     * Copies the order into a new record at the end of the arrival log.
+     */
+    private int append(long orderId, long entryTime, int quantity, long limitPrice) {
+        int order = orders.allocate();
+        int arrival = arrivals.allocate();
+
+        orders.putLong(order, ORDER_ID, orderId);
+        orders.putLong(order, ENTRY_TIME, entryTime);
+        orders.putLong(order, EXECUTION_TIME, NO_EXECUTION);
+        orders.putLong(order, LIMIT_PRICE, limitPrice);
+        orders.putInt(order, ARRIVAL, arrival);
+        orders.putInt(order, QUANTITY, quantity);
+        orders.putInt(order, EXECUTED_QUANTITY, 0);
+        orders.putInt(order, FILLS, NONE);
+        orders.putInt(order, FILL_COUNT, 0);
+        orders.putByte(order, STATE, OrderStore.ACTIVE);
+        orders.putInt(order, HISTORY_START, executions.size());
+        orders.putInt(order, HISTORY_END, ACTIVE_HISTORY);
+
+        arrivals.putLong(arrival, ARRIVAL_ORDER_ID, orderId);
+        arrivals.putInt(arrival, ARRIVAL_ORDER, order);
+        putIndex(orderId, arrival);
+
+        return order;
+    }
+
+    private void activate(int order) {
+        priceLadder.add(order);
+
+        if (!extremesStale) {
+            int quantity = orders.getInt(order, QUANTITY);
+            long entryTime = orders.getLong(order, ENTRY_TIME);
+
+            if (priceLadder.getOrderCount() == 1) {
+                smallestQuantity = largestQuantity = quantity;
+                firstEntryTime = lastEntryTime = entryTime;
+            } else {
+                smallestQuantity = Math.min(smallestQuantity, quantity);
+                largestQuantity = Math.max(largestQuantity, quantity);
+                firstEntryTime = Math.min(firstEntryTime, entryTime);
+                lastEntryTime = Math.max(lastEntryTime, entryTime);
+            }
+        }
+    }
+
+    private void deactivated(int order) {
+        int quantity = orders.getInt(order, QUANTITY);
+        long entryTime = orders.getLong(order, ENTRY_TIME);
+
+        if (quantity == smallestQuantity || quantity == largestQuantity || entryTime == firstEntryTime || entryTime == lastEntryTime) {
+            extremesStale = true;
+        }
+    }
+
+    private void rescanExtremesIfStale() {
+        if (!extremesStale) {
+            return;
+        }
+        smallestQuantity = Integer.MAX_VALUE;
+        largestQuantity = Integer.MIN_VALUE;
+        firstEntryTime = Long.MAX_VALUE;
+        lastEntryTime = Long.MIN_VALUE;
+
+        priceLadder.forEachOrder(order -> {
+            int quantity = orders.getInt(order, QUANTITY);
+            long entryTime = orders.getLong(order, ENTRY_TIME);
+
+            smallestQuantity = Math.min(smallestQuantity, quantity);
+            largestQuantity = Math.max(largestQuantity, quantity);
+            firstEntryTime = Math.min(firstEntryTime, entryTime);
+            lastEntryTime = Math.max(lastEntryTime, entryTime);
+        });
+        extremesStale = false;
+    }
+
+    /**
+     * Adds the partial execution of the last execution on the tape to the order, with the same checks as
+     * {@link Order#addPartialExecution(int, long)}. Only a non-zero fill is stored.
+     */
+    private void addPartialExecution(int order, int partialQuantity, long partialPrice) {
+        int unexecutedQuantity = unexecutedQuantity(order);
+
+        if (unexecutedQuantity == 0) {
+            throw new IllegalStateException("order already executed " + toOrder(order));
+
+        } else if (partialQuantity > unexecutedQuantity) {
+            throw new IllegalStateException("invalid partial quantity " + partialQuantity + " for order " + toOrder(order));
+
+        } else if (orders.getLong(order, LIMIT_PRICE) < partialPrice && partialQuantity != 0) {
+            throw new IllegalStateException("invalid partial price " + partialPrice + " for order " + toOrder(order));
+        }
+        if (partialQuantity == 0) {
+            return;
+        }
+
+        appendFill(order, executions.size() - 1, partialQuantity);
+        orders.putInt(order, EXECUTED_QUANTITY, orders.getInt(order, EXECUTED_QUANTITY) + partialQuantity);
+
+        if (partialQuantity == unexecutedQuantity) {
+            orders.putLong(order, EXECUTION_TIME, OrderBookUtil.toEpochNanos(LocalDateTime.now()));
+            finish(order, OrderStore.EXECUTED);
+        }
+    }
+
+    /**
+     * A finished order takes part in no further executions, its range on the tape ends.
+     */
+    private void finish(int order, byte state) {
+        orders.putByte(order, STATE, state);
+        orders.putInt(order, HISTORY_END, executions.size());
+    }
+
+    /**
+     * Links the new fill to the previous one, appending never touches the older records.
+     */
+    private void appendFill(int order, int execution, int quantity) {
+        int fill = fills.allocate();
+        fills.putInt(fill, FILL_EXECUTION, execution);
+        fills.putInt(fill, FILL_QUANTITY, quantity);
+        fills.putInt(fill, FILL_PREVIOUS, orders.getInt(order, FILLS));
+
+        orders.putInt(order, FILLS, fill);
+        orders.putInt(order, FILL_COUNT, orders.getInt(order, FILL_COUNT) + 1);
+        fillCount++;
+    }
+
+    /**
+     * Hands the finished order to the archive and frees its records, a no-op without an archive.
+     */
+    private void release(int order) {
+        if (archive == null) {
+            return;
+        }
+        finishedOrder.order = order;
+        archive.archive(finishedOrder);
+
+        for (int fill = orders.getInt(order, FILLS); fill != NONE; ) {
+            int previous = fills.getInt(fill, FILL_PREVIOUS);
+            fills.free(fill);
+            fill = previous;
+        }
+        fillCount -= orders.getInt(order, FILL_COUNT);
+        if (!earlierPartialExecutions.isEmpty()) {
+            earlierPartialExecutions.remove(order);
+        }
+        arrivals.putInt(orders.getInt(order, ARRIVAL), ARRIVAL_ORDER, NONE);
+        orders.free(order);
+    }
+
+    private Order toOrder(int order) {
+        OrderPartialExecution[] orderPartialExecutions = new OrderPartialExecution[partialExecutionCount(order)];
+        forEachPartialExecution(order, (i, quantity, price) -> orderPartialExecutions[i] = new OrderPartialExecution(quantity, price));
+        long executionTime = orders.getLong(order, EXECUTION_TIME);
+
+        return new Order(instrumentId, orders.getLong(order, ORDER_ID), OrderBookUtil.fromEpochNanos(orders.getLong(order, ENTRY_TIME)),
+                orders.getInt(order, QUANTITY), orders.getLong(order, LIMIT_PRICE), orders.getInt(order, EXECUTED_QUANTITY),
+                executionTime != NO_EXECUTION ? OrderBookUtil.fromEpochNanos(executionTime) : null, Arrays.asList(orderPartialExecutions));
+    }
+
+    /**
+     * The ones the order came with and one for every execution on the tape it took part in.
+     */
+    private int partialExecutionCount(int order) {
+        List<OrderPartialExecution> earlier = earlierPartialExecutions.isEmpty() ? null : earlierPartialExecutions.get(order);
+        return (earlier != null ? earlier.size() : 0) + historyEnd(order) - orders.getInt(order, HISTORY_START);
+    }
+
+    /**
+     * Passes the partial executions of the order with their indexes, the ones on the tape from the latest execution
+     * back, following the links of the fills.
+     */
+    private void forEachPartialExecution(int order, OrderArchive.PartialExecutionConsumer consumer) {
+        List<OrderPartialExecution> earlier = earlierPartialExecutions.isEmpty() ? null : earlierPartialExecutions.get(order);
+        int earlierCount = 0;
+        if (earlier != null) {
+            for (OrderPartialExecution partialExecution : earlier) {
+                consumer.accept(earlierCount++, partialExecution.getQuantity(), partialExecution.getPrice());
+            }
+        }
+
+        int from = orders.getInt(order, HISTORY_START);
+        int fill = orders.getInt(order, FILLS);
+        for (int execution = historyEnd(order) - 1; execution >= from; execution--) {
+            int quantity = 0;
+            if (fill != NONE && fills.getInt(fill, FILL_EXECUTION) == execution) {
+                quantity = fills.getInt(fill, FILL_QUANTITY);
+                fill = fills.getInt(fill, FILL_PREVIOUS);
+            }
+            consumer.accept(earlierCount + execution - from, quantity, executions.get(execution).getPrice());
+        }
+    }
+
+    private int historyEnd(int order) {
+        int historyEnd = orders.getInt(order, HISTORY_END);
+        return historyEnd != ACTIVE_HISTORY ? historyEnd : executions.size();
+    }
+
+    /**
+     * An order record as the archive reads it, without building the order.
+     */
+    private class RecordOrder implements OrderArchive.FinishedOrder {
+        private int order;
+
+        @Override
+        public long getInstrumentId() {
+            return instrumentId;
+        }
+
+        @Override
+        public long getOrderId() {
+            return orders.getLong(order, ORDER_ID);
+        }
+
+        @Override
+        public long getEntryTime() {
+            return orders.getLong(order, ENTRY_TIME);
+        }
+
+        @Override
+        public long getExecutionTime() {
+            return orders.getLong(order, EXECUTION_TIME);
+        }
+
+        @Override
+        public long getLimitPrice() {
+            return orders.getLong(order, LIMIT_PRICE);
+        }
+
+        @Override
+        public int getQuantity() {
+            return orders.getInt(order, QUANTITY);
+        }
+
+        @Override
+        public int getExecutedQuantity() {
+            return orders.getInt(order, EXECUTED_QUANTITY);
+        }
+
+        @Override
+        public int getPartialExecutionCount() {
+            return partialExecutionCount(order);
+        }
+
+        @Override
+        public void forEachPartialExecution(OrderArchive.PartialExecutionConsumer consumer) {
+            OffHeapOrderBook.this.forEachPartialExecution(order, consumer);
+        }
+    }
+
+    private int orderOf(int arrival) {
+        return arrivals.getInt(arrival, ARRIVAL_ORDER);
+    }
+
+    private int unexecutedQuantity(int order) {
+        return orders.getInt(order, QUANTITY) - orders.getInt(order, EXECUTED_QUANTITY);
+    }
+
+    private void putIndex(long orderId, int arrival) {
+        index.putInt(indexSlot(orderId) << 2, arrival);
+
+        if (++indexSize * 2 > index.capacity() >> 2) {
+            ByteBuffer oldIndex = index;
+            index = newIndex(oldIndex.capacity() >> 1); // twice the slots
+
+            for (int i = 0; i < oldIndex.capacity(); i += 4) {
+                int a = oldIndex.getInt(i);
+                if (a != NONE) {
+                    index.putInt(indexSlot(arrivals.getLong(a, ARRIVAL_ORDER_ID)) << 2, a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Slot of the order id in the index, or the empty slot where it belongs.
+     */
+    private int indexSlot(long orderId) {
+        int mask = (index.capacity() >> 2) - 1;
+        int i = (int) (orderId * 0x9E3779B97F4A7C15L >>> 32) & mask;
+
+        while (true) {
+            int arrival = index.getInt(i << 2);
+            if (arrival == NONE || arrivals.getLong(arrival, ARRIVAL_ORDER_ID) == orderId) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private static ByteBuffer newIndex(int slots) {
+        ByteBuffer index = ByteBuffer.allocateDirect(slots << 2).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < slots; i++) {
+            index.putInt(i << 2, NONE);
+        }
+        return index;
+    }
+
+    private void validate(long instrumentId) {
+        if (this.instrumentId != instrumentId) {
+            throw new IllegalStateException("wrong order book " + this.instrumentId + " != " + instrumentId);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Order;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static com.acme.orderbook.book.OffHeapOrderBook.*;
+
+/**
+ * The {@link PriceLadder} of an {@link OffHeapOrderBook}. Every level is a record in an off-heap slab with its demand
+ * and an off-heap list of the arrival indexes of its orders in time priority, like {@link PriceLevel} keeps its slots.
+ * Contiguous lists rather than links through the order records keep collecting the orders of an execution a bulk copy
+ * instead of a cache miss per order.
+ * Only the sorted level prices and the fenwick trees over the levels stay on the heap, they grow with the number of
+ * levels, not with the number of orders.
+ */
+class OffHeapPriceLadder {
+
+    // level record layout
+    private static final int PRICE = 0;
+    private static final int DEMAND = 8;
+    private static final int LIST = 16; // block of the arrival index list
+    private static final int ORDER_COUNT = 24;
+    private static final int LIST_SIZE_CLASS = 28;
+    private static final int LEVEL_SIZE = 32;
+
+    private final OffHeapSlab orders;
+    private final OffHeapSlab arrivals;
+    private final OffHeapSlab levels = new OffHeapSlab(LEVEL_SIZE, 10);
+    private final OffHeapIntLists lists = new OffHeapIntLists();
+    private final int marketLevel;
+
+    private long[] prices = new long[16]; // ticks ascending
+    private int[] levelRefs = new int[16];
+    private int size;
+
+    private long[] demandTree = new long[17]; // 1-based fenwick trees over the limit levels
+    private int[] orderCountTree = new int[17];
+    private boolean treesStale;
+
+    private long limitDemand;
+    private int limitOrderCount;
+
+    OffHeapPriceLadder(OffHeapSlab orders, OffHeapSlab arrivals) {
+        this.orders = orders;
+        this.arrivals = arrivals;
+        this.marketLevel = newLevel(Order.MARKET_PRICE);
+    }
+
+    void add(int order) {
+        int unexecutedQuantity = unexecutedQuantity(order);
+        long limitPrice = orders.getLong(order, LIMIT_PRICE);
+        int level;
+
+        if (limitPrice != Order.MARKET_PRICE) {
+            int i = indexOf(limitPrice);
+            if (i < 0) {
+                i = insertLevel(-i - 1, limitPrice);
+            }
+            level = levelRefs[i];
+            updateTrees(i, unexecutedQuantity, 1);
+
+            limitDemand += unexecutedQuantity;
+            limitOrderCount++;
+        } else {
+            level = marketLevel;
+        }
+        append(level, orders.getInt(order, ARRIVAL));
+        levels.putLong(level, DEMAND, levels.getLong(level, DEMAND) + unexecutedQuantity);
+    }
+
+    /**
+     * Reduces the demand of the order's level after a partial execution was added to the order.
+     */
+    void reduceDemand(int order, int quantity) {
+        if (quantity == 0) {
+            return;
+        }
+        long limitPrice = orders.getLong(order, LIMIT_PRICE);
+
+        if (limitPrice != Order.MARKET_PRICE) {
+            int i = indexOf(limitPrice);
+            levels.putLong(levelRefs[i], DEMAND, levels.getLong(levelRefs[i], DEMAND) - quantity);
+            updateTrees(i, -quantity, 0);
+            limitDemand -= quantity;
+        } else {
+            levels.putLong(marketLevel, DEMAND, levels.getLong(marketLevel, DEMAND) - quantity);
+        }
+    }
+
+    /**
+     * Removes fully executed orders from the levels valid at the given price, the removed order records are added to
+     * the list.
+     */
+    void removeExecutedOrders(long price, SlotList removedOrders) {
+        removeExecutedOrders(marketLevel, removedOrders);
+
+        for (int i = size - 1, from = lowerBound(price); i >= from; i--) {
+            int level = levelRefs[i];
+            int removed = removeExecutedOrders(level, removedOrders);
+
+            if (removed > 0) {
+                limitOrderCount -= removed;
+                if (levels.getInt(level, ORDER_COUNT) == 0) {
+                    removeLevel(i);
+                } else {
+                    updateTrees(i, 0, -removed);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            freeLevel(levelRefs[i]);
+        }
+        lists.free(levels.getLong(marketLevel, LIST), levels.getInt(marketLevel, LIST_SIZE_CLASS));
+        resetLevel(marketLevel);
+
+        size = 0;
+        limitDemand = 0;
+        limitOrderCount = 0;
+        treesStale = true;
+    }
+
+    /**
+     * Collects the arrival indexes of the orders valid at the given price in time priority.
+     */
+    void getValidOrders(long price, SlotList arrivals) {
+        arrivals.clear();
+
+        collect(marketLevel, arrivals);
+        for (int i = lowerBound(price); i < size; i++) {
+            collect(levelRefs[i], arrivals);
+        }
+        arrivals.sort();
+    }
+
+    /**
+     * Collects the arrival indexes of the orders invalid at the given price in time priority.
+     */
+    void getInvalidOrders(long price, SlotList arrivals) {
+        arrivals.clear();
+
+        for (int i = 0, to = lowerBound(price); i < to; i++) {
+            collect(levelRefs[i], arrivals);
+        }
+        arrivals.sort();
+    }
+
+    /**
+     * Collects the arrival indexes of all active orders in time priority.
+     */
+    void getOrders(SlotList arrivals) {
+        getValidOrders(Long.MIN_VALUE, arrivals);
+    }
+
+    /**
+     * Visits the order records of all active orders, level by level.
+     */
+    void forEachOrder(IntConsumer action) {
+        forEachOrder(marketLevel, action);
+        for (int i = 0; i < size; i++) {
+            forEachOrder(levelRefs[i], action);
+        }
+    }
+
+    int getOrderCount() {
+        return levels.getInt(marketLevel, ORDER_COUNT) + limitOrderCount;
+    }
+
+    long getMarketDemand() {
+        return levels.getLong(marketLevel, DEMAND);
+    }
+
+    long getValidDemand(long price) {
+        return getMarketDemand() + limitDemand - getInvalidDemand(price);
+    }
+
+    long getInvalidDemand(long price) {
+        return prefixDemand(lowerBound(price));
+    }
+
+    int getValidOrderCount(long price) {
+        return levels.getInt(marketLevel, ORDER_COUNT) + limitOrderCount - getInvalidOrderCount(price);
+    }
+
+    int getInvalidOrderCount(long price) {
+        return prefixOrderCount(lowerBound(price));
+    }
+
+    int getLimitLevelCount() {
+        return size;
+    }
+
+    long getLimitLevelPrice(int i) {
+        return prices[i];
+    }
+
+    long getLimitLevelDemand(int i) {
+        return levels.getLong(levelRefs[i], DEMAND);
+    }
+
+    long getAllocatedBytes() {
+        return levels.getAllocatedBytes() + lists.getAllocatedBytes();
+    }
+
+    private int unexecutedQuantity(int order) {
+        return orders.getInt(order, QUANTITY) - orders.getInt(order, EXECUTED_QUANTITY);
+    }
+
+    private int newLevel(long price) {
+        int level = levels.allocate();
+        levels.putLong(level, PRICE, price);
+        resetLevel(level);
+        return level;
+    }
+
+    private void resetLevel(int level) {
+        levels.putLong(level, DEMAND, 0);
+        levels.putInt(level, ORDER_COUNT, 0);
+        levels.putInt(level, LIST_SIZE_CLASS, OffHeapIntLists.minSizeClass());
+        levels.putLong(level, LIST, lists.allocate(OffHeapIntLists.minSizeClass()));
+    }
+
+    private void freeLevel(int level) {
+        lists.free(levels.getLong(level, LIST), levels.getInt(level, LIST_SIZE_CLASS));
+        levels.free(level);
+    }
+
+    private void append(int level, int arrival) {
+        long list = levels.getLong(level, LIST);
+        int sizeClass = levels.getInt(level, LIST_SIZE_CLASS);
+        int count = levels.getInt(level, ORDER_COUNT);
+
+        if (count == 1 << sizeClass) {
+            list = lists.grow(list, sizeClass, count);
+            levels.putLong(level, LIST, list);
+            levels.putInt(level, LIST_SIZE_CLASS, sizeClass + 1);
+        }
+        lists.set(list, count, arrival);
+        levels.putInt(level, ORDER_COUNT, count + 1);
+    }
+
+    private int removeExecutedOrders(int level, SlotList removedOrders) {
+        long list = levels.getLong(level, LIST);
+        int count = levels.getInt(level, ORDER_COUNT);
+        int kept = 0;
+
+        for (int i = 0; i < count; i++) {
+            int arrival = lists.get(list, i);
+            int order = arrivals.getInt(arrival, ARRIVAL_ORDER);
+            if (unexecutedQuantity(order) == 0) {
+                removedOrders.add(order);
+            } else {
+                lists.set(list, kept++, arrival);
+            }
+        }
+        levels.putInt(level, ORDER_COUNT, kept);
+        return count - kept;
+    }
+
+    private void collect(int level, SlotList arrivals) {
+        lists.copyTo(levels.getLong(level, LIST), levels.getInt(level, ORDER_COUNT), arrivals);
+    }
+
+    private void forEachOrder(int level, IntConsumer action) {
+        long list = levels.getLong(level, LIST);
+        for (int i = 0, count = levels.getInt(level, ORDER_COUNT); i < count; i++) {
+            action.accept(arrivals.getInt(lists.get(list, i), ARRIVAL_ORDER));
+        }
+    }
+
+    private int indexOf(long price) {
+        return Arrays.binarySearch(prices, 0, size, price);
+    }
+
+    /**
+     * Index of the first level with a price greater or equal to the given price.
+     */
+    private int lowerBound(long price) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int insertLevel(int i, long price) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            levelRefs = Arrays.copyOf(levelRefs, size * 2);
+        }
+        System.arraycopy(prices, i, prices, i + 1, size - i);
+        System.arraycopy(levelRefs, i, levelRefs, i + 1, size - i);
+
+        prices[i] = price;
+        levelRefs[i] = newLevel(price);
+        size++;
+        treesStale = true;
+
+        return i;
+    }
+
+    private void removeLevel(int i) {
+        freeLevel(levelRefs[i]);
+
+        System.arraycopy(prices, i + 1, prices, i, size - i - 1);
+        System.arraycopy(levelRefs, i + 1, levelRefs, i, size - i - 1);
+
+        size--;
+        treesStale = true;
+    }
+
+    private void updateTrees(int i, long demandDelta, int orderCountDelta) {
+        if (treesStale) {
+            return; // picked up by the next rebuild
+        }
+        for (int j = i + 1; j <= size; j += j & -j) {
+            demandTree[j] += demandDelta;
+            orderCountTree[j] += orderCountDelta;
+        }
+    }
+
+    /**
+     * Demand of the first count levels.
+     */
+    private long prefixDemand(int count) {
+        rebuildTreesIfStale();
+
+        long sum = 0;
+        for (int j = count; j > 0; j -= j & -j) {
+            sum += demandTree[j];
+        }
+        return sum;
+    }
+
+    /**
+     * Number of orders on the first count levels.
+     */
+    private int prefixOrderCount(int count) {
+        rebuildTreesIfStale();
+
+        int sum = 0;
+        for (int j = count; j > 0; j -= j & -j) {
+            sum += orderCountTree[j];
+        }
+        return sum;
+    }
+
+    private void rebuildTreesIfStale() {
+        if (!treesStale) {
+            return;
+        }
+        if (demandTree.length < size + 1) {
+            demandTree = new long[prices.length + 1];
+            orderCountTree = new int[prices.length + 1];
+        }
+        Arrays.fill(demandTree, 0L);
+        Arrays.fill(orderCountTree, 0);
+
+        for (int j = 1; j <= size; j++) {
+            demandTree[j] += levels.getLong(levelRefs[j - 1], DEMAND);
+            orderCountTree[j] += levels.getInt(levelRefs[j - 1], ORDER_COUNT);
+
+            int parent = j + (j & -j);
+            if (parent <= size) {
+                demandTree[parent] += demandTree[j];
+                orderCountTree[parent] += orderCountTree[j];
+            }
+        }
+        treesStale = false;
+    }
+}
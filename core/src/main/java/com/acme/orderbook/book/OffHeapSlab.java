@@ -0,0 +1,99 @@
+package com.acme.orderbook.book;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Fixed size records in direct buffers allocated in chunks of a power of two number of records, a record is addressed
+ * by its int reference. Freed records are kept on a free list threaded through their first four bytes and handed out
+ * again before the slab grows. Not thread safe, every book owns its slabs.
+ */
+class OffHeapSlab {
+
+    static final int NONE = -1;
+
+    private final int recordSize;
+    private final int chunkBits;
+    private final int chunkMask;
+
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+    private int size; // records ever handed out, freed ones included
+    private int freeHead = NONE;
+    private int freeCount;
+
+    OffHeapSlab(int recordSize, int chunkBits) {
+        this.recordSize = recordSize;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1 << chunkBits) - 1;
+    }
+
+    int allocate() {
+        if (freeHead != NONE) {
+            int ref = freeHead;
+            freeHead = getInt(ref, 0);
+            freeCount--;
+            return ref;
+        }
+        if (size == chunkCount << chunkBits) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            chunks[chunkCount++] = ByteBuffer.allocateDirect(recordSize << chunkBits).order(ByteOrder.nativeOrder());
+        }
+        return size++;
+    }
+
+    void free(int ref) {
+        putInt(ref, 0, freeHead);
+        freeHead = ref;
+        freeCount++;
+    }
+
+    /**
+     * Number of records in use.
+     */
+    int size() {
+        return size - freeCount;
+    }
+
+    /**
+     * References handed out so far, a slab that never frees uses them as sequential indexes.
+     */
+    int getHighWaterMark() {
+        return size;
+    }
+
+    long getAllocatedBytes() {
+        return (long) chunkCount * (recordSize << chunkBits);
+    }
+
+    long getLong(int ref, int field) {
+        return chunks[ref >>> chunkBits].getLong(offset(ref, field));
+    }
+
+    void putLong(int ref, int field, long value) {
+        chunks[ref >>> chunkBits].putLong(offset(ref, field), value);
+    }
+
+    int getInt(int ref, int field) {
+        return chunks[ref >>> chunkBits].getInt(offset(ref, field));
+    }
+
+    void putInt(int ref, int field, int value) {
+        chunks[ref >>> chunkBits].putInt(offset(ref, field), value);
+    }
+
+    byte getByte(int ref, int field) {
+        return chunks[ref >>> chunkBits].get(offset(ref, field));
+    }
+
+    void putByte(int ref, int field, byte value) {
+        chunks[ref >>> chunkBits].put(offset(ref, field), value);
+    }
+
+    private int offset(int ref, int field) {
+        return (ref & chunkMask) * recordSize + field;
+    }
+}
@@ -0,0 +1,109 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.common.OrderBookUtil;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keeps the orders a book has finished with. Once an order is executed or canceled the book hands it to the archive
+ * and drops it from its own storage, later reads of the order go through {@link #get(long)}.
+ */
+public interface OrderArchive {
+
+    long NO_EXECUTION = Long.MIN_VALUE; // execution time of an order that was not executed
+
+    /**
+     * Called by the book's thread while holding the book's lock, the order does not change anymore. The order is read
+     * in place from the book's storage and only valid during the call.
+     */
+    void archive(FinishedOrder order);
+
+    /**
+     * The archived order or null.
+     */
+    Order get(long orderId);
+
+    /**
+     * Fields of a finished order read from wherever the book keeps them, so handing an order to the archive does not
+     * build an {@link Order}.
+     */
+    interface FinishedOrder {
+        long getInstrumentId();
+        long getOrderId();
+        long getEntryTime(); // epoch nanos
+        long getExecutionTime(); // epoch nanos, NO_EXECUTION if not executed
+        long getLimitPrice();
+        int getQuantity();
+        int getExecutedQuantity();
+
+        int getPartialExecutionCount();
+
+        /**
+         * Passes every partial execution with its index in the order's history, not necessarily in that order.
+         */
+        void forEachPartialExecution(PartialExecutionConsumer consumer);
+
+        /**
+         * An order already built, for orders that are not kept in a book's storage.
+         */
+        static FinishedOrder of(Order order) {
+            return new FinishedOrder() {
+                @Override
+                public long getInstrumentId() {
+                    return order.getInstrumentId();
+                }
+
+                @Override
+                public long getOrderId() {
+                    return order.getOrderId();
+                }
+
+                @Override
+                public long getEntryTime() {
+                    return OrderBookUtil.toEpochNanos(order.getEntryDate());
+                }
+
+                @Override
+                public long getExecutionTime() {
+                    LocalDateTime executionDate = order.getExecutionDate();
+                    return executionDate != null ? OrderBookUtil.toEpochNanos(executionDate) : NO_EXECUTION;
+                }
+
+                @Override
+                public long getLimitPrice() {
+                    return order.getLimitPrice();
+                }
+
+                @Override
+                public int getQuantity() {
+                    return order.getQuantity();
+                }
+
+                @Override
+                public int getExecutedQuantity() {
+                    return order.getExecutedQuantity();
+                }
+
+                @Override
+                public int getPartialExecutionCount() {
+                    return order.getPartialExecutions().size();
+                }
+
+                @Override
+                public void forEachPartialExecution(PartialExecutionConsumer consumer) {
+                    List<OrderPartialExecution> partialExecutions = order.getPartialExecutions();
+                    for (int i = 0; i < partialExecutions.size(); i++) {
+                        consumer.accept(i, partialExecutions.get(i).getQuantity(), partialExecutions.get(i).getPrice());
+                    }
+                }
+            };
+        }
+    }
+
+    interface PartialExecutionConsumer {
+        void accept(int index, int quantity, long price);
+    }
+}
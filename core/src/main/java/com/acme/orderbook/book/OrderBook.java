@@ -1,11 +1,18 @@
 package com.acme.orderbook.book;
 
 import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.ExecutionPreview;
 import com.acme.orderbook.model.Order;
 import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.snapshot.BookSnapshot;
+
+import java.util.List;
 
 /**
  * Created by robertk on 6/8/2019.
+ *
+ * Books are not thread safe, their callers run one command at a time. Heap books also copy single orders and compute
+ * previews on any thread while a command runs, see {@link OrderBookImpl#getOrder(long)}.
  */
 public interface OrderBook {
     void open();
@@ -13,9 +20,23 @@ public interface OrderBook {
     boolean isOpen();
 
     void addOrder(Order order);
+    void addOrders(List<Order> orders);
 
     void addExecution(Execution execution);
     boolean isExecuted();
 
+    /**
+     * How the execution would be distributed, the book is not changed. Fails like addExecution if the book is open or
+     * executed.
+     */
+    ExecutionPreview previewExecution(Execution execution);
+
     Statistics generateStatistics();
+
+    BookSnapshot snapshot();
+
+    /**
+     * A detached copy of the order, null if the book never had it.
+     */
+    Order getOrder(long orderId);
 }
@@ -1,21 +1,19 @@
 package com.acme.orderbook.book;
 
-import com.acme.orderbook.common.OrderBookUtil;
 import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.ExecutionPreview;
 import com.acme.orderbook.model.Order;
 import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.snapshot.BookSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Created by robertk on 6/8/2019.
@@ -28,13 +26,85 @@ public class OrderBookImpl implements OrderBook {
     private AtomicBoolean open = new AtomicBoolean(true);
     private AtomicBoolean executed = new AtomicBoolean(false);
 
-    private final ConcurrentMap<Long, Order> activeOrderMap = new ConcurrentHashMap<>(); // orderId -> order
-    private final ConcurrentMap<Long, Order> executedOrderMap = new ConcurrentHashMap<>(); // orderId -> order
-    private final ConcurrentMap<Long, Order> canceledOrderMap = new ConcurrentHashMap<>(); // orderId -> order
+    private static final int INITIAL_CAPACITY = 16; // kept small, a node runs tens of thousands of mostly small books
+    private static final int PARALLEL_CHUNK_SIZE = 32768;
+
+    private final OrderStore orderStore; // orders of the book, state column tells active/executed/canceled
     private final List<Execution> executions = new ArrayList<>();
+    private final PriceLadder priceLadder; // active orders by limit price
+    private final ActiveOrderStatistics activeOrderStatistics = new ActiveOrderStatistics();
+    private final ProRataAllocator allocator = new ProRataAllocator(INITIAL_CAPACITY);
+
+    // scratch lists reused by every execution
+    private final SlotList validSlots = new SlotList();
+    private final SlotList canceledSlots = new SlotList();
+    private final SlotList executedSlots = new SlotList();
+
+    private int parallelThreshold = Integer.MAX_VALUE; // valid orders from which executions are distributed in parallel
 
     public OrderBookImpl(long instrumentId) {
+        this(instrumentId, null);
+    }
+
+    /**
+     * Executed and canceled orders are handed to the archive and dropped from the book, without one the book keeps them.
+     */
+    public OrderBookImpl(long instrumentId, OrderArchive archive) {
         this.instrumentId = instrumentId;
+        this.orderStore = new OrderStore(instrumentId, INITIAL_CAPACITY, archive);
+        this.priceLadder = new PriceLadder(orderStore);
+    }
+
+    /**
+     * Restores the book from a snapshot.
+     */
+    public OrderBookImpl(BookSnapshot snapshot) {
+        this(snapshot, null);
+    }
+
+    /**
+     * Restores the book from a snapshot, the finished orders go straight to the archive.
+     */
+    public OrderBookImpl(BookSnapshot snapshot, OrderArchive archive) {
+        this(snapshot.getInstrumentId(), archive);
+
+        open.set(snapshot.isOpen());
+        executed.set(snapshot.isExecuted());
+
+        for (int i = 0; i < snapshot.getExecutionCount(); i++) {
+            executions.add(new Execution(instrumentId, snapshot.getExecutionQuantities()[i], snapshot.getExecutionPrices()[i]));
+            orderStore.addExecution(snapshot.getExecutionPrices()[i]);
+        }
+
+        int executedOrders = 0;
+        int canceledOrders = 0;
+
+        for (int i = 0; i < snapshot.getOrderCount(); i++) {
+            byte state = snapshot.getStates()[i];
+            int slot = orderStore.restore(snapshot, i);
+
+            if (state == OrderStore.ACTIVE) {
+                priceLadder.add(slot);
+                activeOrderStatistics.orderAdded(snapshot.getQuantities()[i], snapshot.getEntryTimes()[i]);
+            } else {
+                if (state == OrderStore.EXECUTED) {
+                    executedOrders++;
+                } else {
+                    canceledOrders++;
+                }
+                orderStore.release(slot);
+            }
+        }
+        activeOrderStatistics.ordersRestored(executedOrders, canceledOrders);
+        compactOrderStore();
+    }
+
+    /**
+     * Executions with at least the given number of valid orders are distributed in chunks on the fork-join common
+     * pool, with the same result as the sequential distribution.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
     }
 
     @Override
@@ -65,17 +135,129 @@ public class OrderBookImpl implements OrderBook {
         validate(order.getInstrumentId());
 
         if (isOpen()) {
-            activeOrderMap.put(order.getOrderId(), order);
+            long stamp = orderStore.beginWrite();
+            try {
+                int slot = orderStore.add(order);
+                priceLadder.add(slot);
+                activeOrderStatistics.orderAdded(order.getQuantity(), orderStore.getEntryTime(slot));
+            } finally {
+                orderStore.endWrite(stamp);
+            }
+        } else {
+            throw new IllegalStateException("cannot add orders to closed book " + instrumentId);
+        }
+    }
+
+    /**
+     * Adds all orders or none of them, the store is locked for writing only once for the whole batch.
+     */
+    @Override
+    public void addOrders(List<Order> orders) {
+        for (Order order : orders) {
+            validate(order.getInstrumentId());
+        }
+
+        if (isOpen()) {
+            long stamp = orderStore.beginWrite();
+            try {
+                for (Order order : orders) {
+                    int slot = orderStore.add(order);
+                    priceLadder.add(slot);
+                    activeOrderStatistics.orderAdded(order.getQuantity(), orderStore.getEntryTime(slot));
+                }
+            } finally {
+                orderStore.endWrite(stamp);
+            }
         } else {
             throw new IllegalStateException("cannot add orders to closed book " + instrumentId);
         }
     }
 
+    /**
+     * Readers copying single orders see the book either before or after the whole execution.
+     */
     @Override
     public void addExecution(Execution execution) {
         validate(execution.getInstrumentId());
 
-        double executionPrice = execution.getPrice();
+        long stamp = orderStore.beginWrite();
+        try {
+            execute(execution);
+        } finally {
+            orderStore.endWrite(stamp);
+        }
+    }
+
+    /**
+     * Computed without holding up the book's writers and without copying the book, see {@link OrderStore#read}.
+     */
+    @Override
+    public ExecutionPreview previewExecution(Execution execution) {
+        validate(execution.getInstrumentId());
+
+        return orderStore.read(() -> {
+            checkExecutable();
+            return preview(execution);
+        });
+    }
+
+    private void checkExecutable() {
+        if (isOpen()) {
+            throw new IllegalStateException("cannot add execution to open book " + instrumentId);
+        } else if (isExecuted()) {
+            throw new IllegalStateException("cannot add execution to already executed book " + instrumentId);
+        }
+    }
+
+    /**
+     * Marks the slots of the valid orders of the price ladder in a bitmap, whose set bits are then walked in slot order,
+     * which is time priority, up to the first order once the quantity is distributed. Every fill takes at least one, so
+     * there are at most as many fills as the quantity. The ladder is only read, its demand trees are left alone since
+     * reading them may rebuild them.
+     */
+    private ExecutionPreview preview(Execution execution) {
+        long[] validSlots = new long[(orderStore.size() + 63) >>> 6];
+        long validDemand = markSlots(priceLadder.getMarketLevel(), validSlots);
+        for (int i = priceLadder.getFirstValidLevel(execution.getPrice()); i < priceLadder.getLimitLevelCount(); i++) {
+            validDemand += markSlots(priceLadder.getLimitLevel(i), validSlots);
+        }
+        if (validDemand == 0) {
+            return new ExecutionPreview(execution, new long[0], new int[0], 0, true); // executed without a fill
+        }
+        int quantity = execution.getQuantity();
+        int capacity = Math.min(quantity, orderStore.size());
+        long[] orderIds = new long[capacity];
+        int[] fills = new int[capacity];
+        int fillCount = 0;
+        int filled = 0;
+
+        for (int w = 0; w < validSlots.length && filled < quantity; w++) {
+            for (long bits = validSlots[w]; bits != 0 && filled < quantity; bits &= bits - 1) {
+                int slot = w << 6 | Long.numberOfTrailingZeros(bits);
+                int fill = ProRataAllocator.allocation(orderStore.getUnexecutedQuantity(slot), validDemand, quantity, filled);
+                if (fill > 0) {
+                    orderIds[fillCount] = orderStore.getOrderId(slot);
+                    fills[fillCount++] = fill;
+                    filled += fill;
+                }
+            }
+        }
+        return new ExecutionPreview(execution, orderIds, fills, fillCount, filled == validDemand);
+    }
+
+    private long markSlots(PriceLevel level, long[] bitmap) {
+        SlotList slots = level.getSlots();
+        long demand = 0;
+        for (int i = 0; i < slots.size(); i++) {
+            int slot = slots.get(i);
+            bitmap[slot >>> 6] |= 1L << slot;
+            demand += orderStore.getUnexecutedQuantity(slot);
+        }
+        return demand;
+    }
+
+    private void execute(Execution execution) {
+        long executionPrice = execution.getPrice();
         int executionQuantity = execution.getQuantity();
 
         if (!isOpen()) {
@@ -83,26 +265,26 @@ public class OrderBookImpl implements OrderBook {
 
             if (!isExecuted()) {
                 executions.add(execution);
-                List<Order> validOrders = getActiveValidOrders(executionPrice);
-                List<Order> invalidOrders = getActiveInvalidOrders(executionPrice);
-
-                List<Integer> demands = validOrders.stream().map(Order::getUnexecutedQuantity).collect(Collectors.toList());
-                List<Integer> orderPartialExecutionQuantities = calculateOrderPartialExecutionQuantities(demands, executionQuantity);
+                orderStore.addExecution(executionPrice); // invalid orders only take part by being active
+                priceLadder.getValidOrders(executionPrice, validSlots);
 
-                for (int i = 0; i < orderPartialExecutionQuantities.size(); i++) {
-                    validOrders.get(i).addPartialExecution(orderPartialExecutionQuantities.get(i), executionPrice);
+                if (validSlots.size() >= parallelThreshold) {
+                    distributeParallel(executionPrice, executionQuantity);
+                } else {
+                    distribute(executionPrice, executionQuantity);
                 }
 
-                for (Order order : invalidOrders) {
-                    order.addPartialExecution(0, executionPrice);
-                }
+                executedSlots.clear();
+                priceLadder.removeExecutedOrders(executionPrice, executedSlots);
 
-                validOrders.stream().filter(Order::isExecuted).forEach(o -> {
-                    activeOrderMap.remove(o.getOrderId());
-                    executedOrderMap.put(o.getOrderId(), o);
-                });
+                for (int i = 0; i < executedSlots.size(); i++) {
+                    int slot = executedSlots.get(i);
+                    activeOrderStatistics.orderExecuted(orderStore.getQuantity(slot), orderStore.getEntryTime(slot));
+                    orderStore.release(slot);
+                }
 
                 checkIfBookExecuted(executionPrice);
+                compactOrderStore();
             } else {
                 throw new IllegalStateException("cannot add execution to already executed book " + instrumentId);
             }
@@ -111,34 +293,89 @@ public class OrderBookImpl implements OrderBook {
         }
     }
 
-    List<Integer> calculateOrderPartialExecutionQuantities(List<Integer> demands, int quantityToDistribute) {
-        int cumulativeDemand = demands.stream().mapToInt(d -> d).sum();
-        List<Integer> partialExecutionQuantities = new ArrayList<>();
+    private void distribute(long executionPrice, int executionQuantity) {
+        int validCount = validSlots.size();
+        int[] demands = allocator.demands(validCount);
+        for (int i = 0; i < validCount; i++) {
+            demands[i] = orderStore.getUnexecutedQuantity(validSlots.get(i));
+        }
+        int[] orderPartialExecutionQuantities = allocator.allocate(validCount, executionQuantity);
 
-        int distributedQuantity = 0;
+        for (int i = 0; i < validCount; i++) {
+            int slot = validSlots.get(i);
+            int partialExecutionQuantity = orderPartialExecutionQuantities[i];
 
-        for (int demand : demands) {
-            double pctToApply = (double) demand / (double) cumulativeDemand;
-            int partialExecutionQuantity = OrderBookUtil.min(quantityToDistribute - distributedQuantity, demand, (int) Math.ceil(pctToApply * quantityToDistribute));
+            if (partialExecutionQuantity > 0) {
+                orderStore.addPartialExecution(slot, partialExecutionQuantity, executionPrice);
+                priceLadder.reduceDemand(slot, partialExecutionQuantity);
+            }
+        }
+    }
 
-            partialExecutionQuantities.add(partialExecutionQuantity);
-            distributedQuantity += partialExecutionQuantity;
+    /**
+     * Every order is only touched by the chunk holding it, the price ladder is shared and updated afterwards.
+     */
+    private void distributeParallel(long executionPrice, int executionQuantity) {
+        int validCount = validSlots.size();
+        int[] demands = allocator.demands(validCount);
+        forEachChunk(validCount, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                demands[i] = orderStore.getUnexecutedQuantity(validSlots.get(i));
+            }
+        });
+        int[] orderPartialExecutionQuantities = allocator.allocateParallel(validCount, executionQuantity, PARALLEL_CHUNK_SIZE);
+
+        forEachChunk(validCount, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (orderPartialExecutionQuantities[i] > 0) {
+                    orderStore.addPartialExecution(validSlots.get(i), orderPartialExecutionQuantities[i], executionPrice);
+                }
+            }
+        });
+
+        for (int i = 0; i < validCount; i++) {
+            priceLadder.reduceDemand(validSlots.get(i), orderPartialExecutionQuantities[i]);
         }
-        return partialExecutionQuantities;
     }
 
-    private void checkIfBookExecuted(double executionPrice) {
+    private static void forEachChunk(int count, ChunkAction action) {
+        IntStream.range(0, (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE).parallel()
+                .forEach(c -> action.run(c * PARALLEL_CHUNK_SIZE, Math.min(count, (c + 1) * PARALLEL_CHUNK_SIZE)));
+    }
+
+    private interface ChunkAction {
+        void run(int from, int to);
+    }
+
+    private void checkIfBookExecuted(long executionPrice) {
         if (!isExecuted()) {
             int validOrdersDemand = getActiveValidOrdersDemand(executionPrice);
 
             if (validOrdersDemand == 0) {
                 executed.set(true);
-                activeOrderMap.values().forEach(o -> canceledOrderMap.put(o.getOrderId(), o));
-                activeOrderMap.clear();
+
+                priceLadder.getOrders(canceledSlots);
+                for (int i = 0; i < canceledSlots.size(); i++) {
+                    int slot = canceledSlots.get(i);
+                    orderStore.setState(slot, OrderStore.CANCELED);
+                    orderStore.release(slot);
+                }
+                activeOrderStatistics.allOrdersCanceled(canceledSlots.size());
+                priceLadder.clear();
             }
         }
     }
 
+    /**
+     * Drops the slots of the archived orders once they make up half of the store, the ladder follows the moved slots.
+     */
+    private void compactOrderStore() {
+        int[] newSlots = orderStore.compactIfSparse();
+        if (newSlots != null) {
+            priceLadder.remapSlots(newSlots);
+        }
+    }
+
     @Override
     public boolean isExecuted() {
         return executed.get();
@@ -148,58 +385,105 @@ public class OrderBookImpl implements OrderBook {
     public Statistics generateStatistics() {
         Statistics s = new Statistics(instrumentId);
 
-        s.setActiveOrders(activeOrderMap.size());
-        s.setExecutedOrders(executedOrderMap.size());
-        s.setCanceledOrders(canceledOrderMap.size());
+        s.setActiveOrders(priceLadder.getOrderCount());
+        s.setExecutedOrders(activeOrderStatistics.getExecutedOrders());
+        s.setCanceledOrders(activeOrderStatistics.getCanceledOrders());
 
         if (getLastExecution() != null) {
-            double lastExecutionPrice = getLastExecution().getPrice();
+            long lastExecutionPrice = getLastExecution().getPrice();
 
             s.setLastExecutionPrice(lastExecutionPrice);
 
-            s.setActiveValidOrders(getActiveValidOrders(lastExecutionPrice).size());
-            s.setActiveInvalidOrders(getActiveInvalidOrders(lastExecutionPrice).size());
+            s.setActiveValidOrders(priceLadder.getValidOrderCount(lastExecutionPrice));
+            s.setActiveInvalidOrders(priceLadder.getInvalidOrderCount(lastExecutionPrice));
 
             s.setActiveValidOrdersDemand(getActiveValidOrdersDemand(lastExecutionPrice));
             s.setActiveInvalidOrdersDemand(getActiveInvalidOrdersDemand(lastExecutionPrice));
         }
 
-        activeOrderMap.values().stream().mapToInt(Order::getQuantity).max().ifPresent(s::setLargestActiveOrderQuantity);
-        activeOrderMap.values().stream().mapToInt(Order::getQuantity).min().ifPresent(s::setSmallestActiveOrderQuantity);
+        if (activeOrderStatistics.hasActiveOrders()) {
+            activeOrderStatistics.rescanIfStale(priceLadder, orderStore);
+            s.setLargestActiveOrderQuantity(activeOrderStatistics.getLargestQuantity());
+            s.setSmallestActiveOrderQuantity(activeOrderStatistics.getSmallestQuantity());
+
+            s.setFirstActiveOrderEntry(activeOrderStatistics.getFirstEntryDate());
+            s.setLastActiveOrderEntry(activeOrderStatistics.getLastEntryDate());
+        }
 
-        activeOrderMap.values().stream().map(Order::getEntryDate).min(Comparator.comparing(ldt -> ldt.toEpochSecond(ZoneOffset.UTC))).ifPresent(s::setFirstActiveOrderEntry);
-        activeOrderMap.values().stream().map(Order::getEntryDate).max(Comparator.comparing(ldt -> ldt.toEpochSecond(ZoneOffset.UTC))).ifPresent(s::setLastActiveOrderEntry);
+        int levelCount = priceLadder.getLimitLevelCount();
+        long[] limitPrices = new long[levelCount];
+        int[] limitDemands = new int[levelCount];
+        long[] validDemands = new long[levelCount];
+        long validDemand = priceLadder.getMarketLevel().getDemand();
 
-        for (Order order : activeOrderMap.values()) {
-            if (order.isLimitOrder()) {
-                int orderDemand = order.getUnexecutedQuantity();
-                double limitPrice = order.getLimitPrice();
+        for (int i = levelCount - 1; i >= 0; i--) { // from the top, the demand valid at a price includes all above it
+            PriceLevel level = priceLadder.getLimitLevel(i);
+            limitPrices[i] = level.getPrice();
+            limitDemands[i] = (int) level.getDemand();
 
-                Map<Double, Integer> t = s.getActiveOrderLimitBreakDownTable();
+            validDemand += level.getDemand();
+            validDemands[i] = validDemand;
+        }
+        s.setActiveOrderLimitBreakDown(limitPrices, limitDemands);
+        s.setDemandCurve(priceLadder.getMarketLevel().getDemand(), validDemands);
+        return s;
+    }
 
-                Integer currentCumulativeDemandPerLimitPrice = t.get(limitPrice);
-                int newCumulativeDemandPerLimitPrice = currentCumulativeDemandPerLimitPrice != null ? currentCumulativeDemandPerLimitPrice + orderDemand : orderDemand;
+    /**
+     * Copies the book's state, writing the copy out is left to the caller. The store's columns
+     * and the execution tape are copied, the archived orders of the book are read back from the archive.
+     */
+    @Override
+    public BookSnapshot snapshot() {
+        Order[] archivedOrders = orderStore.getArchivedOrders();
+        int partialCount = orderStore.getEarlierPartialCount();
+        for (Order archived : archivedOrders) {
+            partialCount += archived.getPartialExecutions().size();
+        }
+        BookSnapshot s = new BookSnapshot(instrumentId, isOpen(), isExecuted(), executions.size(), orderStore.getOrderCount(),
+                orderStore.getTotalFillCount(), partialCount);
 
-                t.put(limitPrice, newCumulativeDemandPerLimitPrice);
-            }
+        for (int i = 0; i < executions.size(); i++) {
+            s.getExecutionQuantities()[i] = executions.get(i).getQuantity();
+            s.getExecutionPrices()[i] = executions.get(i).getPrice();
         }
+        orderStore.copyTo(s, archivedOrders);
         return s;
     }
 
-    List<Order> getActiveValidOrders(double price) {
-        return activeOrderMap.values().stream().filter(o -> o.isValid(price)).collect(Collectors.toList());
+    /**
+     * Found without waiting for the book's commands, see {@link OrderStore#find(long)}.
+     */
+    @Override
+    public Order getOrder(long orderId) {
+        return orderStore.find(orderId);
+    }
+
+    /**
+     * Hands the active orders to the archive, called before the book is dropped so the orders stay available.
+     */
+    public void archiveActiveOrders() {
+        orderStore.archiveActiveOrders();
+    }
+
+    List<Order> getActiveValidOrders(long price) {
+        SlotList slots = new SlotList();
+        priceLadder.getValidOrders(price, slots);
+        return toOrders(slots);
     }
 
-    List<Order> getActiveInvalidOrders(double price) {
-        return activeOrderMap.values().stream().filter(o -> !o.isValid(price)).collect(Collectors.toList());
+    List<Order> getActiveInvalidOrders(long price) {
+        SlotList slots = new SlotList();
+        priceLadder.getInvalidOrders(price, slots);
+        return toOrders(slots);
     }
 
-    int getActiveValidOrdersDemand(double price) {
-        return activeOrderMap.values().stream().filter(o -> o.isValid(price)).mapToInt(Order::getUnexecutedQuantity).sum();
+    int getActiveValidOrdersDemand(long price) {
+        return (int) priceLadder.getValidDemand(price);
     }
 
-    int getActiveInvalidOrdersDemand(double price) {
-        return activeOrderMap.values().stream().filter(o -> !o.isValid(price)).mapToInt(Order::getUnexecutedQuantity).sum();
+    int getActiveInvalidOrdersDemand(long price) {
+        return (int) priceLadder.getInvalidDemand(price);
     }
 
     Execution getLastExecution() {
@@ -207,15 +491,35 @@ public class OrderBookImpl implements OrderBook {
     }
 
     Map<Long, Order> getActiveOrderMap() {
-        return activeOrderMap;
+        return getOrderMap(OrderStore.ACTIVE);
     }
 
     Map<Long, Order> getExecutedOrderMap() {
-        return executedOrderMap;
+        return getOrderMap(OrderStore.EXECUTED);
     }
 
     Map<Long, Order> getCanceledOrderMap() {
-        return canceledOrderMap;
+        return getOrderMap(OrderStore.CANCELED);
+    }
+
+    private Map<Long, Order> getOrderMap(byte state) {
+        Map<Long, Order> orderMap = new HashMap<>(); // orderId -> order
+
+        for (int slot = 0; slot < orderStore.size(); slot++) {
+            if (orderStore.getState(slot) == state) {
+                orderMap.put(orderStore.getOrderId(slot), orderStore.getOrder(slot));
+            }
+        }
+        return orderMap;
+    }
+
+    private List<Order> toOrders(SlotList slots) {
+        List<Order> orders = new ArrayList<>(slots.size());
+
+        for (int i = 0; i < slots.size(); i++) {
+            orders.add(orderStore.getOrder(slots.get(i)));
+        }
+        return orders;
     }
 
     private void validate(long instrumentId) {
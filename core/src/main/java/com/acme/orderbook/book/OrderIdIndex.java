@@ -0,0 +1,80 @@
+package com.acme.orderbook.book;
+
+import java.util.Arrays;
+
+/**
+ * Slots of the orders of a store by order id, for stores whose ids did not arrive in ascending order. Open addressing
+ * with linear probing over primitive arrays. A lookup only reads the arrays and probes at most the whole table, so the
+ * index can be read optimistically like the store's columns.
+ */
+class OrderIdIndex {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] orderIds;
+    private int[] slots;
+    private int size;
+
+    OrderIdIndex(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(expectedSize, 8) * 2) * 2);
+    }
+
+    void put(long orderId, int slot) {
+        if ((size + 1) * 2 > orderIds.length) {
+            rehash();
+        }
+        int mask = orderIds.length - 1;
+        int i = hash(orderId) & mask;
+        while (orderIds[i] != EMPTY && orderIds[i] != orderId) {
+            i = (i + 1) & mask;
+        }
+        if (orderIds[i] == EMPTY) {
+            size++;
+        }
+        orderIds[i] = orderId;
+        slots[i] = slot;
+    }
+
+    /**
+     * Slot of the order, -1 if the index does not have it.
+     */
+    int get(long orderId) {
+        long[] orderIds = this.orderIds;
+        int[] slots = this.slots;
+        int mask = orderIds.length - 1;
+
+        for (int probe = 0, i = hash(orderId) & mask; probe < orderIds.length; probe++, i = (i + 1) & mask) {
+            if (orderIds[i] == orderId) {
+                return slots[i];
+            } else if (orderIds[i] == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void rehash() {
+        long[] oldOrderIds = orderIds;
+        int[] oldSlots = slots;
+
+        allocate(oldOrderIds.length * 2);
+        size = 0;
+        for (int i = 0; i < oldOrderIds.length; i++) {
+            if (oldOrderIds[i] != EMPTY) {
+                put(oldOrderIds[i], oldSlots[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        long[] orderIds = new long[capacity];
+        Arrays.fill(orderIds, EMPTY);
+        this.slots = new int[capacity];
+        this.orderIds = orderIds;
+    }
+
+    private static int hash(long orderId) {
+        long h = orderId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
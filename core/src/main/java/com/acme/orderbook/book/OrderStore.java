@@ -0,0 +1,677 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.common.OrderBookUtil;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+import com.acme.orderbook.snapshot.BookSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Column oriented storage of the orders of a book. Every order gets a slot on arrival, the store keeps only primitive
+ * columns and builds detached {@link Order} instances from them on request, the orders handed to the book are not
+ * referenced. With an archive finished orders are handed to it and leave the columns: their slots are dropped once
+ * they make up half of the store, the remaining slots move down in the same order, and lookups of ids that are not in
+ * the columns fall through to the archive.
+ *
+ * Every active order takes part in every execution, so the fill history of an order is the range of the book's
+ * execution tape it was active for. The store only keeps the tape of execution prices, that range and the non-zero
+ * fills of every slot, orders skipped by an execution cost nothing and the history is built on request.
+ *
+ * The book holds the write lock while it changes the store, a copy of a single order is read optimistically without
+ * locking and read again if the book changed meanwhile, so readers never hold up the book.
+ */
+public class OrderStore {
+
+    public static final byte ACTIVE = 0;
+    public static final byte EXECUTED = 1;
+    public static final byte CANCELED = 2;
+
+    private static final long NO_EXECUTION = Long.MIN_VALUE;
+    private static final byte RELEASED = 3; // finished and handed to the archive, the slot is dropped by the next compaction
+    private static final int ACTIVE_HISTORY = -1;
+    private static final int MIN_COMPACTION_SIZE = 16; // smaller stores are not compacted
+    private static final int OPTIMISTIC_READS = 8; // attempts spoiled by writes before a reader takes the read lock
+
+    private long[] orderIds;
+    private int[] quantities;
+    private long[] limitPrices; // ticks, Order.MARKET_PRICE for market orders
+    private int[] executedQuantities;
+    private long[] entryTimes; // epoch nanos
+    private long[] executionTimes; // epoch nanos
+    private byte[] states;
+    private int[] historyStarts; // first execution on the tape the order took part in
+    private int[] historyEnds; // end of the range on the tape, ACTIVE_HISTORY while the order takes part in executions
+    private long[][] fills; // execution << 32 | quantity of the non-zero fills, null without any, grown by doubling
+    private int[] fillCounts;
+    private final Map<Integer, List<OrderPartialExecution>> earlierPartialExecutions = new HashMap<>(); // slot -> the ones an order came with
+    private int earlierPartialCount;
+
+    private int size;
+    private int releasedCount;
+    private final int initialCapacity;
+    private final StampedLock lock = new StampedLock();
+
+    private OrderIdIndex idIndex; // null while the ids arrived in ascending order, the id column is searched then
+
+    private long[] executionPrices = new long[16]; // the execution tape
+    private int executionCount;
+
+    private final long instrumentId;
+    private final OrderArchive archive; // null when finished orders are only kept in the columns
+    private final SlotOrder finishedOrder = new SlotOrder(); // hands the columns of a slot to the archive
+    private long[] archivedOrderIds = new long[0]; // in the order they were handed to the archive
+    private int archivedCount;
+
+    public OrderStore(long instrumentId) {
+        this(instrumentId, 1024, null);
+    }
+
+    public OrderStore(long instrumentId, int initialCapacity, OrderArchive archive) {
+        this.instrumentId = instrumentId;
+        this.archive = archive;
+        this.initialCapacity = Math.max(initialCapacity, 1);
+        allocate(this.initialCapacity);
+    }
+
+    /**
+     * Copies the order into the next free slot, the order itself is not referenced afterwards.
+     */
+    int add(Order order) {
+        int slot = add(order.getOrderId(), OrderBookUtil.toEpochNanos(order.getEntryDate()), order.getQuantity(), order.getLimitPrice());
+        executedQuantities[slot] = order.getExecutedQuantity();
+        addEarlierPartialExecutions(slot, order.getPartialExecutions());
+        return slot;
+    }
+
+    private int add(long orderId, long entryTime, int quantity, long limitPrice) {
+        if (size == orderIds.length) {
+            grow();
+        }
+        int slot = size++;
+
+        indexOrderId(slot, orderId);
+        orderIds[slot] = orderId;
+        quantities[slot] = quantity;
+        limitPrices[slot] = limitPrice;
+        executedQuantities[slot] = 0;
+        entryTimes[slot] = entryTime;
+        executionTimes[slot] = NO_EXECUTION;
+        states[slot] = ACTIVE;
+        historyStarts[slot] = executionCount;
+        historyEnds[slot] = ACTIVE_HISTORY;
+        fills[slot] = null;
+        fillCounts[slot] = 0;
+        return slot;
+    }
+
+    /**
+     * Partial executions an order came with, they precede its range on the tape. Only orders restored from snapshots
+     * written before the tape have any.
+     */
+    private void addEarlierPartialExecutions(int slot, List<OrderPartialExecution> earlier) {
+        if (!earlier.isEmpty()) {
+            earlierPartialExecutions.put(slot, new ArrayList<>(earlier));
+            earlierPartialCount += earlier.size();
+        }
+    }
+
+    long beginWrite() {
+        return lock.writeLock();
+    }
+
+    void endWrite(long stamp) {
+        lock.unlockWrite(stamp);
+    }
+
+    /**
+     * Runs the reader on a state of the store between two writes of the book, without holding up the book. The reader
+     * runs optimistically and again if a write interfered. A reader that fails on a consistent state fails for good,
+     * and after a few attempts spoiled by writes it runs under the read lock.
+     */
+    <T> T read(Supplier<T> reader) {
+        for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield(); // a write is in progress
+                continue;
+            }
+            T result;
+            try {
+                result = reader.get();
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+                continue; // read columns while they were replaced by a growing book
+            }
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * The order with the id as of a state between two writes of the book, null if the store does not have it. Found
+     * without holding up the book, see {@link #read}. An order handed to the archive is read from there, it is in the
+     * archive before it leaves the columns.
+     */
+    Order find(long orderId) {
+        Order order = read(() -> {
+            int slot = slotOf(orderId);
+            return slot >= 0 && states[slot] != RELEASED ? getOrder(slot) : null;
+        });
+        if (order != null || archive == null) {
+            return order;
+        }
+        Order archived = archive.get(orderId); // the archive is shared by the books of the node
+        return archived != null && archived.getInstrumentId() == instrumentId ? archived.copy() : null;
+    }
+
+    /**
+     * While the ids arrive in ascending order the id column is sorted and searched, the first id out of order
+     * indexes all ids.
+     */
+    private void indexOrderId(int slot, long orderId) {
+        if (idIndex == null && slot > 0 && orderId <= orderIds[slot - 1]) {
+            idIndex = new OrderIdIndex(orderIds.length);
+            for (int i = 0; i < slot; i++) {
+                idIndex.put(orderIds[i], i);
+            }
+        }
+        if (idIndex != null) {
+            idIndex.put(orderId, slot);
+        }
+    }
+
+    private int slotOf(long orderId) {
+        OrderIdIndex idIndex = this.idIndex;
+        if (idIndex != null) {
+            return idIndex.get(orderId);
+        }
+        int slot = Arrays.binarySearch(orderIds, 0, size, orderId);
+        return slot >= 0 ? slot : -1;
+    }
+
+    /**
+     * Stores order i of the snapshot with its execution state, its range on the tape and its fills in the next slot.
+     */
+    int restore(BookSnapshot snapshot, int i) {
+        int slot = add(snapshot.getOrderIds()[i], snapshot.getEntryTimes()[i], snapshot.getQuantities()[i], snapshot.getLimitPrices()[i]);
+        executedQuantities[slot] = snapshot.getExecutedQuantities()[i];
+        executionTimes[slot] = snapshot.getExecutionTimes()[i];
+        states[slot] = snapshot.getStates()[i];
+        historyStarts[slot] = snapshot.getHistoryStarts()[i];
+        historyEnds[slot] = snapshot.getHistoryEnds()[i];
+
+        int from = snapshot.getFillOffsets()[i];
+        int fillCount = snapshot.getFillOffsets()[i + 1] - from;
+        if (fillCount > 0) {
+            fills[slot] = Arrays.copyOfRange(snapshot.getFills(), from, from + fillCount);
+            fillCounts[slot] = fillCount;
+        }
+
+        List<OrderPartialExecution> earlier = new ArrayList<>();
+        for (int p = snapshot.getPartialOffsets()[i]; p < snapshot.getPartialOffsets()[i + 1]; p++) {
+            earlier.add(new OrderPartialExecution(snapshot.getPartialQuantities()[p], snapshot.getPartialPrices()[p]));
+        }
+        addEarlierPartialExecutions(slot, earlier);
+        return slot;
+    }
+
+    /**
+     * Appends an execution to the tape, every active order takes part in it.
+     */
+    void addExecution(long price) {
+        if (executionCount == executionPrices.length) {
+            executionPrices = Arrays.copyOf(executionPrices, executionCount * 2);
+        }
+        executionPrices[executionCount++] = price;
+    }
+
+    /**
+     * Counted on request, the parallel distribution adds fills to many slots at once.
+     */
+    int getTotalFillCount() {
+        int totalFillCount = 0;
+        for (int slot = 0; slot < size; slot++) {
+            totalFillCount += fillCounts[slot];
+        }
+        return totalFillCount;
+    }
+
+    int getEarlierPartialCount() {
+        return earlierPartialCount;
+    }
+
+    /**
+     * Orders in the columns and orders handed to the archive.
+     */
+    int getOrderCount() {
+        return size - releasedCount + archivedCount;
+    }
+
+    /**
+     * The orders handed to the archive read back from it, in the order they were handed over.
+     */
+    Order[] getArchivedOrders() {
+        Order[] archivedOrders = new Order[archivedCount];
+        for (int i = 0; i < archivedCount; i++) {
+            archivedOrders[i] = archive.get(archivedOrderIds[i]);
+            if (archivedOrders[i] == null) {
+                throw new IllegalStateException("archived order " + archivedOrderIds[i] + " not found");
+            }
+        }
+        return archivedOrders;
+    }
+
+    /**
+     * Copies the archived orders followed by the columns of the slots in use into the snapshot, sized by
+     * {@link #getOrderCount()}, {@link #getTotalFillCount()} and {@link #getEarlierPartialCount()} plus the partial
+     * executions of the archived orders. The archived orders bring their histories as partial executions, the others
+     * are copied as primitives and their histories stay in tape form.
+     */
+    void copyTo(BookSnapshot snapshot, Order[] archivedOrders) {
+        int i = 0;
+        int f = 0;
+        int p = 0;
+
+        for (Order archived : archivedOrders) {
+            LocalDateTime executionDate = archived.getExecutionDate();
+
+            snapshot.getOrderIds()[i] = archived.getOrderId();
+            snapshot.getQuantities()[i] = archived.getQuantity();
+            snapshot.getLimitPrices()[i] = archived.getLimitPrice();
+            snapshot.getExecutedQuantities()[i] = archived.getExecutedQuantity();
+            snapshot.getEntryTimes()[i] = OrderBookUtil.toEpochNanos(archived.getEntryDate());
+            snapshot.getExecutionTimes()[i] = executionDate != null ? OrderBookUtil.toEpochNanos(executionDate) : NO_EXECUTION;
+            snapshot.getStates()[i] = archived.isExecuted() ? EXECUTED : CANCELED;
+            snapshot.getHistoryStarts()[i] = executionCount; // the partials hold the whole history
+            snapshot.getHistoryEnds()[i] = executionCount;
+
+            snapshot.getFillOffsets()[i] = f;
+            snapshot.getPartialOffsets()[i] = p;
+            for (OrderPartialExecution partialExecution : archived.getPartialExecutions()) {
+                snapshot.getPartialQuantities()[p] = partialExecution.getQuantity();
+                snapshot.getPartialPrices()[p] = partialExecution.getPrice();
+                p++;
+            }
+            i++;
+        }
+
+        for (int slot = 0; slot < size; slot++) {
+            if (states[slot] == RELEASED) {
+                continue;
+            }
+            snapshot.getOrderIds()[i] = orderIds[slot];
+            snapshot.getQuantities()[i] = quantities[slot];
+            snapshot.getLimitPrices()[i] = limitPrices[slot];
+            snapshot.getExecutedQuantities()[i] = executedQuantities[slot];
+            snapshot.getEntryTimes()[i] = entryTimes[slot];
+            snapshot.getExecutionTimes()[i] = executionTimes[slot];
+            snapshot.getStates()[i] = states[slot];
+            snapshot.getHistoryStarts()[i] = historyStarts[slot];
+            snapshot.getHistoryEnds()[i] = historyEnds[slot];
+
+            snapshot.getFillOffsets()[i] = f;
+            if (fillCounts[slot] > 0) {
+                System.arraycopy(fills[slot], 0, snapshot.getFills(), f, fillCounts[slot]);
+                f += fillCounts[slot];
+            }
+
+            snapshot.getPartialOffsets()[i] = p;
+            List<OrderPartialExecution> earlier = earlierPartialExecutions.get(slot);
+            if (earlier != null) {
+                for (OrderPartialExecution partialExecution : earlier) {
+                    snapshot.getPartialQuantities()[p] = partialExecution.getQuantity();
+                    snapshot.getPartialPrices()[p] = partialExecution.getPrice();
+                    p++;
+                }
+            }
+            i++;
+        }
+        snapshot.getFillOffsets()[i] = f;
+        snapshot.getPartialOffsets()[i] = p;
+    }
+
+    int getExecutedQuantity(int slot) {
+        return executedQuantities[slot];
+    }
+
+    private LocalDateTime getExecutionDate(int slot) {
+        long executionTime = executionTimes[slot];
+        return executionTime != NO_EXECUTION ? OrderBookUtil.fromEpochNanos(executionTime) : null;
+    }
+
+    /**
+     * Adds the partial execution of the last execution on the tape to the order of the slot, with the checks of
+     * {@link Order#addPartialExecution(int, long)}.
+     */
+    void addPartialExecution(int slot, int partialQuantity, long partialPrice) {
+        if (isExecuted(slot)) {
+            throw new IllegalStateException("order already executed " + getOrder(slot));
+
+        } else if (partialQuantity > getUnexecutedQuantity(slot)) {
+            throw new IllegalStateException("invalid partial quantity " + partialQuantity + " for order " + getOrder(slot));
+
+        } else if (limitPrices[slot] < partialPrice && partialQuantity != 0) {
+            throw new IllegalStateException("invalid partial price " + partialPrice + " for order " + getOrder(slot));
+        }
+        addExecutedQuantity(slot, partialQuantity);
+    }
+
+    void addExecutedQuantity(int slot, int quantity) {
+        if (quantity == 0) {
+            return;
+        }
+        executedQuantities[slot] += quantity;
+
+        long[] slotFills = fills[slot];
+        int fillCount = fillCounts[slot];
+        if (slotFills == null) {
+            slotFills = fills[slot] = new long[1];
+        } else if (fillCount == slotFills.length) {
+            slotFills = fills[slot] = Arrays.copyOf(slotFills, fillCount * 2);
+        }
+        slotFills[fillCount] = (long) (executionCount - 1) << 32 | quantity;
+        fillCounts[slot] = fillCount + 1;
+
+        if (executedQuantities[slot] == quantities[slot]) {
+            executionTimes[slot] = OrderBookUtil.toEpochNanos(LocalDateTime.now());
+            setState(slot, EXECUTED);
+        }
+    }
+
+    /**
+     * The partial executions of the slot, the ones the order came with followed by one for every execution on the
+     * tape it took part in.
+     */
+    List<OrderPartialExecution> getPartialExecutions(int slot) {
+        List<OrderPartialExecution> partialExecutions = new ArrayList<>(getPartialExecutionCount(slot));
+        forEachPartialExecution(slot, (i, quantity, price) -> partialExecutions.add(new OrderPartialExecution(quantity, price)));
+        return partialExecutions;
+    }
+
+    private int getPartialExecutionCount(int slot) {
+        List<OrderPartialExecution> earlier = earlierPartialExecutions.isEmpty() ? null : earlierPartialExecutions.get(slot);
+        int to = historyEnds[slot] != ACTIVE_HISTORY ? historyEnds[slot] : executionCount;
+        return (earlier != null ? earlier.size() : 0) + to - historyStarts[slot];
+    }
+
+    /**
+     * Passes the partial executions of the slot in order, without building them.
+     */
+    private void forEachPartialExecution(int slot, OrderArchive.PartialExecutionConsumer consumer) {
+        int from = historyStarts[slot];
+        int to = historyEnds[slot] != ACTIVE_HISTORY ? historyEnds[slot] : executionCount;
+        long[] slotFills = fills[slot];
+        int fillCount = fillCounts[slot];
+        List<OrderPartialExecution> earlier = earlierPartialExecutions.isEmpty() ? null : earlierPartialExecutions.get(slot);
+
+        int i = 0;
+        if (earlier != null) {
+            for (OrderPartialExecution partialExecution : earlier) {
+                consumer.accept(i++, partialExecution.getQuantity(), partialExecution.getPrice());
+            }
+        }
+
+        for (int execution = from, f = 0; execution < to; execution++) {
+            int quantity = 0;
+            if (f < fillCount && (int) (slotFills[f] >>> 32) == execution) {
+                quantity = (int) slotFills[f++];
+            }
+            consumer.accept(i++, quantity, executionPrices[execution]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * A detached order built from the columns of the slot.
+     */
+    Order getOrder(int slot) {
+        return new Order(instrumentId, orderIds[slot], OrderBookUtil.fromEpochNanos(entryTimes[slot]), quantities[slot], limitPrices[slot],
+                executedQuantities[slot], getExecutionDate(slot), getPartialExecutions(slot));
+    }
+
+    /**
+     * Hands the finished order of the slot to the archive straight from the columns and drops its fills and its
+     * earlier partial executions, a no-op without an archive. The slot itself is dropped by the next compaction, see
+     * {@link #compactIfSparse()}.
+     */
+    void release(int slot) {
+        if (archive == null) {
+            return;
+        }
+        finishedOrder.slot = slot;
+        archive.archive(finishedOrder);
+
+        if (archivedCount == archivedOrderIds.length) {
+            archivedOrderIds = Arrays.copyOf(archivedOrderIds, Math.max(archivedCount * 2, 16));
+        }
+        archivedOrderIds[archivedCount++] = orderIds[slot];
+
+        states[slot] = RELEASED;
+        fills[slot] = null;
+        fillCounts[slot] = 0;
+        List<OrderPartialExecution> earlier = earlierPartialExecutions.remove(slot);
+        if (earlier != null) {
+            earlierPartialCount -= earlier.size();
+        }
+        releasedCount++;
+    }
+
+    /**
+     * Hands the active orders to the archive, called before the book is dropped so the orders stay available.
+     */
+    void archiveActiveOrders() {
+        if (archive == null) {
+            return;
+        }
+        for (int slot = 0; slot < size; slot++) {
+            if (states[slot] == ACTIVE) {
+                finishedOrder.slot = slot;
+                archive.archive(finishedOrder);
+            }
+        }
+    }
+
+    /**
+     * Drops the slots of the released orders once they make up half of the store. The slots in use move down and keep
+     * their order, so slot order stays time priority, the id index is rebuilt for them and the columns shrink when the
+     * store got much smaller. Returns the new slot of every old slot, -1 for the dropped ones, or null if the store
+     * was not compacted.
+     */
+    int[] compactIfSparse() {
+        if (size < MIN_COMPACTION_SIZE || releasedCount * 2 < size) {
+            return null;
+        }
+        int[] newSlots = new int[size];
+        Map<Integer, List<OrderPartialExecution>> earlier = new HashMap<>(earlierPartialExecutions);
+        earlierPartialExecutions.clear();
+
+        int kept = 0;
+        boolean ascending = true;
+        for (int slot = 0; slot < size; slot++) {
+            if (states[slot] == RELEASED) {
+                newSlots[slot] = -1;
+                continue;
+            }
+            ascending &= kept == 0 || orderIds[slot] > orderIds[kept - 1];
+
+            orderIds[kept] = orderIds[slot];
+            quantities[kept] = quantities[slot];
+            limitPrices[kept] = limitPrices[slot];
+            executedQuantities[kept] = executedQuantities[slot];
+            entryTimes[kept] = entryTimes[slot];
+            executionTimes[kept] = executionTimes[slot];
+            states[kept] = states[slot];
+            historyStarts[kept] = historyStarts[slot];
+            historyEnds[kept] = historyEnds[slot];
+            fills[kept] = fills[slot];
+            fillCounts[kept] = fillCounts[slot];
+            if (earlier.containsKey(slot)) {
+                earlierPartialExecutions.put(kept, earlier.get(slot));
+            }
+            newSlots[slot] = kept++;
+        }
+        Arrays.fill(fills, kept, size, null);
+        size = kept;
+        releasedCount = 0;
+
+        if (orderIds.length > Math.max(initialCapacity, size * 4)) {
+            resize(Math.max(initialCapacity, size * 2));
+        }
+
+        idIndex = null;
+        if (!ascending) {
+            OrderIdIndex index = new OrderIdIndex(size);
+            for (int slot = 0; slot < size; slot++) {
+                index.put(orderIds[slot], slot);
+            }
+            idIndex = index;
+        }
+        return newSlots;
+    }
+
+    long getOrderId(int slot) {
+        return orderIds[slot];
+    }
+
+    int getQuantity(int slot) {
+        return quantities[slot];
+    }
+
+    long getLimitPrice(int slot) {
+        return limitPrices[slot];
+    }
+
+    boolean isLimitOrder(int slot) {
+        return limitPrices[slot] != Order.MARKET_PRICE;
+    }
+
+    int getUnexecutedQuantity(int slot) {
+        return quantities[slot] - executedQuantities[slot];
+    }
+
+    boolean isExecuted(int slot) {
+        return executedQuantities[slot] == quantities[slot];
+    }
+
+    long getEntryTime(int slot) {
+        return entryTimes[slot];
+    }
+
+    byte getState(int slot) {
+        return states[slot];
+    }
+
+    /**
+     * A finished order takes part in no further executions, its range on the tape ends.
+     */
+    void setState(int slot, byte state) {
+        states[slot] = state;
+        if (state != ACTIVE && historyEnds[slot] == ACTIVE_HISTORY) {
+            historyEnds[slot] = executionCount;
+        }
+    }
+
+    private void allocate(int capacity) {
+        orderIds = new long[capacity];
+        quantities = new int[capacity];
+        limitPrices = new long[capacity];
+        executedQuantities = new int[capacity];
+        entryTimes = new long[capacity];
+        executionTimes = new long[capacity];
+        states = new byte[capacity];
+        historyStarts = new int[capacity];
+        historyEnds = new int[capacity];
+        fills = new long[capacity][];
+        fillCounts = new int[capacity];
+    }
+
+    private void grow() {
+        resize(orderIds.length * 2);
+    }
+
+    private void resize(int capacity) {
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        limitPrices = Arrays.copyOf(limitPrices, capacity);
+        executedQuantities = Arrays.copyOf(executedQuantities, capacity);
+        entryTimes = Arrays.copyOf(entryTimes, capacity);
+        executionTimes = Arrays.copyOf(executionTimes, capacity);
+        states = Arrays.copyOf(states, capacity);
+        historyStarts = Arrays.copyOf(historyStarts, capacity);
+        historyEnds = Arrays.copyOf(historyEnds, capacity);
+        fills = Arrays.copyOf(fills, capacity);
+        fillCounts = Arrays.copyOf(fillCounts, capacity);
+    }
+
+    /**
+     * The order of a slot as the archive reads it, straight from the columns.
+     */
+    private class SlotOrder implements OrderArchive.FinishedOrder {
+        private int slot;
+
+        @Override
+        public long getInstrumentId() {
+            return instrumentId;
+        }
+
+        @Override
+        public long getOrderId() {
+            return orderIds[slot];
+        }
+
+        @Override
+        public long getEntryTime() {
+            return entryTimes[slot];
+        }
+
+        @Override
+        public long getExecutionTime() {
+            return executionTimes[slot];
+        }
+
+        @Override
+        public long getLimitPrice() {
+            return limitPrices[slot];
+        }
+
+        @Override
+        public int getQuantity() {
+            return quantities[slot];
+        }
+
+        @Override
+        public int getExecutedQuantity() {
+            return executedQuantities[slot];
+        }
+
+        @Override
+        public int getPartialExecutionCount() {
+            return OrderStore.this.getPartialExecutionCount(slot);
+        }
+
+        @Override
+        public void forEachPartialExecution(OrderArchive.PartialExecutionConsumer consumer) {
+            OrderStore.this.forEachPartialExecution(slot, consumer);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Order;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Active orders of a book grouped by limit price, market orders are kept in their own bucket. Limit levels are kept
+ * sorted by price and their order counts and demands are indexed with fenwick trees, so the valid/invalid split at a
+ * given execution price is answered in O(log levels). The trees are rebuilt lazily when a level is added or removed.
+ */
+class PriceLadder {
+
+    private final OrderStore store;
+    private final PriceLevel marketLevel = new PriceLevel(Order.MARKET_PRICE);
+
+    private long[] prices = new long[16]; // ticks ascending
+    private PriceLevel[] levels = new PriceLevel[16];
+    private int size;
+
+    private long[] demandTree = new long[17]; // 1-based fenwick trees over the limit levels
+    private int[] orderCountTree = new int[17];
+    private boolean treesStale;
+
+    private long limitDemand;
+    private int limitOrderCount;
+
+    PriceLadder(OrderStore store) {
+        this.store = store;
+    }
+
+    void add(int slot) {
+        PriceLevel level;
+        int unexecutedQuantity = store.getUnexecutedQuantity(slot);
+
+        if (store.isLimitOrder(slot)) {
+            long limitPrice = store.getLimitPrice(slot);
+
+            int i = indexOf(limitPrice);
+            if (i < 0) {
+                i = insertLevel(-i - 1, limitPrice);
+            }
+            level = levels[i];
+            updateTrees(i, unexecutedQuantity, 1);
+
+            limitDemand += unexecutedQuantity;
+            limitOrderCount++;
+        } else {
+            level = marketLevel;
+        }
+        level.add(slot, unexecutedQuantity);
+    }
+
+    /**
+     * Reduces the demand of the order's level after a partial execution was added to the order.
+     */
+    void reduceDemand(int slot, int quantity) {
+        if (quantity == 0) {
+            return;
+        }
+
+        if (store.isLimitOrder(slot)) {
+            int i = indexOf(store.getLimitPrice(slot));
+            levels[i].reduceDemand(quantity);
+            updateTrees(i, -quantity, 0);
+
+            limitDemand -= quantity;
+        } else {
+            marketLevel.reduceDemand(quantity);
+        }
+    }
+
+    /**
+     * Removes fully executed orders from the levels valid at the given price, the removed slots are added to the list.
+     */
+    void removeExecutedOrders(long price, SlotList removedSlots) {
+        marketLevel.removeExecutedOrders(store, removedSlots);
+
+        for (int i = size - 1, from = lowerBound(price); i >= from; i--) {
+            PriceLevel level = levels[i];
+            int removed = level.removeExecutedOrders(store, removedSlots);
+
+            if (removed > 0) {
+                limitOrderCount -= removed;
+                if (level.isEmpty()) {
+                    removeLevel(i);
+                } else {
+                    updateTrees(i, 0, -removed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows the compaction of the order store, the slots keep their order so the levels stay in time priority.
+     */
+    void remapSlots(int[] newSlots) {
+        marketLevel.getSlots().remap(newSlots);
+        for (int i = 0; i < size; i++) {
+            levels[i].getSlots().remap(newSlots);
+        }
+    }
+
+    void clear() {
+        marketLevel.clear();
+
+        Arrays.fill(levels, 0, size, null);
+        size = 0;
+        limitDemand = 0;
+        limitOrderCount = 0;
+        treesStale = true;
+    }
+
+    /**
+     * Collects the slots of the orders valid at the given price in time priority.
+     */
+    void getValidOrders(long price, SlotList slots) {
+        slots.clear();
+
+        slots.addAll(marketLevel.getSlots());
+        for (int i = lowerBound(price); i < size; i++) {
+            slots.addAll(levels[i].getSlots());
+        }
+        slots.sort();
+    }
+
+    /**
+     * Collects the slots of the orders invalid at the given price in time priority.
+     */
+    void getInvalidOrders(long price, SlotList slots) {
+        slots.clear();
+
+        for (int i = 0, to = lowerBound(price); i < to; i++) {
+            slots.addAll(levels[i].getSlots());
+        }
+        slots.sort();
+    }
+
+    /**
+     * Collects the slots of all active orders in time priority.
+     */
+    void getOrders(SlotList slots) {
+        getValidOrders(Long.MIN_VALUE, slots);
+    }
+
+    /**
+     * Passes the slot of every active order, level by level.
+     */
+    void forEachOrder(IntConsumer action) {
+        forEachOrder(marketLevel, action);
+        for (int i = 0; i < size; i++) {
+            forEachOrder(levels[i], action);
+        }
+    }
+
+    int getOrderCount() {
+        return marketLevel.getOrderCount() + limitOrderCount;
+    }
+
+    long getValidDemand(long price) {
+        return marketLevel.getDemand() + limitDemand - getInvalidDemand(price);
+    }
+
+    long getInvalidDemand(long price) {
+        return prefixDemand(lowerBound(price));
+    }
+
+    int getValidOrderCount(long price) {
+        return marketLevel.getOrderCount() + limitOrderCount - getInvalidOrderCount(price);
+    }
+
+    int getInvalidOrderCount(long price) {
+        return prefixOrderCount(lowerBound(price));
+    }
+
+    /**
+     * Index of the first limit level valid at the given price, the levels from there on are valid.
+     */
+    int getFirstValidLevel(long price) {
+        return lowerBound(price);
+    }
+
+    int getLimitLevelCount() {
+        return size;
+    }
+
+    PriceLevel getLimitLevel(int i) {
+        return levels[i];
+    }
+
+    PriceLevel getMarketLevel() {
+        return marketLevel;
+    }
+
+    private static void forEachOrder(PriceLevel level, IntConsumer action) {
+        SlotList slots = level.getSlots();
+        for (int i = 0; i < slots.size(); i++) {
+            action.accept(slots.get(i));
+        }
+    }
+
+    private int indexOf(long price) {
+        return Arrays.binarySearch(prices, 0, size, price);
+    }
+
+    /**
+     * Index of the first level with a price greater or equal to the given price.
+     */
+    private int lowerBound(long price) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int insertLevel(int i, long price) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(prices, i, prices, i + 1, size - i);
+        System.arraycopy(levels, i, levels, i + 1, size - i);
+
+        prices[i] = price;
+        levels[i] = new PriceLevel(price);
+        size++;
+        treesStale = true;
+
+        return i;
+    }
+
+    private void removeLevel(int i) {
+        System.arraycopy(prices, i + 1, prices, i, size - i - 1);
+        System.arraycopy(levels, i + 1, levels, i, size - i - 1);
+
+        levels[--size] = null;
+        treesStale = true;
+    }
+
+    private void updateTrees(int i, long demandDelta, int orderCountDelta) {
+        if (treesStale) {
+            return; // picked up by the next rebuild
+        }
+        for (int j = i + 1; j <= size; j += j & -j) {
+            demandTree[j] += demandDelta;
+            orderCountTree[j] += orderCountDelta;
+        }
+    }
+
+    /**
+     * Demand of the first count levels. The trees are read after the rebuild, which may replace them.
+     */
+    private long prefixDemand(int count) {
+        rebuildTreesIfStale();
+
+        long sum = 0;
+        for (int j = count; j > 0; j -= j & -j) {
+            sum += demandTree[j];
+        }
+        return sum;
+    }
+
+    /**
+     * Number of orders on the first count levels.
+     */
+    private int prefixOrderCount(int count) {
+        rebuildTreesIfStale();
+
+        int sum = 0;
+        for (int j = count; j > 0; j -= j & -j) {
+            sum += orderCountTree[j];
+        }
+        return sum;
+    }
+
+    private void rebuildTreesIfStale() {
+        if (!treesStale) {
+            return;
+        }
+        if (demandTree.length < size + 1) {
+            demandTree = new long[prices.length + 1];
+            orderCountTree = new int[prices.length + 1];
+        }
+        Arrays.fill(demandTree, 0L);
+        Arrays.fill(orderCountTree, 0);
+
+        for (int j = 1; j <= size; j++) {
+            demandTree[j] += levels[j - 1].getDemand();
+            orderCountTree[j] += levels[j - 1].getOrderCount();
+
+            int parent = j + (j & -j);
+            if (parent <= size) {
+                demandTree[parent] += demandTree[j];
+                orderCountTree[parent] += orderCountTree[j];
+            }
+        }
+        treesStale = false;
+    }
+}
@@ -0,0 +1,63 @@
+package com.acme.orderbook.book;
+
+class PriceLevel {
+
+    private final long price; // ticks
+    private final SlotList slots = new SlotList(); // in arrival order
+    private long demand; // unexecuted quantity of all orders on the level
+
+    PriceLevel(long price) {
+        this.price = price;
+    }
+
+    long getPrice() {
+        return price;
+    }
+
+    SlotList getSlots() {
+        return slots;
+    }
+
+    long getDemand() {
+        return demand;
+    }
+
+    int getOrderCount() {
+        return slots.size();
+    }
+
+    boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    void add(int slot, int unexecutedQuantity) {
+        slots.add(slot);
+        demand += unexecutedQuantity;
+    }
+
+    void reduceDemand(int quantity) {
+        demand -= quantity;
+    }
+
+    void clear() {
+        slots.clear();
+        demand = 0;
+    }
+
+    int removeExecutedOrders(OrderStore store, SlotList removedSlots) {
+        int kept = 0;
+
+        for (int i = 0; i < slots.size(); i++) {
+            int slot = slots.get(i);
+            if (store.isExecuted(slot)) {
+                removedSlots.add(slot);
+            } else {
+                slots.set(kept++, slot);
+            }
+        }
+        int removed = slots.size() - kept;
+        slots.truncate(kept);
+
+        return removed;
+    }
+}
@@ -0,0 +1,124 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.common.OrderBookUtil;
+
+import java.util.stream.IntStream;
+
+/**
+ * Distributes an execution quantity over the demands of the valid orders in proportion to their demand. Every order
+ * gets its share rounded up, capped by its demand and by what is left to distribute, in the order of the demands.
+ * The demand and allocation buffers are reused between calls, so an allocation does not create any garbage once the
+ * buffers have grown to the book size. Not thread safe, every book owns its allocator.
+ *
+ * Large allocations can be split into chunks computed on the fork-join common pool. Every order's share only depends
+ * on its own demand, the running total only caps it, and the total distributed before an order is the smaller of the
+ * quantity and the sum of the capped shares before it, so chunks only need the sum of the chunks before them.
+ */
+public class ProRataAllocator {
+
+    private int[] demands;
+    private int[] allocations;
+
+    public ProRataAllocator() {
+        this(1024);
+    }
+
+    public ProRataAllocator(int initialCapacity) {
+        demands = new int[Math.max(initialCapacity, 1)];
+        allocations = new int[demands.length];
+    }
+
+    /**
+     * Demand buffer with room for at least the given number of orders, to be filled before calling allocate.
+     */
+    public int[] demands(int count) {
+        if (count > demands.length) {
+            int capacity = Math.max(count, demands.length * 2);
+            demands = new int[capacity];
+            allocations = new int[capacity];
+        }
+        return demands;
+    }
+
+    /**
+     * Allocates the quantity over the first count entries of the demand buffer, the returned buffer holds the
+     * allocation of every order at the same index.
+     */
+    public int[] allocate(int count, int quantityToDistribute) {
+        allocate(demands, allocations, count, quantityToDistribute);
+        return allocations;
+    }
+
+    /**
+     * Same as {@link #allocate(int, int)} with the work split into chunks of the given size computed in parallel, the
+     * result is identical.
+     */
+    public int[] allocateParallel(int count, int quantityToDistribute, int chunkSize) {
+        int[] demands = this.demands;
+        int[] allocations = this.allocations;
+        int chunkCount = (count + chunkSize - 1) / chunkSize;
+
+        long cumulativeDemand = IntStream.range(0, chunkCount).parallel().mapToLong(c -> {
+            long sum = 0;
+            for (int i = c * chunkSize, to = Math.min(count, i + chunkSize); i < to; i++) {
+                sum += demands[i];
+            }
+            return sum;
+        }).sum();
+
+        // shares capped by the demands, before the running total caps them
+        long[] chunkShares = new long[chunkCount];
+        IntStream.range(0, chunkCount).parallel().forEach(c -> {
+            long sum = 0;
+            for (int i = c * chunkSize, to = Math.min(count, i + chunkSize); i < to; i++) {
+                int demand = demands[i];
+                double pctToApply = (double) demand / (double) cumulativeDemand;
+                int share = Math.min(demand, (int) Math.ceil(pctToApply * quantityToDistribute));
+
+                allocations[i] = share;
+                sum += share;
+            }
+            chunkShares[c] = sum;
+        });
+
+        long[] chunkOffsets = new long[chunkCount];
+        for (int c = 1; c < chunkCount; c++) {
+            chunkOffsets[c] = chunkOffsets[c - 1] + chunkShares[c - 1];
+        }
+
+        IntStream.range(0, chunkCount).parallel().forEach(c -> {
+            long shares = chunkOffsets[c];
+            for (int i = c * chunkSize, to = Math.min(count, i + chunkSize); i < to; i++) {
+                int share = allocations[i];
+                allocations[i] = (int) Math.max(0, Math.min(quantityToDistribute - shares, share));
+                shares += share;
+            }
+        });
+        return allocations;
+    }
+
+    public static void allocate(int[] demands, int[] allocations, int count, int quantityToDistribute) {
+        long cumulativeDemand = 0;
+        for (int i = 0; i < count; i++) {
+            cumulativeDemand += demands[i];
+        }
+
+        int distributedQuantity = 0;
+
+        for (int i = 0; i < count; i++) {
+            int allocation = allocation(demands[i], cumulativeDemand, quantityToDistribute, distributedQuantity);
+
+            allocations[i] = allocation;
+            distributedQuantity += allocation;
+        }
+    }
+
+    /**
+     * Allocation of a single order, given the quantity distributed to the orders before it. Once the whole quantity
+     * is distributed every further order gets nothing, so callers that only need the fills can stop there.
+     */
+    static int allocation(int demand, long cumulativeDemand, int quantityToDistribute, int distributedQuantity) {
+        double pctToApply = (double) demand / (double) cumulativeDemand;
+        return OrderBookUtil.min(quantityToDistribute - distributedQuantity, demand, (int) Math.ceil(pctToApply * quantityToDistribute));
+    }
+}
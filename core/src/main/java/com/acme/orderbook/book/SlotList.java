@@ -0,0 +1,89 @@
+package com.acme.orderbook.book;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable list of order store slots without boxing.
+ */
+class SlotList {
+
+    private int[] slots;
+    private int size;
+
+    SlotList() {
+        this(16);
+    }
+
+    SlotList(int initialCapacity) {
+        slots = new int[Math.max(initialCapacity, 1)];
+    }
+
+    void add(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size++] = slot;
+    }
+
+    void addAll(SlotList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.slots, 0, slots, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Appends count slots read from the buffer's position.
+     */
+    void addAll(IntBuffer source, int count) {
+        ensureCapacity(size + count);
+        source.get(slots, size, count);
+        size += count;
+    }
+
+    int get(int i) {
+        return slots[i];
+    }
+
+    void set(int i, int slot) {
+        slots[i] = slot;
+    }
+
+    /**
+     * Replaces every slot by its entry in the table.
+     */
+    void remap(int[] newSlots) {
+        for (int i = 0; i < size; i++) {
+            slots[i] = newSlots[slots[i]];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the slots ascending, which is arrival order since slots are handed out sequentially.
+     */
+    void sort() {
+        Arrays.sort(slots, 0, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(capacity, slots.length * 2));
+        }
+    }
+}
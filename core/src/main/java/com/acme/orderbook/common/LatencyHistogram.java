@@ -0,0 +1,145 @@
+package com.acme.orderbook.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size, lock free latency histogram with nanosecond resolution. Values below 64ns are counted exactly, above
+ * that every power of two range is split into 32 linear buckets (HdrHistogram style), which keeps the error of the
+ * reported percentiles below ~3%. Values above ~68s are counted in the last bucket. Recording is a single atomic
+ * increment, so any number of threads can record concurrently while snapshots are taken. The histogram keeps no
+ * reader state, a reader gets the values of an interval as the difference of two of its snapshots.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // buckets per power of two
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1; // values below are counted exactly
+    private static final int MAX_MAGNITUDE = 35; // highest power of two tracked, 2^36ns ~ 68s
+
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        counts.incrementAndGet(bucketIndex(nanos));
+        totalNanos.add(Math.max(nanos, 0));
+    }
+
+    /**
+     * All values recorded since the histogram was created.
+     */
+    public Snapshot snapshot() {
+        long[] current = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            current[i] = counts.get(i);
+        }
+        return new Snapshot(current, totalNanos.sum());
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) Math.max(nanos, 0);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) - SUB_BUCKET_COUNT;
+
+        return LINEAR_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Highest value counted in the bucket.
+     */
+    static long highestValue(int bucketIndex) {
+        if (bucketIndex < LINEAR_LIMIT) {
+            return bucketIndex;
+        }
+        int offset = bucketIndex - LINEAR_LIMIT;
+        int magnitude = offset / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        int subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        int shift = magnitude - SUB_BUCKET_BITS;
+
+        return ((long) (subBucket + 1) << shift) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+
+        Snapshot(long[] counts, long totalNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+
+            long c = 0;
+            for (long bucketCount : counts) {
+                c += bucketCount;
+            }
+            this.count = c;
+        }
+
+        /**
+         * Values recorded between the earlier snapshot of the same histogram (all of them if null) and this one.
+         */
+        public Snapshot since(Snapshot earlier) {
+            if (earlier == null) {
+                return this;
+            }
+            long[] interval = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                interval[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(interval, totalNanos - earlier.totalNanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count > 0 ? totalNanos / count : 0;
+        }
+
+        public long getP50Nanos() {
+            return getValueAtPercentile(50d);
+        }
+
+        public long getP99Nanos() {
+            return getValueAtPercentile(99d);
+        }
+
+        public long getP999Nanos() {
+            return getValueAtPercentile(99.9d);
+        }
+
+        public long getMaxNanos() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100d * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+}
@@ -1,11 +1,24 @@
 package com.acme.orderbook.common;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
 /**
  * Created by robertk on 6/9/2019.
  */
 public class OrderBookUtil {
 
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     public static int min(int a, int b, int c) {
         return Math.min(Math.min(a, b), c);
     }
+
+    public static long toEpochNanos(LocalDateTime ldt) {
+        return ldt.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + ldt.getNano();
+    }
+
+    public static LocalDateTime fromEpochNanos(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), (int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
 }
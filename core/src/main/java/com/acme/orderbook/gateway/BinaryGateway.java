@@ -0,0 +1,328 @@
+package com.acme.orderbook.gateway;
+
+import com.acme.orderbook.service.OrderBookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.acme.orderbook.gateway.GatewayMessages.*;
+
+/**
+ * Order entry over plain TCP next to the REST API. One selector thread serves all connections, requests are decoded
+ * straight from the connection's direct buffer into asynchronous service calls, so the selector thread never waits
+ * for a book. Completed calls wake the selector up, which answers them in request order with an ack carrying the
+ * assigned order id, or a reject. When a client does not read its responses, or too many of its requests are pending
+ * in the books, the gateway stops reading its requests until they are drained.
+ */
+@Component
+public class BinaryGateway implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(BinaryGateway.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PENDING = 256; // requests of a connection waiting for the books
+
+
+    private final OrderBookService orderBookService;
+    private final boolean enabled;
+    private final int port;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    private final Queue<Connection> completions = new ConcurrentLinkedQueue<>(); // connections with completed requests
+
+    @Autowired
+    public BinaryGateway(OrderBookService orderBookService,
+                         @Value("${gateway.enabled:false}") boolean enabled,
+                         @Value("${gateway.port:9090}") int port) {
+        this.orderBookService = orderBookService;
+        this.enabled = enabled;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        running = true;
+        thread = new Thread(this, "orderbook-gateway");
+        thread.setDaemon(true);
+        thread.start();
+
+        log.info("binary gateway listening on port " + getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Port the gateway is bound to, useful when configured with port 0.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+
+                for (Connection connection; (connection = completions.poll()) != null; ) {
+                    connection.completed();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Connection) key.attachment()).handle();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("gateway stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+
+        log.info("gateway connection from " + connection.remoteAddress);
+    }
+
+    /**
+     * A request waiting for its response, the reject reason is set for requests rejected before reaching a book.
+     */
+    private static class PendingRequest {
+        private final byte type;
+        private final long requestId;
+        private final CompletableFuture<Long> result; // the order id for new orders
+        private final int rejectReason;
+
+        PendingRequest(byte type, long requestId, CompletableFuture<Long> result, int rejectReason) {
+            this.type = type;
+            this.requestId = requestId;
+            this.result = result;
+            this.rejectReason = rejectReason;
+        }
+    }
+
+    private class Connection {
+        private final SocketChannel channel;
+        private final String remoteAddress;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final Queue<PendingRequest> pending = new ArrayDeque<>(); // in request order
+        private SelectionKey key;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = String.valueOf(channel.getRemoteAddress());
+        }
+
+        void handle() {
+            try {
+                if (key.isReadable()) {
+                    if (channel.read(in) < 0) {
+                        close();
+                        return;
+                    }
+                }
+                process();
+                flush();
+            } catch (IOException e) {
+                log.info("gateway connection " + remoteAddress + " closed, " + e.getMessage());
+                close();
+            } catch (RuntimeException e) {
+                log.error("gateway connection " + remoteAddress + " failed", e); // the others keep going
+                close();
+            }
+        }
+
+        /**
+         * Called on the selector thread after requests of the connection completed.
+         */
+        void completed() {
+            if (key.isValid()) {
+                handle();
+            }
+        }
+
+        /**
+         * Answers the completed requests and handles the complete requests in the input buffer while not too many
+         * are pending.
+         */
+        private void process() {
+            respond();
+            in.flip();
+
+            int p = in.position();
+            while (in.limit() - p >= MESSAGE_SIZE && pending.size() < MAX_PENDING) {
+                handleRequest(p);
+                p += MESSAGE_SIZE;
+            }
+            in.position(p);
+            in.compact();
+
+            respond();
+        }
+
+        private void handleRequest(int p) {
+            byte type = getType(in, p);
+            long requestId = getRequestId(in, p);
+            long instrumentId = getInstrumentId(in, p);
+            CompletableFuture<Long> result;
+
+            try {
+                switch (type) {
+                    case NEW_ORDER:
+                        result = orderBookService.addOrderAsync(instrumentId, getQuantity(in, p), getPrice(in, p));
+                        break;
+                    case EXECUTION:
+                        result = orderBookService.addExecutionAsync(instrumentId, getQuantity(in, p), getPrice(in, p)).thenApply(v -> 0L);
+                        break;
+                    case OPEN:
+                        result = orderBookService.openAsync(instrumentId).thenApply(v -> 0L);
+                        break;
+                    case CLOSE:
+                        result = orderBookService.closeAsync(instrumentId).thenApply(v -> 0L);
+                        break;
+                    default:
+                        pending.add(new PendingRequest(type, requestId, CompletableFuture.completedFuture(0L), UNKNOWN_MESSAGE));
+                        return;
+                }
+            } catch (RuntimeException e) {
+                result = new CompletableFuture<>(); // rejected before reaching the book
+                result.completeExceptionally(e);
+            }
+            pending.add(new PendingRequest(type, requestId, result, 0));
+
+            if (!result.isDone()) {
+                result.whenComplete((orderId, t) -> {
+                    completions.add(this);
+                    selector.wakeup();
+                });
+            }
+        }
+
+        /**
+         * Writes the responses of the completed requests at the head of the queue, later ones wait for them.
+         */
+        private void respond() {
+            while (!pending.isEmpty() && pending.peek().result.isDone() && out.remaining() >= MESSAGE_SIZE) {
+                PendingRequest request = pending.poll();
+
+                if (request.rejectReason != 0) {
+                    putResponse(out, REJECT, request.type, request.rejectReason, request.requestId, 0);
+                    continue;
+                }
+                try {
+                    putResponse(out, ACK, request.type, 0, request.requestId, request.result.join());
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IllegalStateException) {
+                        log.warn("gateway request " + request.requestId + " rejected, " + cause.getMessage());
+                    } else {
+                        log.error("gateway request " + request.requestId + " failed", cause);
+                    }
+                    putResponse(out, REJECT, request.type, REJECTED, request.requestId, 0);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+
+            if (out.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE); // stop reading until the client takes its responses
+            } else if (pending.size() >= MAX_PENDING) {
+                key.interestOps(0); // stop reading until the books caught up, their completions resume it
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
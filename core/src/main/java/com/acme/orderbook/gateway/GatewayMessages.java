@@ -0,0 +1,95 @@
+package com.acme.orderbook.gateway;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed layout little endian messages of the binary gateway, every request and response is MESSAGE_SIZE bytes.
+ * Prices are in ticks of the instrument, Order.MARKET_PRICE for a market order. The helpers expect buffers in little
+ * endian order.
+ *
+ * Request: type (1), reserved (3), quantity (4), instrumentId (8), price (8), requestId (8).
+ * Response: type (1), request type (1), reserved (2), reject reason (4), requestId (8), orderId (8), reserved (8).
+ */
+public final class GatewayMessages {
+
+    public static final int MESSAGE_SIZE = 32;
+
+    // requests
+    public static final byte NEW_ORDER = 1;
+    public static final byte EXECUTION = 2;
+    public static final byte OPEN = 3;
+    public static final byte CLOSE = 4;
+
+    // responses
+    public static final byte ACK = 101;
+    public static final byte REJECT = 102;
+
+    // reject reasons
+    public static final int REJECTED = 1; // refused by the service, see the gateway log for the reason
+    public static final int UNKNOWN_MESSAGE = 2;
+
+    private GatewayMessages() {
+    }
+
+    public static void putRequest(ByteBuffer buffer, byte type, long requestId, long instrumentId, int quantity, long price) {
+        int p = buffer.position();
+
+        buffer.put(p, type);
+        buffer.put(p + 1, (byte) 0);
+        buffer.putShort(p + 2, (short) 0);
+        buffer.putInt(p + 4, quantity);
+        buffer.putLong(p + 8, instrumentId);
+        buffer.putLong(p + 16, price);
+        buffer.putLong(p + 24, requestId);
+        buffer.position(p + MESSAGE_SIZE);
+    }
+
+    public static void putResponse(ByteBuffer buffer, byte type, byte requestType, int rejectReason, long requestId, long orderId) {
+        int p = buffer.position();
+
+        buffer.put(p, type);
+        buffer.put(p + 1, requestType);
+        buffer.putShort(p + 2, (short) 0);
+        buffer.putInt(p + 4, rejectReason);
+        buffer.putLong(p + 8, requestId);
+        buffer.putLong(p + 16, orderId);
+        buffer.putLong(p + 24, 0L);
+        buffer.position(p + MESSAGE_SIZE);
+    }
+
+    public static byte getType(ByteBuffer buffer, int p) {
+        return buffer.get(p);
+    }
+
+    public static int getQuantity(ByteBuffer buffer, int p) {
+        return buffer.getInt(p + 4);
+    }
+
+    public static long getInstrumentId(ByteBuffer buffer, int p) {
+        return buffer.getLong(p + 8);
+    }
+
+    public static long getPrice(ByteBuffer buffer, int p) {
+        return buffer.getLong(p + 16);
+    }
+
+    public static long getRequestId(ByteBuffer buffer, int p) {
+        return buffer.getLong(p + 24);
+    }
+
+    public static byte getRequestType(ByteBuffer buffer, int p) {
+        return buffer.get(p + 1);
+    }
+
+    public static int getRejectReason(ByteBuffer buffer, int p) {
+        return buffer.getInt(p + 4);
+    }
+
+    public static long getResponseRequestId(ByteBuffer buffer, int p) {
+        return buffer.getLong(p + 8);
+    }
+
+    public static long getOrderId(ByteBuffer buffer, int p) {
+        return buffer.getLong(p + 16);
+    }
+}
@@ -0,0 +1,402 @@
+package com.acme.orderbook.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append only journal of the book commands in memory mapped segment files. Every command is one fixed size little
+ * endian record with a sequence number, appending is a copy into the mapped segment. Depending on the sync policy the
+ * segments are forced to disk by a background flusher every sync interval (group commit), so callers never wait for
+ * the disk. Replay reads the segments in sequence order and stops at the first incomplete record. Segments covered by
+ * a snapshot are deleted, replay then starts at the first remaining one.
+ *
+ * Appenders do not lock: a record claims its sequence from an atomic counter, and the sequence alone gives the
+ * record's segment and position, so records are written concurrently, each into its own place. Only mapping a new
+ * segment takes the journal's lock. A record claimed but not completed when the process dies ends the replay, the
+ * records behind it are dropped with it.
+ *
+ * Record layout: sequence (8), instrumentId (8), orderId (8), price (8), entryTime (8), quantity (4), type (4). The
+ * type is written last and marks the record as complete. Records never cross a 4 KiB page, the rest of a page that
+ * cannot hold another record stays empty, so a record is always written back to disk as a whole. Segments left behind
+ * a crash without any replayed record are removed on open, appending continues in a new one.
+ */
+public class Journal {
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    public enum SyncPolicy {
+        NONE, // left to the operating system
+        INTERVAL // forced by the flusher every sync interval
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final int RECORD_SIZE = 48;
+    private static final int PAGE_SIZE = 4096;
+    private static final int RECORDS_PER_PAGE = PAGE_SIZE / RECORD_SIZE;
+
+    private static final int END = 0;
+    private static final int OPEN = 1;
+    private static final int CLOSE = 2;
+    private static final int ADD_ORDER = 3;
+    private static final int ADD_EXECUTION = 4;
+    private static final int CREATE_INSTRUMENT = 5; // tick size bits in the price field, 1 in the quantity field for an off-heap book
+    private static final int RETIRE_INSTRUMENT = 6;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final SyncPolicy syncPolicy;
+    private final long syncIntervalMillis;
+
+    private final int recordsPerSegment;
+    private final long firstSequence; // first sequence appended after opening, the segments are counted from it
+    private final AtomicLong sequence = new AtomicLong(); // last claimed
+    private volatile Segment current; // segment of the latest claims
+    private final List<Segment> segments = new ArrayList<>(); // mapped segments not complete or not forced yet, guarded by this
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Replays the existing records to the handler (if not null) and opens the journal for appending after them.
+     */
+    public Journal(Path dir, SyncPolicy syncPolicy, long syncIntervalMillis, int segmentSize, JournalHandler replayHandler) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalStateException("journal segment size must be at least " + RECORD_SIZE);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.recordsPerSegment = segmentSize / PAGE_SIZE * RECORDS_PER_PAGE + Math.min(segmentSize % PAGE_SIZE / RECORD_SIZE, RECORDS_PER_PAGE);
+
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long replayed = replay(dir, replayHandler);
+        sequence.set(replayed);
+        firstSequence = replayed + 1;
+        removeUnreplayedSegments(replayed);
+        log.info("journal " + dir + " opened at sequence " + replayed + ", sync policy " + syncPolicy);
+
+        if (syncPolicy == SyncPolicy.INTERVAL) {
+            flusher = new Thread(this::flush, "orderbook-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    public long open(long instrumentId) {
+        return append(OPEN, instrumentId, 0, 0, 0, 0);
+    }
+
+    public long close(long instrumentId) {
+        return append(CLOSE, instrumentId, 0, 0, 0, 0);
+    }
+
+    public long addOrder(long instrumentId, long orderId, long entryTime, int quantity, long limitPrice) {
+        return append(ADD_ORDER, instrumentId, orderId, limitPrice, entryTime, quantity);
+    }
+
+    public long addExecution(long instrumentId, int quantity, long price) {
+        return append(ADD_EXECUTION, instrumentId, 0, price, 0, quantity);
+    }
+
+    public long createInstrument(long instrumentId, double tickSize, boolean offHeap) {
+        return append(CREATE_INSTRUMENT, instrumentId, 0, Double.doubleToLongBits(tickSize), 0, offHeap ? 1 : 0);
+    }
+
+    public long retireInstrument(long instrumentId) {
+        return append(RETIRE_INSTRUMENT, instrumentId, 0, 0, 0, 0);
+    }
+
+    /**
+     * The last claimed sequence. A book's records up to it are complete once the book's running command ended, the
+     * commands of a book run one at a time.
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Deletes the segments holding only records up to the sequence, once a snapshot covers them. The segment appended
+     * to is kept.
+     */
+    public synchronized void truncate(long sequence) {
+        List<Path> files = segmentFiles(dir);
+        int deleted = 0;
+
+        for (int i = 0; i < files.size() - 1 && firstSequence(files.get(i + 1)) - 1 <= sequence; i++) {
+            try {
+                Files.delete(files.get(i));
+                deleted++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (deleted > 0) {
+            log.info("deleted " + deleted + " journal segments up to sequence " + sequence);
+        }
+    }
+
+    /**
+     * Stops the flusher and forces all appended records to disk.
+     */
+    public void shutdown() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sync();
+    }
+
+    /**
+     * Replays all complete records in the directory to the handler (if not null), returns the last sequence.
+     */
+    public static long replay(Path dir, JournalHandler handler) {
+        List<Path> files = segmentFiles(dir);
+        long sequence = !files.isEmpty() ? firstSequence(files.get(0)) - 1 : 0; // the segments before may be truncated
+
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                for (int position = 0; position + RECORD_SIZE <= buffer.limit(); position = align(position + RECORD_SIZE)) {
+                    int type = buffer.getInt(position + 44);
+                    long recordSequence = buffer.getLong(position);
+
+                    if (type == END || recordSequence != sequence + 1) {
+                        break;
+                    }
+                    sequence = recordSequence;
+
+                    if (handler != null) {
+                        dispatch(buffer, position, type, recordSequence, handler);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return sequence;
+    }
+
+    private static void dispatch(MappedByteBuffer buffer, int position, int type, long sequence, JournalHandler handler) {
+        long instrumentId = buffer.getLong(position + 8);
+
+        switch (type) {
+            case OPEN:
+                handler.open(sequence, instrumentId);
+                break;
+            case CLOSE:
+                handler.close(sequence, instrumentId);
+                break;
+            case ADD_ORDER:
+                handler.addOrder(sequence, instrumentId, buffer.getLong(position + 16), buffer.getLong(position + 32), buffer.getInt(position + 40), buffer.getLong(position + 24));
+                break;
+            case ADD_EXECUTION:
+                handler.addExecution(sequence, instrumentId, buffer.getInt(position + 40), buffer.getLong(position + 24));
+                break;
+            case CREATE_INSTRUMENT:
+                handler.createInstrument(sequence, instrumentId, Double.longBitsToDouble(buffer.getLong(position + 24)), buffer.getInt(position + 40) == 1);
+                break;
+            case RETIRE_INSTRUMENT:
+                handler.retireInstrument(sequence, instrumentId);
+                break;
+            default:
+                throw new IllegalStateException("unknown journal record type " + type + " at sequence " + buffer.getLong(position));
+        }
+    }
+
+    /**
+     * Claims the next sequence and writes the record at the place the sequence gives it, without locking.
+     */
+    private long append(int type, long instrumentId, long orderId, long price, long entryTime, int quantity) {
+        long recordSequence = sequence.incrementAndGet();
+        long record = recordSequence - firstSequence;
+        long index = record / recordsPerSegment;
+        int recordInSegment = (int) (record % recordsPerSegment);
+
+        Segment segment = current;
+        if (segment == null || segment.index != index) {
+            segment = segment(index);
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int position = recordInSegment / RECORDS_PER_PAGE * PAGE_SIZE + recordInSegment % RECORDS_PER_PAGE * RECORD_SIZE;
+
+        buffer.putLong(position, recordSequence);
+        buffer.putLong(position + 8, instrumentId);
+        buffer.putLong(position + 16, orderId);
+        buffer.putLong(position + 24, price);
+        buffer.putLong(position + 32, entryTime);
+        buffer.putInt(position + 40, quantity);
+        buffer.putInt(position + 44, type); // completes the record
+        segment.written.incrementAndGet();
+
+        return recordSequence;
+    }
+
+    /**
+     * The segment of the index, mapped by the first record claimed in it. Claims may reach the next segment before
+     * the last records of the previous one are written, so a segment stays mapped until it is complete and, with the
+     * interval policy, forced.
+     */
+    private synchronized Segment segment(long index) {
+        for (Segment segment : segments) {
+            if (segment.index == index) {
+                return segment;
+            }
+        }
+        Path file = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence + index * recordsPerSegment, SEGMENT_SUFFIX));
+
+        Segment segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            segment = new Segment(index, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (syncPolicy == SyncPolicy.NONE) {
+            segments.removeIf(this::isComplete); // nothing to force
+        }
+        segments.add(segment);
+        if (current == null || index > current.index) {
+            current = segment;
+        }
+        return segment;
+    }
+
+    private boolean isComplete(Segment segment) {
+        return segment.written.get() == recordsPerSegment;
+    }
+
+    /**
+     * Position of the next record at or after the position, moved to the next page if the record would cross it.
+     */
+    private static int align(int position) {
+        int pageOffset = position % PAGE_SIZE;
+        return pageOffset + RECORD_SIZE > PAGE_SIZE ? position + PAGE_SIZE - pageOffset : position;
+    }
+
+    /**
+     * Segments starting after the last replayed record were created but not written to before a crash, or follow a
+     * record that was not completed. An empty one is deleted, the others are renamed so they are never replayed after
+     * the records appended from now on.
+     */
+    private void removeUnreplayedSegments(long sequence) {
+        for (Path file : segmentFiles(dir)) {
+            if (firstSequence(file) <= sequence) {
+                continue;
+            }
+            try {
+                if (isEmpty(file)) {
+                    Files.delete(file);
+                    log.info("deleted empty journal segment " + file);
+                } else {
+                    Path discarded = file.resolveSibling(file.getFileName() + ".discarded");
+                    Files.move(file, discarded, StandardCopyOption.REPLACE_EXISTING);
+                    log.warn("journal segment " + file + " does not continue at sequence " + sequence + ", moved to " + discarded);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static boolean isEmpty(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < RECORD_SIZE) {
+                return true;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(record, 0);
+            return record.getInt(44) == END;
+        }
+    }
+
+    private void flush() {
+        while (running) {
+            try {
+                Thread.sleep(syncIntervalMillis);
+            } catch (InterruptedException ie) {
+                break;
+            }
+            sync();
+        }
+    }
+
+    /**
+     * Forces the mapped segments, a complete one for the last time before it is dropped. Appenders never wait for it,
+     * only a writer mapping a new segment waits for the short hand over.
+     */
+    private void sync() {
+        List<Segment> forced;
+        synchronized (this) {
+            forced = new ArrayList<>(segments);
+            segments.removeIf(this::isComplete); // all written before the force below
+        }
+        for (Segment segment : forced) {
+            segment.buffer.force();
+        }
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static List<Path> segmentFiles(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX) && f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Segment {
+        private final long index; // counted from the journal's first sequence
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger written = new AtomicInteger(); // complete records
+
+        Segment(long index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.acme.orderbook.journal;
+
+/**
+ * Receives the journaled book commands in sequence order on replay.
+ */
+public interface JournalHandler {
+    void createInstrument(long sequence, long instrumentId, double tickSize, boolean offHeap);
+    void retireInstrument(long sequence, long instrumentId);
+
+    void open(long sequence, long instrumentId);
+    void close(long sequence, long instrumentId);
+
+    void addOrder(long sequence, long instrumentId, long orderId, long entryTime, int quantity, long limitPrice);
+
+    void addExecution(long sequence, long instrumentId, int quantity, long price);
+}
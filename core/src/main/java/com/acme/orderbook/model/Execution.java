@@ -7,9 +7,9 @@ public class Execution {
 
     private final long instrumentId;
     private final int quantity;
-    private final double price;
+    private final long price; // ticks
 
-    public Execution(long instrumentId, int quantity, double price) {
+    public Execution(long instrumentId, int quantity, long price) {
         this.instrumentId = instrumentId;
         this.quantity = quantity;
         this.price = price;
@@ -23,7 +23,7 @@ public class Execution {
         return quantity;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 }
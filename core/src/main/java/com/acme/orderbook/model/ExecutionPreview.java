@@ -0,0 +1,56 @@
+package com.acme.orderbook.model;
+
+/**
+ * How an execution would be distributed over the valid orders of a book, computed without changing the book. Holds
+ * the orders that would get a fill, in time priority, and whether the book would be executed afterwards.
+ */
+public class ExecutionPreview {
+
+    private final Execution execution;
+    private final long[] orderIds;
+    private final int[] fillQuantities;
+    private final int fillCount;
+    private final boolean executed;
+
+    public ExecutionPreview(Execution execution, long[] orderIds, int[] fillQuantities, int fillCount, boolean executed) {
+        this.execution = execution;
+        this.orderIds = orderIds;
+        this.fillQuantities = fillQuantities;
+        this.fillCount = fillCount;
+        this.executed = executed;
+    }
+
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public int getFillCount() {
+        return fillCount;
+    }
+
+    public long getOrderId(int i) {
+        return orderIds[i];
+    }
+
+    public int getFillQuantity(int i) {
+        return fillQuantities[i];
+    }
+
+    /**
+     * Quantity of the execution that would be distributed, less than its quantity when the demand is smaller.
+     */
+    public long getFilledQuantity() {
+        long filled = 0;
+        for (int i = 0; i < fillCount; i++) {
+            filled += fillQuantities[i];
+        }
+        return filled;
+    }
+
+    /**
+     * True if the book would be executed by the execution, all of its remaining orders canceled.
+     */
+    public boolean isExecuted() {
+        return executed;
+    }
+}
@@ -1,17 +1,62 @@
 package com.acme.orderbook.model;
 
+import java.math.BigDecimal;
+
 /**
  * Created by robertk on 6/8/2019.
  */
 public class Instrument {
 
+    private static final double TICK_TOLERANCE = 1e-6; // of a tick, covers the rounding noise of decimal prices as doubles
+    private static final double MAX_TICKS = 1L << 53; // largest tick count a double holds exactly
+
     private final long id;
+    private final BigDecimal tickSize;
+    private final boolean offHeap; // book kept in off-heap memory
+
+    public Instrument(long id, double tickSize) {
+        this(id, tickSize, false);
+    }
 
-    public Instrument(long id) {
+    public Instrument(long id, double tickSize, boolean offHeap) {
+        if (tickSize <= 0d) {
+            throw new IllegalStateException("tick size must be greater than 0");
+        }
         this.id = id;
+        this.tickSize = BigDecimal.valueOf(tickSize);
+        this.offHeap = offHeap;
     }
 
     public long getId() {
         return id;
     }
+
+    public double getTickSize() {
+        return tickSize.doubleValue();
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Converts a price to the nearest number of ticks. A price like 0.1 + 0.2 is a hair off the grid as a double and
+     * still converts, prices off the grid by more than the tolerance are rejected.
+     */
+    public long toTicks(double price) {
+        double ticks = price / tickSize.doubleValue();
+        if (!(Math.abs(ticks) <= MAX_TICKS)) {
+            throw new IllegalStateException("price " + price + " is out of range for instrument " + id);
+        }
+        long rounded = Math.round(ticks);
+
+        if (Math.abs(ticks - rounded) > TICK_TOLERANCE) {
+            throw new IllegalStateException("price " + price + " is not a multiple of tick size " + tickSize + " for instrument " + id);
+        }
+        return rounded;
+    }
+
+    public double toPrice(long ticks) {
+        return BigDecimal.valueOf(ticks).multiply(tickSize).doubleValue();
+    }
 }
@@ -0,0 +1,135 @@
+package com.acme.orderbook.model;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics of many books and their totals. Every book's statistics are taken while holding its lock together with
+ * the book's version, the number of changes they reflect, and the totals are summed from exactly these statistics, so
+ * they always add up. Prices are left out of the totals since the instruments have different tick sizes.
+ */
+public class MarketStatistics {
+
+    private final List<Statistics> instruments; // ascending by instrument id
+    private final long[] versions; // version of the book every statistics was taken at
+
+    private long activeOrders;
+    private long executedOrders;
+    private long canceledOrders;
+
+    private long activeValidOrders;
+    private long activeInvalidOrders;
+
+    private long activeValidOrdersDemand;
+    private long activeInvalidOrdersDemand;
+
+    private int largestActiveOrderQuantity;
+    private int smallestActiveOrderQuantity;
+
+    private LocalDateTime firstActiveOrderEntry;
+    private LocalDateTime lastActiveOrderEntry;
+
+    public MarketStatistics(List<Statistics> instruments, long[] versions) {
+        this.instruments = Collections.unmodifiableList(instruments);
+        this.versions = versions;
+
+        for (Statistics s : instruments) {
+            activeOrders += s.getActiveOrders();
+            executedOrders += s.getExecutedOrders();
+            canceledOrders += s.getCanceledOrders();
+
+            activeValidOrders += s.getActiveValidOrders();
+            activeInvalidOrders += s.getActiveInvalidOrders();
+
+            activeValidOrdersDemand += s.getActiveValidOrdersDemand();
+            activeInvalidOrdersDemand += s.getActiveInvalidOrdersDemand();
+
+            if (s.getActiveOrders() > 0) {
+                largestActiveOrderQuantity = Math.max(largestActiveOrderQuantity, s.getLargestActiveOrderQuantity());
+                smallestActiveOrderQuantity = smallestActiveOrderQuantity == 0 ? s.getSmallestActiveOrderQuantity() :
+                        Math.min(smallestActiveOrderQuantity, s.getSmallestActiveOrderQuantity());
+            }
+            if (s.getFirstActiveOrderEntry() != null && (firstActiveOrderEntry == null || s.getFirstActiveOrderEntry().isBefore(firstActiveOrderEntry))) {
+                firstActiveOrderEntry = s.getFirstActiveOrderEntry();
+            }
+            if (s.getLastActiveOrderEntry() != null && (lastActiveOrderEntry == null || s.getLastActiveOrderEntry().isAfter(lastActiveOrderEntry))) {
+                lastActiveOrderEntry = s.getLastActiveOrderEntry();
+            }
+        }
+    }
+
+    public List<Statistics> getInstruments() {
+        return instruments;
+    }
+
+    public long getVersion(int i) {
+        return versions[i];
+    }
+
+    public int getInstrumentCount() {
+        return instruments.size();
+    }
+
+    public long getActiveOrders() {
+        return activeOrders;
+    }
+
+    public long getExecutedOrders() {
+        return executedOrders;
+    }
+
+    public long getCanceledOrders() {
+        return canceledOrders;
+    }
+
+    public long getActiveValidOrders() {
+        return activeValidOrders;
+    }
+
+    public long getActiveInvalidOrders() {
+        return activeInvalidOrders;
+    }
+
+    public long getActiveValidOrdersDemand() {
+        return activeValidOrdersDemand;
+    }
+
+    public long getActiveInvalidOrdersDemand() {
+        return activeInvalidOrdersDemand;
+    }
+
+    public int getLargestActiveOrderQuantity() {
+        return largestActiveOrderQuantity;
+    }
+
+    public int getSmallestActiveOrderQuantity() {
+        return smallestActiveOrderQuantity;
+    }
+
+    public LocalDateTime getFirstActiveOrderEntry() {
+        return firstActiveOrderEntry;
+    }
+
+    public LocalDateTime getLastActiveOrderEntry() {
+        return lastActiveOrderEntry;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketStatistics{" +
+                "instrumentCount=" + getInstrumentCount() +
+                ", activeOrders=" + activeOrders +
+                ", executedOrders=" + executedOrders +
+                ", canceledOrders=" + canceledOrders +
+                ", activeValidOrders=" + activeValidOrders +
+                ", activeInvalidOrders=" + activeInvalidOrders +
+                ", activeValidOrdersDemand=" + activeValidOrdersDemand +
+                ", activeInvalidOrdersDemand=" + activeInvalidOrdersDemand +
+                ", largestActiveOrderQuantity=" + largestActiveOrderQuantity +
+                ", smallestActiveOrderQuantity=" + smallestActiveOrderQuantity +
+                ", firstActiveOrderEntry=" + firstActiveOrderEntry +
+                ", lastActiveOrderEntry=" + lastActiveOrderEntry +
+                '}';
+    }
+}
@@ -2,6 +2,7 @@ package com.acme.orderbook.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -9,17 +10,20 @@ import java.util.List;
  */
 public class Order {
 
+    public static final long MARKET_PRICE = Long.MAX_VALUE; // a market order is valid at any price
+
     private final long instrumentId;
     private final long orderId;
     private final LocalDateTime entryDate;
     private final int quantity;
-    private final Double limitPrice;
+    private final long limitPrice; // ticks
 
+    private int executedQuantity;
     private LocalDateTime executionDate;
 
-    private final List<OrderPartialExecution> partialExecutions = new ArrayList<>();
+    private List<OrderPartialExecution> partialExecutions; // created with the first one, books keep their own history
 
-    public Order(long instrumentId, long orderId, LocalDateTime entryDate, int quantity, Double limitPrice) {
+    public Order(long instrumentId, long orderId, LocalDateTime entryDate, int quantity, long limitPrice) {
         this.instrumentId = instrumentId;
         this.orderId = orderId;
         this.entryDate = entryDate;
@@ -27,27 +31,41 @@ public class Order {
         this.limitPrice = limitPrice;
     }
 
+    /**
+     * An order with its execution state, as built by the books and restored from the archive.
+     */
+    public Order(long instrumentId, long orderId, LocalDateTime entryDate, int quantity, long limitPrice,
+                 int executedQuantity, LocalDateTime executionDate, List<OrderPartialExecution> partialExecutions) {
+        this(instrumentId, orderId, entryDate, quantity, limitPrice);
+
+        this.executedQuantity = executedQuantity;
+        this.executionDate = executionDate;
+        if (!partialExecutions.isEmpty()) {
+            this.partialExecutions = new ArrayList<>(partialExecutions);
+        }
+    }
+
     public boolean isLimitOrder() {
-        return limitPrice != null;
+        return limitPrice != MARKET_PRICE;
     }
 
     public int getExecutedQuantity() {
-        return partialExecutions.stream().mapToInt(OrderPartialExecution::getQuantity).sum();
+        return executedQuantity;
     }
 
     public int getUnexecutedQuantity() {
         return quantity - getExecutedQuantity();
     }
 
-    public boolean isValid(double executionPrice) {
-        return !isLimitOrder() || limitPrice >= executionPrice;
+    public boolean isValid(long executionPrice) {
+        return limitPrice >= executionPrice;
     }
 
     public boolean isExecuted() {
         return quantity == getExecutedQuantity();
     }
 
-    public void addPartialExecution(int partialQuantity, double partialPrice) {
+    public void addPartialExecution(int partialQuantity, long partialPrice) {
         if (isExecuted()) {
             throw new IllegalStateException("order already executed " + this);
 
@@ -58,14 +76,22 @@ public class Order {
             throw new IllegalStateException("invalid partial price " + partialPrice + " for order " + this);
         }
 
+        if (partialExecutions == null) {
+            partialExecutions = new ArrayList<>();
+        }
         partialExecutions.add(new OrderPartialExecution(partialQuantity, partialPrice));
+        executedQuantity += partialQuantity;
         if (isExecuted()) {
             executionDate = LocalDateTime.now();
         }
     }
 
     public List<OrderPartialExecution> getPartialExecutions() {
-        return partialExecutions;
+        return partialExecutions != null ? partialExecutions : Collections.emptyList();
+    }
+
+    public Order copy() {
+        return new Order(instrumentId, orderId, entryDate, quantity, limitPrice, executedQuantity, executionDate, getPartialExecutions());
     }
 
     public long getInstrumentId() {
@@ -84,7 +110,7 @@ public class Order {
         return quantity;
     }
 
-    public double getLimitPrice() {
+    public long getLimitPrice() {
         return limitPrice;
     }
 
@@ -99,7 +125,7 @@ public class Order {
                 ", orderId=" + orderId +
                 ", entryDate=" + entryDate +
                 ", quantity=" + quantity +
-                ", limitPrice=" + limitPrice +
+                ", limitPrice=" + (isLimitOrder() ? limitPrice : null) +
                 ", executedQuantity=" + getExecutedQuantity() +
                 ", executionDate=" + executionDate +
                 '}';
@@ -6,9 +6,9 @@ package com.acme.orderbook.model;
 public class OrderPartialExecution {
 
     private final int quantity;
-    private final double price;
+    private final long price; // ticks
 
-    public OrderPartialExecution(int quantity, double price) {
+    public OrderPartialExecution(int quantity, long price) {
         this.quantity = quantity;
         this.price = price;
     }
@@ -17,7 +17,7 @@ public class OrderPartialExecution {
         return quantity;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 }
@@ -1,8 +1,7 @@
 package com.acme.orderbook.model;
 
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 /**
  * Created by robertk on 6/8/2019.
@@ -17,7 +16,7 @@ public class Statistics {
     private int activeValidOrders;
     private int activeInvalidOrders;
 
-    private double lastExecutionPrice;
+    private long lastExecutionPrice; // ticks
     private int activeValidOrdersDemand;
     private int activeInvalidOrdersDemand;
 
@@ -27,7 +26,13 @@ public class Statistics {
     private LocalDateTime firstActiveOrderEntry;
     private LocalDateTime lastActiveOrderEntry;
 
-    private final Map<Double, Integer> activeOrderLimitBreakDownTable = new TreeMap<>();
+    // demand per limit price, limit prices in ticks ascending
+    private long[] activeOrderLimitPrices = new long[0];
+    private int[] activeOrderLimitDemands = new int[0];
+
+    // demand curve, the demand valid at each limit price of the break down, market orders included
+    private long activeMarketOrdersDemand;
+    private long[] activeOrderValidDemands = new long[0];
 
     public Statistics(long instrumentId) {
         this.instrumentId = instrumentId;
@@ -77,11 +82,11 @@ public class Statistics {
         this.activeInvalidOrders = activeInvalidOrders;
     }
 
-    public double getLastExecutionPrice() {
+    public long getLastExecutionPrice() {
         return lastExecutionPrice;
     }
 
-    public void setLastExecutionPrice(double lastExecutionPrice) {
+    public void setLastExecutionPrice(long lastExecutionPrice) {
         this.lastExecutionPrice = lastExecutionPrice;
     }
 
@@ -133,8 +138,73 @@ public class Statistics {
         this.lastActiveOrderEntry = lastActiveOrderEntry;
     }
 
-    public Map<Double, Integer> getActiveOrderLimitBreakDownTable() {
-        return activeOrderLimitBreakDownTable;
+    public long[] getActiveOrderLimitPrices() {
+        return activeOrderLimitPrices;
+    }
+
+    public int[] getActiveOrderLimitDemands() {
+        return activeOrderLimitDemands;
+    }
+
+    public void setActiveOrderLimitBreakDown(long[] activeOrderLimitPrices, int[] activeOrderLimitDemands) {
+        this.activeOrderLimitPrices = activeOrderLimitPrices;
+        this.activeOrderLimitDemands = activeOrderLimitDemands;
+    }
+
+    public int getActiveOrderLimitDemand(long limitPrice) {
+        int i = Arrays.binarySearch(activeOrderLimitPrices, limitPrice);
+        return i >= 0 ? activeOrderLimitDemands[i] : 0;
+    }
+
+    public long getActiveMarketOrdersDemand() {
+        return activeMarketOrdersDemand;
+    }
+
+    public long[] getActiveOrderValidDemands() {
+        return activeOrderValidDemands;
+    }
+
+    /**
+     * The valid demand at every limit price, non increasing with the price, and the demand of market orders, which is
+     * valid at any price.
+     */
+    public void setDemandCurve(long activeMarketOrdersDemand, long[] activeOrderValidDemands) {
+        this.activeMarketOrdersDemand = activeMarketOrdersDemand;
+        this.activeOrderValidDemands = activeOrderValidDemands;
+    }
+
+    /**
+     * Demand of the active orders that would be valid for an execution at the given price.
+     */
+    public long getValidDemand(long price) {
+        int i = Arrays.binarySearch(activeOrderLimitPrices, price);
+        if (i < 0) {
+            i = -i - 1; // first limit price above
+        }
+        return i < activeOrderValidDemands.length ? activeOrderValidDemands[i] : activeMarketOrdersDemand;
+    }
+
+    /**
+     * Indicative clearing price for the given supply, the highest limit price at which the valid demand still takes
+     * the whole supply, 0 if no limit price does. When there are no limit orders but the market orders take the
+     * supply, it clears at any price and the result is {@link Order#MARKET_PRICE}.
+     */
+    public long getIndicativePrice(long supply) {
+        if (activeOrderValidDemands.length == 0) {
+            return activeMarketOrdersDemand >= supply ? Order.MARKET_PRICE : 0;
+        }
+        int low = 0;
+        int high = activeOrderValidDemands.length;
+
+        while (low < high) { // first limit price at which the demand falls short
+            int mid = (low + high) >>> 1;
+            if (activeOrderValidDemands[mid] >= supply) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low > 0 ? activeOrderLimitPrices[low - 1] : 0;
     }
 
     @Override
@@ -153,7 +223,10 @@ public class Statistics {
                 ", smallestActiveOrderQuantity=" + smallestActiveOrderQuantity +
                 ", firstActiveOrderEntry=" + firstActiveOrderEntry +
                 ", lastActiveOrderEntry=" + lastActiveOrderEntry +
-                ", activeOrderLimitBreakDownTable=" + activeOrderLimitBreakDownTable +
+                ", activeOrderLimitPrices=" + Arrays.toString(activeOrderLimitPrices) +
+                ", activeOrderLimitDemands=" + Arrays.toString(activeOrderLimitDemands) +
+                ", activeMarketOrdersDemand=" + activeMarketOrdersDemand +
+                ", activeOrderValidDemands=" + Arrays.toString(activeOrderValidDemands) +
                 '}';
     }
 }
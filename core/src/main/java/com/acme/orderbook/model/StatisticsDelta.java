@@ -0,0 +1,118 @@
+package com.acme.orderbook.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Changes between two statistics of a book: the changed counters by name and the changed limit level demands by limit
+ * price in ticks, a demand of 0 means the level is gone. A delta from nothing is a full snapshot. Deltas are never
+ * modified once built, merging creates a new delta so a delta can be shared by many subscribers.
+ *
+ * The demand curve is not part of a delta, a change at one level would change the valid demand of every level below it.
+ * Clients derive it from the levels they hold: the valid demand at a price is the activeMarketOrdersDemand counter plus
+ * the demands of the levels at or above the price.
+ */
+public class StatisticsDelta {
+
+    private final long instrumentId;
+    private final boolean snapshot;
+    private final Map<String, Object> counters = new LinkedHashMap<>();
+    private final Map<Long, Integer> limitDemands = new TreeMap<>();
+
+    private StatisticsDelta(long instrumentId, boolean snapshot) {
+        this.instrumentId = instrumentId;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Delta turning previous into current, a full snapshot if previous is null.
+     */
+    public static StatisticsDelta between(Statistics previous, Statistics current) {
+        StatisticsDelta d = new StatisticsDelta(current.getInstrumentId(), previous == null);
+
+        d.counter("activeOrders", previous != null ? previous.getActiveOrders() : null, current.getActiveOrders());
+        d.counter("executedOrders", previous != null ? previous.getExecutedOrders() : null, current.getExecutedOrders());
+        d.counter("canceledOrders", previous != null ? previous.getCanceledOrders() : null, current.getCanceledOrders());
+        d.counter("activeValidOrders", previous != null ? previous.getActiveValidOrders() : null, current.getActiveValidOrders());
+        d.counter("activeInvalidOrders", previous != null ? previous.getActiveInvalidOrders() : null, current.getActiveInvalidOrders());
+        d.counter("lastExecutionPrice", previous != null ? previous.getLastExecutionPrice() : null, current.getLastExecutionPrice());
+        d.counter("activeValidOrdersDemand", previous != null ? previous.getActiveValidOrdersDemand() : null, current.getActiveValidOrdersDemand());
+        d.counter("activeInvalidOrdersDemand", previous != null ? previous.getActiveInvalidOrdersDemand() : null, current.getActiveInvalidOrdersDemand());
+        d.counter("activeMarketOrdersDemand", previous != null ? previous.getActiveMarketOrdersDemand() : null, current.getActiveMarketOrdersDemand());
+        d.counter("largestActiveOrderQuantity", previous != null ? previous.getLargestActiveOrderQuantity() : null, current.getLargestActiveOrderQuantity());
+        d.counter("smallestActiveOrderQuantity", previous != null ? previous.getSmallestActiveOrderQuantity() : null, current.getSmallestActiveOrderQuantity());
+        d.counter("firstActiveOrderEntry", previous != null ? previous.getFirstActiveOrderEntry() : null, current.getFirstActiveOrderEntry());
+        d.counter("lastActiveOrderEntry", previous != null ? previous.getLastActiveOrderEntry() : null, current.getLastActiveOrderEntry());
+
+        long[] previousPrices = previous != null ? previous.getActiveOrderLimitPrices() : new long[0];
+        int[] previousDemands = previous != null ? previous.getActiveOrderLimitDemands() : new int[0];
+        long[] currentPrices = current.getActiveOrderLimitPrices();
+        int[] currentDemands = current.getActiveOrderLimitDemands();
+
+        // both sides are sorted by price
+        int i = 0;
+        int j = 0;
+        while (i < previousPrices.length || j < currentPrices.length) {
+            if (j == currentPrices.length || (i < previousPrices.length && previousPrices[i] < currentPrices[j])) {
+                d.limitDemands.put(previousPrices[i++], 0);
+
+            } else if (i == previousPrices.length || currentPrices[j] < previousPrices[i]) {
+                d.limitDemands.put(currentPrices[j], currentDemands[j]);
+                j++;
+
+            } else {
+                if (previousDemands[i] != currentDemands[j]) {
+                    d.limitDemands.put(currentPrices[j], currentDemands[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Delta with the changes of this delta followed by the changes of the later one.
+     */
+    public StatisticsDelta merge(StatisticsDelta later) {
+        StatisticsDelta d = new StatisticsDelta(instrumentId, snapshot || later.snapshot);
+
+        d.counters.putAll(counters);
+        d.counters.putAll(later.counters);
+        d.limitDemands.putAll(limitDemands);
+        d.limitDemands.putAll(later.limitDemands);
+
+        if (d.snapshot) {
+            d.limitDemands.values().removeIf(demand -> demand == 0); // a snapshot lists the existing levels only
+        }
+        return d;
+    }
+
+    public boolean isEmpty() {
+        return !snapshot && counters.isEmpty() && limitDemands.isEmpty();
+    }
+
+    public long getInstrumentId() {
+        return instrumentId;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public Map<String, Object> getCounters() {
+        return counters;
+    }
+
+    public Map<Long, Integer> getLimitDemands() {
+        return limitDemands;
+    }
+
+    private void counter(String name, Object previous, Object current) {
+        if (snapshot || !Objects.equals(previous, current)) {
+            counters.put(name, current);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.acme.orderbook.registry;
+
+import com.acme.orderbook.model.Statistics;
+
+/**
+ * Immutable state of a book as of a version, published after every batch of changes of a sequencer worker, or by the
+ * writer at the end of every command otherwise. Readers of a current view do not touch the book, and no reader ever
+ * sees a half applied execution. The statistics are shared by all readers of the view and must not be modified.
+ */
+public class BookView {
+
+    private final long version;
+    private final boolean open;
+    private final boolean executed;
+    private final Statistics statistics;
+
+    public BookView(long version, boolean open, boolean executed, Statistics statistics) {
+        this.version = version;
+        this.open = open;
+        this.executed = executed;
+        this.statistics = statistics;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+}
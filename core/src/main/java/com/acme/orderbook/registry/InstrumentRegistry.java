@@ -0,0 +1,351 @@
+package com.acme.orderbook.registry;
+
+import com.acme.orderbook.book.OrderBook;
+import com.acme.orderbook.model.Instrument;
+import com.acme.orderbook.sequencer.BookQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Instruments and their books keyed by the primitive instrument id. The ids are spread over a power of two number of
+ * shards, every instrument stays in its shard for its lifetime. A shard is an open addressing table that is copied on
+ * every change under the shard's lock and published through a volatile field, so lookups never lock or allocate and
+ * only creating or retiring an instrument pays for the copy of its shard.
+ *
+ * Order ids are routable to their shard: an id is a sequence number shifted left by the shard bits with the shard of
+ * its book in the low bits. Every shard has its own sequence and hands it out to its books in blocks, a book takes the
+ * ids of its block while holding its lock, so allocating an id contends neither across shards nor within one, and the
+ * ids of a book are ascending. Every shard maps the first sequence of each run of blocks to the book that took it, so an
+ * id leads to its book with one lookup. Ids must be read with the shard count they were made with, snapshots and the
+ * service's journal record it.
+ */
+public class InstrumentRegistry {
+
+    private static final int ORDER_SEQUENCE_BLOCK = 1024;
+
+    public static class Entry {
+        private final Instrument instrument;
+        private final OrderBook orderBook;
+        private final int shard;
+        private final AtomicLong version = new AtomicLong(); // number of changes of the book
+        private volatile BookView view; // latest published state of the book
+        private volatile boolean retired;
+        private volatile BookQueue queue; // asynchronous commands when not sequenced
+        private final AtomicInteger pendingCommands = new AtomicInteger(); // asynchronous commands queued or running
+
+        private final Shard orderShard;
+        private final int shardBits;
+        private long nextOrderSequence; // block of the book, guarded by the book's lock
+        private long orderSequenceBlockEnd;
+
+        Entry(Instrument instrument, OrderBook orderBook, int shard, Shard orderShard, int shardBits) {
+            this.instrument = instrument;
+            this.orderBook = orderBook;
+            this.shard = shard;
+            this.orderShard = orderShard;
+            this.shardBits = shardBits;
+        }
+
+        /**
+         * Next order id of the book, called while holding the book's lock.
+         */
+        public long nextOrderId() {
+            reserveOrderSequences(1);
+            return nextOrderSequence++ << shardBits | shard;
+        }
+
+        /**
+         * Next count order ids of the book from one contiguous block, called while holding the book's lock. A batch
+         * larger than what is left of the book's block takes a block of its own from the shard.
+         */
+        public void nextOrderIds(long[] orderIds, int count) {
+            reserveOrderSequences(count);
+            for (int i = 0; i < count; i++) {
+                orderIds[i] = nextOrderSequence++ << shardBits | shard;
+            }
+        }
+
+        private void reserveOrderSequences(int count) {
+            if (orderSequenceBlockEnd - nextOrderSequence < count) {
+                int blockSize = Math.max(count, ORDER_SEQUENCE_BLOCK);
+                orderSequenceBlockEnd = orderShard.orderSequence.addAndGet(blockSize) + 1;
+                nextOrderSequence = orderSequenceBlockEnd - blockSize;
+                orderShard.mapOrderSequence(nextOrderSequence, this);
+            }
+        }
+
+        public Instrument getInstrument() {
+            return instrument;
+        }
+
+        public OrderBook getOrderBook() {
+            return orderBook;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public AtomicLong getVersion() {
+            return version;
+        }
+
+        public BookView getView() {
+            return view;
+        }
+
+        public void setView(BookView view) {
+            this.view = view;
+        }
+
+        public boolean isRetired() {
+            return retired;
+        }
+
+        public BookQueue getQueue() {
+            return queue;
+        }
+
+        public void setQueue(BookQueue queue) {
+            this.queue = queue;
+        }
+
+        public AtomicInteger getPendingCommands() {
+            return pendingCommands;
+        }
+    }
+
+    private static final long EMPTY = Long.MIN_VALUE; // not a valid instrument id
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final int shardBits;
+
+    public InstrumentRegistry(int shardCount) {
+        if (Integer.bitCount(shardCount) != 1) {
+            throw new IllegalStateException("shard count must be a power of 2, " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        shardMask = shardCount - 1;
+        shardBits = Integer.numberOfTrailingZeros(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Entry of the instrument or null.
+     */
+    public Entry get(long instrumentId) {
+        return shards[shardOf(instrumentId)].get(instrumentId);
+    }
+
+    public Entry create(Instrument instrument, OrderBook orderBook) {
+        long instrumentId = instrument.getId();
+        if (instrumentId == EMPTY) {
+            throw new IllegalStateException("invalid instrument id " + instrumentId);
+        }
+        int shard = shardOf(instrumentId);
+        Entry entry = new Entry(instrument, orderBook, shard, shards[shard], shardBits);
+
+        shards[shard].put(instrumentId, entry);
+        return entry;
+    }
+
+    /**
+     * Removes the instrument and returns its entry.
+     */
+    public Entry retire(long instrumentId) {
+        Entry entry = shards[shardOf(instrumentId)].remove(instrumentId);
+        entry.retired = true;
+        entry.orderShard.orderBooks.values().removeIf(e -> e == entry); // its orders are archived
+
+        return entry;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.table.size;
+        }
+        return size;
+    }
+
+    public void forEach(Consumer<Entry> action) {
+        for (Shard shard : shards) {
+            Table table = shard.table;
+            for (Entry entry : table.entries) {
+                if (entry != null) {
+                    action.accept(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * All instruments ordered by id.
+     */
+    public List<Instrument> getInstruments() {
+        List<Instrument> instruments = new ArrayList<>(size());
+        forEach(entry -> instruments.add(entry.getInstrument()));
+        instruments.sort(Comparator.comparingLong(Instrument::getId));
+        return instruments;
+    }
+
+    /**
+     * Entry of the book that took the order id, null if no active book did. The book may not have handed the id out yet.
+     */
+    public Entry getOrderBookEntry(long orderId) {
+        Map.Entry<Long, Entry> run = shards[(int) orderId & shardMask].orderBooks.floorEntry(orderId >>> shardBits);
+        return run != null ? run.getValue() : null;
+    }
+
+    /**
+     * Highest order sequence reserved by any shard, for snapshots.
+     */
+    public long getOrderSequence() {
+        long sequence = 0;
+        for (Shard shard : shards) {
+            sequence = Math.max(sequence, shard.orderSequence.get());
+        }
+        return sequence;
+    }
+
+    /**
+     * Makes every shard continue above the sequence, when restoring a snapshot.
+     */
+    public void advanceOrderSequence(long sequence) {
+        for (Shard shard : shards) {
+            shard.orderSequence.accumulateAndGet(sequence, Math::max);
+        }
+    }
+
+    /**
+     * Maps the id to the book and makes the order's shard continue above the id's sequence, when replaying or restoring
+     * an order with its recorded id.
+     */
+    public void markOrderIdUsed(Entry entry, long orderId) {
+        Shard shard = shards[(int) orderId & shardMask];
+        long sequence = orderId >>> shardBits;
+        shard.orderSequence.accumulateAndGet(sequence, Math::max);
+        shard.mapOrderSequence(sequence, entry);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(long instrumentId) {
+        return (int) (mix(instrumentId) >>> 32) & shardMask;
+    }
+
+    private static long mix(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    private static class Table {
+        private final long[] keys;
+        private final Entry[] entries;
+        private final int size;
+
+        Table(int capacity, int size) {
+            keys = new long[capacity];
+            entries = new Entry[capacity];
+            this.size = size;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        Entry get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return entries[i];
+                } else if (k == EMPTY) {
+                    return null;
+                }
+            }
+        }
+
+        void insert(long key, Entry entry) {
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            entries[i] = entry;
+        }
+    }
+
+    private static class Shard {
+        private volatile Table table = new Table(8, 0);
+        private final AtomicLong orderSequence = new AtomicLong(); // last sequence reserved by a book of the shard
+        private final ConcurrentSkipListMap<Long, Entry> orderBooks = new ConcurrentSkipListMap<>(); // first sequence of a run
+
+        /**
+         * Maps the sequences from this one up to the next mapped run to the book, unless the run it falls into is the
+         * book's already. Called before the book hands out an id of the sequence.
+         */
+        void mapOrderSequence(long sequence, Entry entry) {
+            Map.Entry<Long, Entry> run = orderBooks.floorEntry(sequence);
+            if (run == null || run.getValue() != entry) {
+                orderBooks.put(sequence, entry);
+            }
+        }
+
+        Entry get(long key) {
+            return table.get(key);
+        }
+
+        synchronized void put(long key, Entry entry) {
+            Table current = table;
+            if (current.get(key) != null) {
+                throw new IllegalStateException("instrument already exists " + key);
+            }
+            table = copy(current, current.size + 1, EMPTY, key, entry);
+        }
+
+        synchronized Entry remove(long key) {
+            Table current = table;
+            Entry entry = current.get(key);
+            if (entry == null) {
+                throw new IllegalStateException("no instrument " + key);
+            }
+            table = copy(current, current.size - 1, key, EMPTY, null);
+            return entry;
+        }
+
+        /**
+         * New table with the entries of the current one except the removed key, plus the added entry if any. The load
+         * factor is kept at or below one half.
+         */
+        private Table copy(Table current, int size, long removedKey, long addedKey, Entry addedEntry) {
+            int capacity = 8;
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            Table copy = new Table(capacity, size);
+
+            for (int i = 0; i < current.keys.length; i++) {
+                long k = current.keys[i];
+                if (k != EMPTY && k != removedKey) {
+                    copy.insert(k, current.entries[i]);
+                }
+            }
+            if (addedEntry != null) {
+                copy.insert(addedKey, addedEntry);
+            }
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tasks of one book one after another on a shared executor, for asynchronous commands when the books are
+ * not owned by sequencer workers. A book takes at most one executor thread at a time and hands it back after a batch
+ * of tasks, so a book with a long queue neither blocks the threads on its lock nor keeps the other books waiting.
+ * When the executor rejects the drain, the queued tasks fail with its exception instead of waiting forever.
+ */
+public class BookQueue {
+
+    private static final int MAX_BATCH = 64;
+
+    private final OrderBook orderBook;
+    private final Executor executor;
+    private final Queue<QueuedTask<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger(); // a drain is scheduled or running while greater than 0
+
+    public BookQueue(OrderBook orderBook, Executor executor) {
+        this.orderBook = orderBook;
+        this.executor = executor;
+    }
+
+    public <T> CompletableFuture<T> submit(BookTask<T> task) {
+        QueuedTask<T> queued = new QueuedTask<>(task);
+        tasks.add(queued);
+        if (size.getAndIncrement() == 0) {
+            schedule();
+        }
+        return queued.future;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_BATCH; i++) {
+            tasks.poll().run(orderBook); // added before size was incremented
+            if (size.decrementAndGet() == 0) {
+                return;
+            }
+        }
+        schedule(); // behind the books that queued meanwhile
+    }
+
+    /**
+     * Schedules a drain, called by the owner of the drain. If the executor rejects it, the owner fails the queued
+     * tasks, including those queued meanwhile, until size is back at 0.
+     */
+    private void schedule() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            do {
+                tasks.poll().fail(e);
+            } while (size.decrementAndGet() > 0);
+        }
+    }
+
+    private static class QueuedTask<T> {
+        private final BookTask<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        QueuedTask(BookTask<T> task) {
+            this.task = task;
+        }
+
+        void run(OrderBook orderBook) {
+            try {
+                future.complete(task.execute(orderBook));
+            } catch (Throwable t) {
+                future.completeExceptionally(t); // an error must not leave the caller waiting or stop the drain
+            }
+        }
+
+        void fail(Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+
+/**
+ * Work on a single book, executed on the worker thread that owns the book.
+ */
+@FunctionalInterface
+public interface BookTask<T> {
+    T execute(OrderBook orderBook);
+}
@@ -0,0 +1,145 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event loop owning a shard of the books, every command for these books is executed on this worker's thread.
+ * Commands are taken in batches of whatever is queued, after a batch the batch listener runs and only then the
+ * futures of the batch complete.
+ */
+class BookWorker implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(BookWorker.class);
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+    private static final int MAX_BATCH = 64;
+
+    private final CommandRingBuffer ringBuffer;
+    private final Runnable batchListener; // null without
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    // results of the current batch
+    @SuppressWarnings("unchecked")
+    private final CompletableFuture<Object>[] batchFutures = new CompletableFuture[MAX_BATCH];
+    private final Object[] batchResults = new Object[MAX_BATCH];
+    private final Throwable[] batchFailures = new Throwable[MAX_BATCH];
+
+    BookWorker(int index, int ringBufferCapacity, Runnable batchListener) {
+        ringBuffer = new CommandRingBuffer(ringBufferCapacity);
+        this.batchListener = batchListener;
+        thread = new Thread(this, "orderbook-worker-" + index);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Called by producers after publishing a command, so a parked worker picks it up right away.
+     */
+    void wakeUp() {
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    CommandRingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    boolean isWorkerThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+
+        while (running || ringBuffer.size() > 0) {
+            int batchSize = 0;
+            CommandRingBuffer.Command command;
+
+            while (batchSize < MAX_BATCH && (command = ringBuffer.poll()) != null) {
+                OrderBook orderBook = command.orderBook;
+                BookTask<?> task = command.task;
+                batchFutures[batchSize] = command.future;
+
+                ringBuffer.release(command); // free the slot before running, a slow command must not hold it
+                execute(orderBook, task, batchSize++);
+            }
+
+            if (batchSize > 0) {
+                completeBatch(batchSize);
+                idle = 0;
+            } else {
+                idle(idle++);
+            }
+        }
+        log.info(thread.getName() + " stopped");
+    }
+
+    private void execute(OrderBook orderBook, BookTask<?> task, int i) {
+        try {
+            batchResults[i] = task.execute(orderBook);
+        } catch (Throwable t) {
+            batchFailures[i] = t;
+        }
+    }
+
+    private void completeBatch(int batchSize) {
+        if (batchListener != null) {
+            try {
+                batchListener.run();
+            } catch (Throwable t) {
+                log.error(thread.getName() + " batch listener failed", t);
+            }
+        }
+        for (int i = 0; i < batchSize; i++) {
+            if (batchFailures[i] == null) {
+                batchFutures[i].complete(batchResults[i]);
+            } else {
+                batchFutures[i].completeExceptionally(batchFailures[i]);
+            }
+            batchFutures[i] = null;
+            batchResults[i] = null;
+            batchFailures[i] = null;
+        }
+    }
+
+    private void idle(int idle) {
+        if (idle < SPIN_TRIES) {
+            // busy spin
+        } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            sleeping = true;
+            if (ringBuffer.poll() == null) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded multi producer, single consumer queue of book commands. The command slots are allocated once, producers
+ * claim a slot with a CAS on the tail sequence and publish it through the slot sequence, the consumer frees it the
+ * same way (Vyukov's bounded queue).
+ */
+class CommandRingBuffer {
+
+    static class Command {
+        private volatile long sequence;
+
+        OrderBook orderBook;
+        BookTask<?> task;
+        CompletableFuture<Object> future;
+
+        Command(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void clear() {
+            orderBook = null;
+            task = null;
+            future = null;
+        }
+    }
+
+    private final Command[] commands;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong(); // next sequence to claim by producers
+    private long head; // next sequence to consume, only touched by the consumer
+
+    CommandRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalStateException("ring buffer capacity must be a power of 2, " + capacity);
+        }
+        commands = new Command[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            commands[i] = new Command(i);
+        }
+    }
+
+    /**
+     * Publishes the command, returns false if the buffer is full.
+     */
+    @SuppressWarnings("unchecked")
+    boolean offer(OrderBook orderBook, BookTask<?> task, CompletableFuture<?> future) {
+        while (true) {
+            long sequence = tail.get();
+            Command command = commands[(int) sequence & mask];
+            long available = command.sequence - sequence;
+
+            if (available == 0) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    command.orderBook = orderBook;
+                    command.task = task;
+                    command.future = (CompletableFuture<Object>) future;
+                    command.sequence = sequence + 1; // publish
+                    return true;
+                }
+            } else if (available < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Next published command or null, the command must be released once its fields have been read.
+     */
+    Command poll() {
+        Command command = commands[(int) head & mask];
+        return command.sequence == head + 1 ? command : null;
+    }
+
+    void release(Command command) {
+        command.clear();
+        command.sequence = head + mask + 1;
+        head++;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return commands.length;
+    }
+}
@@ -0,0 +1,113 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Routes the commands of every instrument through a ring buffer to the single worker thread owning the instrument's
+ * book. Instruments are sharded across the workers, so books never see concurrent access and different instruments
+ * scale across cores.
+ */
+public class OrderBookSequencer {
+
+    private final BookWorker[] workers;
+
+    public OrderBookSequencer(int workerCount, int ringBufferCapacity) {
+        this(workerCount, ringBufferCapacity, null);
+    }
+
+    /**
+     * Every worker runs the batch listener on its thread after a batch of commands, before completing their futures.
+     */
+    public OrderBookSequencer(int workerCount, int ringBufferCapacity, Runnable batchListener) {
+        if (workerCount <= 0) {
+            throw new IllegalStateException("sequencer needs at least one worker");
+        }
+        workers = new BookWorker[workerCount];
+
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new BookWorker(i, ringBufferCapacity, batchListener);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues the task for the instrument's worker, waiting for space if the worker's ring buffer is full.
+     */
+    public <T> CompletableFuture<T> submit(long instrumentId, OrderBook orderBook, BookTask<T> task) {
+        BookWorker worker = worker(instrumentId);
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (worker.isWorkerThread()) {
+            // already on the owning thread, queueing would dead lock once the buffer is full
+            execute(orderBook, task, future);
+            return future;
+        }
+        while (!worker.getRingBuffer().offer(orderBook, task, future)) {
+            checkRunning(worker, instrumentId);
+            worker.wakeUp();
+            LockSupport.parkNanos(1_000);
+        }
+        worker.wakeUp();
+        return future;
+    }
+
+    /**
+     * Queues the task for the instrument's worker, failing with RejectedExecutionException if the ring buffer is full.
+     */
+    public <T> CompletableFuture<T> trySubmit(long instrumentId, OrderBook orderBook, BookTask<T> task) {
+        BookWorker worker = worker(instrumentId);
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        checkRunning(worker, instrumentId);
+        if (!worker.getRingBuffer().offer(orderBook, task, future)) {
+            throw new RejectedExecutionException("command queue full for instrument " + instrumentId);
+        }
+        worker.wakeUp();
+        return future;
+    }
+
+    public boolean isWorkerThread() {
+        for (BookWorker worker : workers) {
+            if (worker.isWorkerThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public int getWorkerIndex(long instrumentId) {
+        return (int) Math.floorMod(instrumentId * 0x9E3779B97F4A7C15L >>> 32, (long) workers.length);
+    }
+
+    public void shutdown() {
+        for (BookWorker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    private void checkRunning(BookWorker worker, long instrumentId) {
+        if (!worker.isRunning()) {
+            throw new RejectedExecutionException("sequencer stopped, cannot process instrument " + instrumentId);
+        }
+    }
+
+    private BookWorker worker(long instrumentId) {
+        return workers[getWorkerIndex(instrumentId)];
+    }
+
+    private static <T> void execute(OrderBook orderBook, BookTask<T> task, CompletableFuture<T> future) {
+        try {
+            future.complete(task.execute(orderBook));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+}
@@ -1,54 +1,198 @@
 package com.acme.orderbook.service;
 
+import com.acme.orderbook.book.OffHeapOrderBook;
 import com.acme.orderbook.book.OrderBook;
 import com.acme.orderbook.book.OrderBookImpl;
+import com.acme.orderbook.common.OrderBookUtil;
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.journal.JournalHandler;
 import com.acme.orderbook.model.*;
+import com.acme.orderbook.registry.BookView;
+import com.acme.orderbook.registry.InstrumentRegistry;
+import com.acme.orderbook.snapshot.BookSnapshot;
+import com.acme.orderbook.snapshot.SnapshotFile;
+import com.acme.orderbook.sequencer.BookQueue;
+import com.acme.orderbook.sequencer.BookTask;
+import com.acme.orderbook.sequencer.OrderBookSequencer;
+import com.acme.orderbook.store.TieredOrderStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by robertk on 6/9/2019.
  */
 @Service
 public class OrderBookService {
+    private static final Logger log = LoggerFactory.getLogger(OrderBookService.class);
 
     private final PerformanceMetrics performanceMetrics;
-    private final List<Instrument> instruments = new ArrayList<>();
-    private final Map<Long, OrderBook> orderBooks = new HashMap<>();
+    private final OrderBookSequencer sequencer; // null when books are accessed from the calling threads
+    private final ExecutorService asyncExecutor; // runs the book queues of asynchronous commands, null when sequenced
+    private final int asyncMaxPendingPerBook;
+    private final Journal journal; // null when not journaled
+    private final Path snapshotDir; // null when snapshots are disabled
+    private final Map<Long, Long> snapshotJournalSequences = new HashMap<>(); // instrumentId -> last journal sequence in the loaded snapshot
+    private long snapshotLifecycleSequence; // last journal sequence whose instrument lifecycle the loaded snapshot holds
+    private final Set<Long> retiredInstrumentIds = ConcurrentHashMap.newKeySet(); // kept in snapshots, the journal records may be truncated
+    private final InstrumentRegistry registry;
+    private final Object instrumentLifecycleLock = new Object(); // serializes creating and retiring instruments
 
-    private final ConcurrentMap<Long, Order> allOrderMap = new ConcurrentHashMap<>(); // orderId -> order
+    private final TieredOrderStore orderStore; // active orders on the heap, finished ones archived by their books
+    private final int executionParallelThreshold; // valid orders from which heap books distribute executions in parallel
 
-    @Value("${instrumentIds}")
-    private String instrumentIds;
+    private final ThreadLocal<List<InstrumentRegistry.Entry>> unpublished = ThreadLocal.withInitial(ArrayList::new); // changed books of a worker's batch
 
-    private final AtomicLong orderIdGenerator = new AtomicLong();
+    public OrderBookService(PerformanceMetrics performanceMetrics, String instrumentIds, double tickSize) {
+        this(performanceMetrics, new TieredOrderStore(), instrumentIds, "", tickSize, Integer.MAX_VALUE, 64, 0, 0, 4, 1024, "", Journal.SyncPolicy.NONE, 0, "");
+    }
 
+    /**
+     * The instruments configured here are created on startup, more can be created and retired at runtime. The books of
+     * the instruments listed in offHeapInstrumentIds keep their orders in off-heap memory. With
+     * sequencerWorkers greater than 0 every book is owned by one of that many worker threads and all book
+     * commands are queued to it, otherwise the books are called directly from the calling threads. Asynchronous
+     * commands go to the book's worker or to the book's queue on a pool of asyncThreads, with at most
+     * asyncMaxPendingPerBook of them pending per book. With a journal
+     * directory the books are rebuilt from the journal and every command is journaled before it is applied. With a snapshot
+     * directory the books are first restored from the latest snapshot, the journal then only replays what came after.
+     */
     @Autowired
-    public OrderBookService(PerformanceMetrics performanceMetrics) {
+    public OrderBookService(PerformanceMetrics performanceMetrics,
+                            TieredOrderStore orderStore,
+                            @Value("${instrumentIds}") String instrumentIds,
+                            @Value("${offHeap.instrumentIds:}") String offHeapInstrumentIds,
+                            @Value("${tickSize:0.01}") double tickSize,
+                            @Value("${execution.parallelThreshold:1000000}") int executionParallelThreshold,
+                            @Value("${registry.shards:64}") int registryShards,
+                            @Value("${sequencer.workers:0}") int sequencerWorkers,
+                            @Value("${sequencer.ringBufferSize:65536}") int sequencerRingBufferSize,
+                            @Value("${async.threads:4}") int asyncThreads,
+                            @Value("${async.maxPendingPerBook:1024}") int asyncMaxPendingPerBook,
+                            @Value("${journal.dir:}") String journalDir,
+                            @Value("${journal.syncPolicy:INTERVAL}") Journal.SyncPolicy journalSyncPolicy,
+                            @Value("${journal.syncIntervalMillis:10}") long journalSyncIntervalMillis,
+                            @Value("${snapshot.dir:}") String snapshotDir) {
         this.performanceMetrics = performanceMetrics;
-    }
+        this.orderStore = orderStore;
+        this.executionParallelThreshold = executionParallelThreshold;
+        this.registry = new InstrumentRegistry(registryShards);
+        this.asyncMaxPendingPerBook = asyncMaxPendingPerBook;
 
-    @PostConstruct
-    private void postConstruct() {
+        if (sequencerWorkers > 0) {
+            sequencer = new OrderBookSequencer(sequencerWorkers, sequencerRingBufferSize, this::publishChanged);
+            log.info("sequenced mode, " + sequencerWorkers + " book workers");
+            asyncExecutor = null;
+        } else {
+            sequencer = null;
+            AtomicInteger asyncThreadCount = new AtomicInteger();
+            asyncExecutor = Executors.newFixedThreadPool(asyncThreads, r -> {
+                Thread thread = new Thread(r, "orderbook-async-" + asyncThreadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        List<String> offHeapIds = Arrays.asList(offHeapInstrumentIds.replace(" ", "").split(","));
         for (String instrumentIdStr : instrumentIds.split(",")) {
-            long instrumentId = Long.valueOf(instrumentIdStr);
-            Instrument instrument = new Instrument(instrumentId);
-            instruments.add(instrument);
+            long instrumentId = Long.valueOf(instrumentIdStr.trim());
+            register(new Instrument(instrumentId, tickSize, offHeapIds.contains(String.valueOf(instrumentId))));
+        }
+
+        this.snapshotDir = !snapshotDir.isEmpty() ? Paths.get(snapshotDir) : null;
+        if (this.snapshotDir != null) {
+            Path snapshotFile = SnapshotFile.latest(this.snapshotDir);
+            if (snapshotFile != null) {
+                loadSnapshot(snapshotFile);
+            }
+        }
+
+        if (!journalDir.isEmpty()) {
+            long start = System.currentTimeMillis();
+            checkRegistryShards(Paths.get(journalDir));
+            journal = new Journal(Paths.get(journalDir), journalSyncPolicy, journalSyncIntervalMillis, Journal.DEFAULT_SEGMENT_SIZE, new Replay());
+            log.info("replayed journal up to sequence " + journal.getSequence() + " in " + (System.currentTimeMillis() - start) + "ms");
+            registry.forEach(this::publish); // replay changes the books directly
+        } else {
+            journal = null;
+        }
+    }
 
-            OrderBook orderBook = new OrderBookImpl(instrumentId);
-            orderBooks.put(instrumentId, orderBook);
+    @PreDestroy
+    public void shutdown() {
+        if (sequencer != null) {
+            sequencer.shutdown();
+        } else {
+            asyncExecutor.shutdown();
         }
+        if (journal != null) {
+            journal.shutdown();
+        }
+    }
+
+    /**
+     * Writes a snapshot of all books to the snapshot directory and returns the file. Every book is copied by a
+     * task of its own, see {@link #submit}, so writers of the other books keep going and the disk write blocks nobody. Creating and
+     * retiring instruments waits for the copies, so the snapshot holds the instruments as of the covered sequence. The
+     * journal segments the snapshot covers are deleted afterwards.
+     */
+    public Path writeSnapshot() {
+        if (snapshotDir == null) {
+            throw new IllegalStateException("no snapshot directory configured");
+        }
+        long start = System.currentTimeMillis();
+        long coveredSequence;
+        long[] retired;
+        List<BookSnapshot> books = new ArrayList<>(registry.size());
+
+        synchronized (instrumentLifecycleLock) {
+            coveredSequence = journal != null ? journal.getSequence() : 0; // every book is copied after this
+            retired = retiredInstrumentIds.stream().mapToLong(Long::longValue).toArray();
+
+            for (Instrument instrument : registry.getInstruments()) {
+                BookSnapshot book = join(submit(registry.get(instrument.getId()), b -> {
+                    BookSnapshot snapshot = b.snapshot();
+                    snapshot.setJournalSequence(journal != null ? journal.getSequence() : 0);
+                    return snapshot;
+                }));
+                book.setTickSize(instrument.getTickSize());
+                book.setOffHeap(instrument.isOffHeap());
+                books.add(book);
+            }
+        }
+        Path file = new SnapshotFile(registry.getOrderSequence(), registry.getShardCount(), coveredSequence, retired, books).write(snapshotDir);
+        if (journal != null) {
+            journal.truncate(coveredSequence);
+        }
+
+        log.info("wrote snapshot " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+        return file;
     }
 
     public PerformanceMetrics getPerformanceMetrics() {
@@ -56,74 +200,673 @@ public class OrderBookService {
     }
 
     public List<Instrument> getInstruments() {
-        return instruments;
+        return registry.getInstruments();
+    }
+
+    public Instrument getInstrument(long instrumentId) {
+        return entry(instrumentId).getInstrument();
+    }
+
+    /**
+     * The instrument or null if there is none, an instrument created again after retiring is a new one.
+     */
+    public Instrument findInstrument(long instrumentId) {
+        InstrumentRegistry.Entry entry = registry.get(instrumentId);
+        return entry != null ? entry.getInstrument() : null;
+    }
+
+    public Instrument createInstrument(long instrumentId, double tickSize) {
+        return createInstrument(instrumentId, tickSize, false);
+    }
+
+    /**
+     * Creates the instrument with an empty, open book, kept in off-heap memory if offHeap is true.
+     */
+    public Instrument createInstrument(long instrumentId, double tickSize, boolean offHeap) {
+        if (tickSize <= 0) {
+            throw new IllegalStateException("tick size must be greater than 0");
+        }
+        Instrument instrument = new Instrument(instrumentId, tickSize, offHeap);
+
+        synchronized (instrumentLifecycleLock) {
+            if (registry.get(instrumentId) != null) {
+                throw new IllegalStateException("instrument already exists " + instrumentId);
+            }
+            // journaled before the book becomes visible, so no command of the book can be journaled ahead of it
+            if (journal != null) {
+                journal.createInstrument(instrumentId, tickSize, offHeap);
+            }
+            register(instrument);
+        }
+        log.info("created instrument " + instrumentId);
+        return instrument;
+    }
+
+    /**
+     * Removes the instrument and its book, the book must be closed. Orders of the book stay available by id.
+     */
+    public void retireInstrument(long instrumentId) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+
+        synchronized (instrumentLifecycleLock) {
+            join(submit(entry, book -> {
+                checkNotRetired(entry);
+                if (book.isOpen()) {
+                    throw new IllegalStateException("cannot retire instrument with open book " + instrumentId);
+                }
+                if (journal != null) {
+                    journal.retireInstrument(instrumentId);
+                }
+                retire(instrumentId);
+                return null;
+            }));
+        }
+        log.info("retired instrument " + instrumentId);
     }
 
     public void open(long instrumentId) {
-        validate(instrumentId);
-        orderBook(instrumentId).open();
+        join(open(instrumentId, false));
+    }
+
+    /**
+     * Returns without waiting for the book, see {@link #submitAsync}.
+     */
+    public CompletableFuture<Void> openAsync(long instrumentId) {
+        return open(instrumentId, true);
+    }
+
+    private CompletableFuture<Void> open(long instrumentId, boolean async) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+        return submit(entry, async, book -> {
+            checkNotRetired(entry);
+            if (journal != null) {
+                journal.open(instrumentId);
+            }
+            book.open();
+            changed(entry);
+            return null;
+        });
     }
 
     public void close(long instrumentId) {
-        validate(instrumentId);
-        orderBook(instrumentId).close();
+        join(close(instrumentId, false));
+    }
+
+    /**
+     * Returns without waiting for the book, see {@link #submitAsync}.
+     */
+    public CompletableFuture<Void> closeAsync(long instrumentId) {
+        return close(instrumentId, true);
+    }
+
+    private CompletableFuture<Void> close(long instrumentId, boolean async) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+        return submit(entry, async, book -> {
+            checkNotRetired(entry);
+            if (journal != null) {
+                journal.close(instrumentId);
+            }
+            book.close();
+            changed(entry);
+            return null;
+        });
     }
 
     public boolean isOpen(long instrumentId) {
-        validate(instrumentId);
-        return orderBook(instrumentId).isOpen();
+        return view(entry(instrumentId)).isOpen();
+    }
+
+    /**
+     * Prices are in ticks of the instrument, Order.MARKET_PRICE for a market order.
+     */
+    public long addOrder(long instrumentId, int quantity, long limitPrice) {
+        return join(addOrder(instrumentId, quantity, limitPrice, false));
+    }
+
+    /**
+     * Returns without waiting for the book, see {@link #submitAsync}.
+     */
+    public CompletableFuture<Long> addOrderAsync(long instrumentId, int quantity, long limitPrice) {
+        return addOrder(instrumentId, quantity, limitPrice, true);
     }
 
-    public void addOrder(long instrumentId, int quantity, Double limitPrice) {
-        validate(instrumentId);
+    private CompletableFuture<Long> addOrder(long instrumentId, int quantity, long limitPrice, boolean async) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
         if (quantity <= 0) {
             throw new IllegalStateException("order quantity must be greater than 0");
 
-        } else if (limitPrice != null && limitPrice <= 0d) {
+        } else if (limitPrice <= 0) {
             throw new IllegalStateException("order price must be null or greater than 0");
         }
 
-        long orderId = orderIdGenerator.incrementAndGet();
-        Order order = new Order(instrumentId, orderId, LocalDateTime.now(), quantity, limitPrice);
+        long start = System.nanoTime();
+        LocalDateTime entryDate = LocalDateTime.now();
+
+        return record(PerformanceMetrics.Operation.ADD_ORDER, instrumentId, start, submit(entry, async, book -> {
+            checkNotRetired(entry);
+            long orderId = entry.nextOrderId();
+            Order order = new Order(instrumentId, orderId, entryDate, quantity, limitPrice);
+            journalOrder(order);
+            book.addOrder(order);
+            changed(entry);
+            return orderId;
+        }));
+    }
+
+    /**
+     * Adds the first count orders of the arrays as one batch, either all of them are added or none. The orders get
+     * ascending ids, which are returned in the order of the arrays.
+     */
+    public long[] addOrders(long instrumentId, int[] quantities, long[] limitPrices, int count) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+        for (int i = 0; i < count; i++) {
+            if (quantities[i] <= 0) {
+                throw new IllegalStateException("order quantity must be greater than 0, order " + i);
+
+            } else if (limitPrices[i] <= 0) {
+                throw new IllegalStateException("order price must be null or greater than 0, order " + i);
+            }
+        }
+
+        long start = System.nanoTime();
+        LocalDateTime entryDate = LocalDateTime.now();
+        List<Order> orders = new ArrayList<>(count);
+        long[] orderIds = new long[count];
 
-        allOrderMap.put(orderId, order);
-        orderBook(instrumentId).addOrder(order);
+        join(record(PerformanceMetrics.Operation.ADD_ORDERS, instrumentId, start, submit(entry, book -> {
+            checkNotRetired(entry);
+            entry.nextOrderIds(orderIds, count);
+            for (int i = 0; i < count; i++) {
+                orders.add(new Order(instrumentId, orderIds[i], entryDate, quantities[i], limitPrices[i]));
+            }
+            orders.forEach(this::journalOrder);
+            book.addOrders(orders);
+            changed(entry);
+            return null;
+        })));
+        return orderIds;
     }
 
+    /**
+     * The id routes to its book through the registry, which finds the order without a global map, orders of retired
+     * books come from the archive. The order is a detached copy consistent with a state of its book between two
+     * commands, off-heap books copy it in a task, see {@link #read}.
+     */
     public Order getOrder(long orderId) {
-        return allOrderMap.get(orderId);
+        InstrumentRegistry.Entry entry = registry.getOrderBookEntry(orderId);
+        Order order = entry != null ? read(entry, book -> book.getOrder(orderId)) : null;
+        if (order != null) {
+            return order;
+        }
+        order = orderStore.get(orderId);
+        return order != null ? order.copy() : null;
+    }
+
+    public void addExecution(long instrumentId, int quantity, long price) {
+        join(addExecution(instrumentId, quantity, price, false));
     }
 
-    public void addExecution(long instrumentId, int quantity, double price) {
-        validate(instrumentId);
+    /**
+     * Returns without waiting for the book, see {@link #submitAsync}.
+     */
+    public CompletableFuture<Void> addExecutionAsync(long instrumentId, int quantity, long price) {
+        return addExecution(instrumentId, quantity, price, true);
+    }
+
+    private CompletableFuture<Void> addExecution(long instrumentId, int quantity, long price, boolean async) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
         if (quantity <= 0) {
             throw new IllegalStateException("execution quantity must be greater than 0");
 
-        } else if (price <= 0d) {
+        } else if (price <= 0) {
             throw new IllegalStateException("execution price must be greater than 0");
         }
 
+        long start = System.nanoTime();
         Execution execution = new Execution(instrumentId, quantity, price);
-        orderBook(instrumentId).addExecution(execution);
+
+        return record(PerformanceMetrics.Operation.ADD_EXECUTION, instrumentId, start, submit(entry, async, book -> {
+            checkNotRetired(entry);
+            if (journal != null) {
+                journal.addExecution(instrumentId, quantity, price);
+            }
+            book.addExecution(execution);
+            changed(entry);
+            return null;
+        }));
+    }
+
+    /**
+     * How the execution would be distributed over the book's current orders, the book is not changed. Heap books compute it
+     * on the calling thread without queueing to the book's worker or taking a lock, see {@link #read}.
+     */
+    public ExecutionPreview previewExecution(long instrumentId, int quantity, long price) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+        if (quantity <= 0) {
+            throw new IllegalStateException("execution quantity must be greater than 0");
+
+        } else if (price <= 0) {
+            throw new IllegalStateException("execution price must be greater than 0");
+        }
+
+        long start = System.nanoTime();
+        Execution execution = new Execution(instrumentId, quantity, price);
+        ExecutionPreview preview = read(entry, book -> book.previewExecution(execution));
+        performanceMetrics.record(PerformanceMetrics.Operation.PREVIEW_EXECUTION, instrumentId, System.nanoTime() - start);
+        return preview;
+    }
+
+    /**
+     * Version of the book's latest view, it increases with every accepted command, so readers can tell whether the
+     * statistics may have changed without generating them.
+     */
+    public long getVersion(long instrumentId) {
+        return view(entry(instrumentId)).getVersion();
     }
 
     public boolean isExecuted(long instrumentId) {
-        validate(instrumentId);
-        return orderBook(instrumentId).isExecuted();
+        return view(entry(instrumentId)).isExecuted();
     }
 
+    /**
+     * Indicative clearing price of the book for the given supply in ticks, 0 if no limit price takes the whole supply,
+     * {@link Order#MARKET_PRICE} if only market orders are active and take it.
+     * Answered from the demand curve of the book's latest view, see {@link #view}.
+     */
+    public long getIndicativePrice(long instrumentId, long supply) {
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+        if (supply <= 0) {
+            throw new IllegalStateException("supply must be greater than 0");
+        }
+        return view(entry).getStatistics().getIndicativePrice(supply);
+    }
+
+    /**
+     * Statistics of the book's latest view, see {@link #view}. They must not be modified.
+     */
     public Statistics generateStatistics(long instrumentId) {
-        validate(instrumentId);
-        return orderBook(instrumentId).generateStatistics();
+        InstrumentRegistry.Entry entry = entry(instrumentId);
+
+        long start = System.nanoTime();
+        Statistics statistics = view(entry).getStatistics();
+        performanceMetrics.record(PerformanceMetrics.Operation.GENERATE_STATISTICS, instrumentId, System.nanoTime() - start);
+        return statistics;
+    }
+
+    /**
+     * Statistics of the given instruments, all of them if null, and their totals. The books are asked in parallel, on
+     * their workers in sequenced mode or on the fork-join common pool otherwise. Every book's statistics are taken
+     * by a task together with its version, books retired meanwhile are left out.
+     */
+    public MarketStatistics generateMarketStatistics(Collection<Long> instrumentIds) {
+        List<InstrumentRegistry.Entry> entries = new ArrayList<>();
+        if (instrumentIds == null) {
+            for (Instrument instrument : registry.getInstruments()) {
+                InstrumentRegistry.Entry entry = registry.get(instrument.getId());
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } else {
+            new TreeSet<>(instrumentIds).forEach(instrumentId -> entries.add(entry(instrumentId)));
+        }
+
+        long[] versions = new long[entries.size()];
+        List<CompletableFuture<Statistics>> futures = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            InstrumentRegistry.Entry entry = entries.get(i);
+            int index = i;
+            BookTask<Statistics> task = book -> {
+                if (entry.isRetired()) {
+                    return null;
+                }
+                versions[index] = entry.getVersion().get();
+                return book.generateStatistics();
+            };
+            futures.add(sequencer != null ? submit(entry, task) : CompletableFuture.supplyAsync(() -> join(submit(entry, task))));
+        }
+
+        List<Statistics> statistics = new ArrayList<>(entries.size());
+        long[] takenVersions = new long[entries.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            Statistics s = join(futures.get(i));
+            if (s != null) {
+                takenVersions[statistics.size()] = versions[i];
+                statistics.add(s);
+            }
+        }
+        return new MarketStatistics(statistics, Arrays.copyOf(takenVersions, statistics.size()));
+    }
+
+    private void loadSnapshot(Path file) {
+        long start = System.currentTimeMillis();
+        SnapshotFile snapshotFile = SnapshotFile.read(file);
+        if (snapshotFile.getRegistryShards() != 0 && snapshotFile.getRegistryShards() != registry.getShardCount()) {
+            throw new IllegalStateException("snapshot " + file + " was written with " + snapshotFile.getRegistryShards()
+                    + " registry shards, configured " + registry.getShardCount());
+        }
+        long orderCount = 0;
+        snapshotLifecycleSequence = snapshotFile.getJournalSequence();
+
+        for (long instrumentId : snapshotFile.getRetiredInstrumentIds()) {
+            if (registry.get(instrumentId) != null) {
+                retire(instrumentId); // configured again
+            }
+            retiredInstrumentIds.add(instrumentId);
+        }
+
+        for (BookSnapshot book : snapshotFile.getBooks()) {
+            long instrumentId = book.getInstrumentId();
+            if (registry.get(instrumentId) != null) {
+                retire(instrumentId); // replaced by the restored book
+            }
+            Instrument instrument = new Instrument(instrumentId, book.getTickSize(), book.isOffHeap());
+            if (instrument.isOffHeap()) {
+                register(instrument, new OffHeapOrderBook(book, orderStore));
+            } else {
+                register(instrument, new OrderBookImpl(book, orderStore));
+            }
+            InstrumentRegistry.Entry entry = registry.get(instrumentId);
+            for (int i = 0; i < book.getOrderCount(); i++) {
+                registry.markOrderIdUsed(entry, book.getOrderIds()[i]);
+            }
+            orderCount += book.getOrderCount();
+
+            snapshotJournalSequences.put(instrumentId, book.getJournalSequence());
+        }
+        registry.advanceOrderSequence(snapshotFile.getOrderSequence());
+
+        log.info("loaded snapshot " + file + " with " + orderCount + " orders in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * The journaled order ids carry the registry shard in their low bits, so a journal is only replayed with the shard
+     * count it was written with. The count is kept in a file next to the segments, which truncation leaves alone.
+     */
+    private void checkRegistryShards(Path journalDir) {
+        Path file = journalDir.resolve("registry-shards");
+        try {
+            if (Files.exists(file)) {
+                int journalShards = Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+                if (journalShards != registry.getShardCount()) {
+                    throw new IllegalStateException("journal " + journalDir + " was written with " + journalShards
+                            + " registry shards, configured " + registry.getShardCount());
+                }
+            } else {
+                Files.createDirectories(journalDir);
+                Files.write(file, String.valueOf(registry.getShardCount()).getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void register(Instrument instrument) {
+        long instrumentId = instrument.getId();
+        register(instrument, instrument.isOffHeap() ? new OffHeapOrderBook(instrumentId, orderStore) : new OrderBookImpl(instrumentId, orderStore));
+    }
+
+    private void register(Instrument instrument, OrderBook orderBook) {
+        InstrumentRegistry.Entry entry = registry.create(instrument, orderBook);
+        retiredInstrumentIds.remove(instrument.getId());
+        if (asyncExecutor != null) {
+            entry.setQueue(new BookQueue(orderBook, asyncExecutor));
+        }
+        if (orderBook instanceof OrderBookImpl) {
+            ((OrderBookImpl) orderBook).setParallelThreshold(executionParallelThreshold);
+        }
+        publish(entry);
+    }
+
+    /**
+     * The active orders of a retired book are archived, so they stay available by id like the others.
+     */
+    private void retire(long instrumentId) {
+        OrderBook orderBook = registry.get(instrumentId).getOrderBook();
+        registry.retire(instrumentId);
+        retiredInstrumentIds.add(instrumentId);
+        performanceMetrics.remove(instrumentId);
+
+        if (orderBook instanceof OffHeapOrderBook) {
+            ((OffHeapOrderBook) orderBook).archiveActiveOrders();
+        } else {
+            ((OrderBookImpl) orderBook).archiveActiveOrders();
+        }
+    }
+
+    /**
+     * Called by the book's tasks, see {@link #submit}. A sequencer worker publishes the views of its changed books once
+     * per batch of commands, without a sequencer the writer publishes the view at the end of every command, still
+     * holding the book's lock. Either way readers only read the published view, see {@link #view}.
+     */
+    private void changed(InstrumentRegistry.Entry entry) {
+        entry.getVersion().incrementAndGet();
+
+        if (sequencer != null && sequencer.isWorkerThread()) {
+            List<InstrumentRegistry.Entry> entries = unpublished.get();
+            if (!entries.contains(entry)) {
+                entries.add(entry);
+            }
+        } else {
+            publish(entry);
+        }
+    }
+
+    /**
+     * The book's latest view, published by its writers, see {@link #changed}. A plain volatile read, readers never
+     * take the book's lock.
+     */
+    private BookView view(InstrumentRegistry.Entry entry) {
+        return entry.getView();
+    }
+
+    /**
+     * Called by every sequencer worker after a batch of commands, before their futures complete, so a caller reads its
+     * own changes.
+     */
+    private void publishChanged() {
+        List<InstrumentRegistry.Entry> entries = unpublished.get();
+        for (InstrumentRegistry.Entry entry : entries) {
+            publish(entry);
+        }
+        entries.clear();
+    }
+
+    private void publish(InstrumentRegistry.Entry entry) {
+        OrderBook book = entry.getOrderBook();
+        entry.setView(new BookView(entry.getVersion().get(), book.isOpen(), book.isExecuted(), book.generateStatistics()));
+    }
+
+    /**
+     * Called by the book's tasks, a command that looked up the book before it was retired must not touch it.
+     */
+    private void checkNotRetired(InstrumentRegistry.Entry entry) {
+        if (entry.isRetired()) {
+            throw new IllegalStateException("instrument retired " + entry.getInstrument().getId());
+        }
+    }
+
+    /**
+     * Called by the book's tasks, which run one at a time, so the journal keeps the order in which the book received
+     * the commands. A command is journaled before the book applies it, a command the book rejects stays in the journal
+     * and is rejected again on replay.
+     */
+    private void journalOrder(Order order) {
+        if (journal != null) {
+            journal.addOrder(order.getInstrumentId(), order.getOrderId(), OrderBookUtil.toEpochNanos(order.getEntryDate()), order.getQuantity(), order.getLimitPrice());
+        }
     }
 
-    private void validate(long instrumentId) {
-        if (!orderBooks.keySet().contains(instrumentId)) {
+    /**
+     * Runs the task on the book, on the book's worker thread in sequenced mode or right away otherwise. The books are
+     * not thread safe. A sequencer worker is the only thread running tasks of its books, so they run without a lock,
+     * otherwise tasks come from any thread and run under the book's lock, see {@link #locked}.
+     */
+    private <T> CompletableFuture<T> submit(InstrumentRegistry.Entry entry, BookTask<T> task) {
+        OrderBook orderBook = entry.getOrderBook();
+
+        if (sequencer != null) {
+            return sequencer.submit(entry.getInstrument().getId(), orderBook, task);
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            T result;
+            synchronized (orderBook) {
+                result = task.execute(orderBook);
+            }
+            future.complete(result);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> BookTask<T> locked(BookTask<T> task) {
+        return book -> {
+            synchronized (book) {
+                return task.execute(book);
+            }
+        };
+    }
+
+    /**
+     * Heap books read single orders and previews optimistically on the calling thread, off-heap books are read by a
+     * task like the commands.
+     */
+    private <T> T read(InstrumentRegistry.Entry entry, BookTask<T> reader) {
+        OrderBook orderBook = entry.getOrderBook();
+        return orderBook instanceof OrderBookImpl ? reader.execute(orderBook) : join(submit(entry, reader));
+    }
+
+    private <T> CompletableFuture<T> submit(InstrumentRegistry.Entry entry, boolean async, BookTask<T> task) {
+        return async ? submitAsync(entry, task) : submit(entry, task);
+    }
+
+    /**
+     * Queues the task to the book's worker in sequenced mode or to the book's queue otherwise, never waiting for the
+     * book. With asyncMaxPendingPerBook commands of the book already queued or running the future fails with
+     * RejectedExecutionException right away, so a hot book can neither fill the worker ring buffers nor take the
+     * executor from the other books.
+     */
+    private <T> CompletableFuture<T> submitAsync(InstrumentRegistry.Entry entry, BookTask<T> task) {
+        long instrumentId = entry.getInstrument().getId();
+        AtomicInteger pending = entry.getPendingCommands();
+        CompletableFuture<T> future;
+
+        if (pending.incrementAndGet() > asyncMaxPendingPerBook) {
+            pending.decrementAndGet();
+            future = new CompletableFuture<>();
+            future.completeExceptionally(new RejectedExecutionException("too many pending commands for instrument " + instrumentId));
+            return future;
+        }
+        try {
+            future = sequencer != null ? sequencer.trySubmit(instrumentId, entry.getOrderBook(), task) : entry.getQueue().submit(locked(task));
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete((result, t) -> pending.decrementAndGet());
+        return future;
+    }
+
+    private <T> CompletableFuture<T> record(PerformanceMetrics.Operation operation, long instrumentId, long start, CompletableFuture<T> future) {
+        return future.whenComplete((result, t) -> performanceMetrics.record(operation, instrumentId, System.nanoTime() - start));
+    }
+
+    /**
+     * Waits for the result, rethrowing failures of the book as they are.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private InstrumentRegistry.Entry entry(long instrumentId) {
+        InstrumentRegistry.Entry entry = registry.get(instrumentId);
+        if (entry == null) {
             throw new IllegalStateException("no order book available for instrument " + instrumentId);
         }
+        return entry;
     }
 
     private OrderBook orderBook(long instrumentId) {
-        return orderBooks.get(instrumentId);
+        return entry(instrumentId).getOrderBook();
+    }
+
+    /**
+     * Applies the journaled commands straight to the books while the service is constructed, skipping the commands
+     * already contained in the loaded snapshot. Commands are journaled before the book applies them, the ones the book
+     * rejected are rejected the same way again and skipped, after the same changes to the book.
+     */
+    private class Replay implements JournalHandler {
+
+        /**
+         * Lifecycle records the snapshot holds are skipped, a book retired and created again afterwards must not be
+         * replaced by an empty one. Snapshots without the sequence fall back to the registry.
+         */
+        @Override
+        public void createInstrument(long sequence, long instrumentId, double tickSize, boolean offHeap) {
+            if (sequence > snapshotLifecycleSequence && registry.get(instrumentId) == null) {
+                register(new Instrument(instrumentId, tickSize, offHeap));
+            }
+        }
+
+        @Override
+        public void retireInstrument(long sequence, long instrumentId) {
+            if (sequence > snapshotLifecycleSequence && registry.get(instrumentId) != null) {
+                retire(instrumentId);
+            }
+        }
+
+        @Override
+        public void open(long sequence, long instrumentId) {
+            if (!inSnapshot(sequence, instrumentId)) {
+                apply(sequence, () -> orderBook(instrumentId).open());
+            }
+        }
+
+        @Override
+        public void close(long sequence, long instrumentId) {
+            if (!inSnapshot(sequence, instrumentId)) {
+                apply(sequence, () -> orderBook(instrumentId).close());
+            }
+        }
+
+        @Override
+        public void addOrder(long sequence, long instrumentId, long orderId, long entryTime, int quantity, long limitPrice) {
+            if (inSnapshot(sequence, instrumentId)) {
+                return;
+            }
+            registry.markOrderIdUsed(registry.get(instrumentId), orderId); // taken even if the order was rejected
+            Order order = new Order(instrumentId, orderId, OrderBookUtil.fromEpochNanos(entryTime), quantity, limitPrice);
+            apply(sequence, () -> orderBook(instrumentId).addOrder(order));
+        }
+
+        @Override
+        public void addExecution(long sequence, long instrumentId, int quantity, long price) {
+            if (!inSnapshot(sequence, instrumentId)) {
+                apply(sequence, () -> orderBook(instrumentId).addExecution(new Execution(instrumentId, quantity, price)));
+            }
+        }
+
+        private void apply(long sequence, Runnable command) {
+            try {
+                command.run();
+            } catch (IllegalStateException e) {
+                log.debug("journaled command " + sequence + " rejected again: " + e.getMessage());
+            }
+        }
+
+        private boolean inSnapshot(long sequence, long instrumentId) {
+            return sequence <= snapshotJournalSequences.getOrDefault(instrumentId, 0L);
+        }
     }
 }
@@ -1,41 +1,137 @@
 package com.acme.orderbook.service;
 
+import com.acme.orderbook.common.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.OptionalDouble;
-import java.util.OptionalLong;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by robertk on 6/8/2019.
+ *
+ * Latency histograms of the order book operations, overall and optionally per instrument. Every histogram takes a few
+ * KiB per operation, so per instrument histograms are only kept when enabled, created on the first recorded operation
+ * and dropped when the instrument is retired. Interval reports are kept per reader, every reader gets the latencies
+ * since its own previous interval report.
  */
 @Component
 public class PerformanceMetrics {
 
-    private final List<Long> orderProcessingTimes = new ArrayList<>(); // millis
+    public enum Operation {
+        ADD_ORDER,
+        ADD_ORDERS,
+        ADD_EXECUTION,
+        PREVIEW_EXECUTION,
+        GENERATE_STATISTICS
+    }
+
+    private static final int MAX_INTERVAL_READERS = 64;
+
+    private final boolean perInstrument;
+    private final Map<Operation, LatencyHistogram> histograms = createHistograms();
+    private final ConcurrentMap<Long, Map<Operation, LatencyHistogram>> instrumentHistograms = new ConcurrentHashMap<>(); // instrumentId -> histograms
+    private final ConcurrentMap<String, Report> intervalBaselines = new ConcurrentHashMap<>(); // reader -> its previous report since startup
+
+    public PerformanceMetrics() {
+        this(false);
+    }
+
+    @Autowired
+    public PerformanceMetrics(@Value("${metrics.perInstrument:false}") boolean perInstrument) {
+        this.perInstrument = perInstrument;
+    }
 
-    void addOrderProcessingTimeMillis(long millis) {
-        orderProcessingTimes.add(millis);
+    void record(Operation operation, long instrumentId, long nanos) {
+        histograms.get(operation).recordNanos(nanos);
+        if (perInstrument) {
+            instrumentHistograms.computeIfAbsent(instrumentId, id -> createHistograms()).get(operation).recordNanos(nanos);
+        }
     }
 
-    public int getNumberOrdersProcessed() {
-        return orderProcessingTimes.size();
+    /**
+     * Drops the histograms of a retired instrument.
+     */
+    void remove(long instrumentId) {
+        instrumentHistograms.remove(instrumentId);
     }
 
-    public Long getMinOrderProcessingTimeMillis() {
-        OptionalLong optional = orderProcessingTimes.stream().mapToLong(pt -> pt).min();
-        return optional.isPresent() ? optional.getAsLong() : null;
+    /**
+     * Latencies since startup.
+     */
+    public Report report() {
+        Report report = new Report(false);
+
+        histograms.forEach((operation, histogram) -> report.operations.put(operation, histogram.snapshot()));
+
+        instrumentHistograms.forEach((instrumentId, operationHistograms) -> {
+            Map<Operation, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(Operation.class);
+            operationHistograms.forEach((operation, histogram) -> snapshots.put(operation, histogram.snapshot()));
+            report.instruments.put(instrumentId, snapshots);
+        });
+        return report;
     }
 
-    public Long getMaxOrderProcessingTimeMillis() {
-        OptionalLong optional = orderProcessingTimes.stream().mapToLong(pt -> pt).max();
-        return optional.isPresent() ? optional.getAsLong() : null;
+    /**
+     * Latencies since the reader's previous interval report, since startup on its first one.
+     */
+    public Report intervalReport(String reader) {
+        Report current = report();
+        if (!intervalBaselines.containsKey(reader) && intervalBaselines.size() >= MAX_INTERVAL_READERS) {
+            throw new IllegalStateException("too many interval report readers, at most " + MAX_INTERVAL_READERS);
+        }
+        return current.since(intervalBaselines.put(reader, current));
     }
 
-    public Long getAverageOrderProcessingTimeMillis() {
-        OptionalDouble optional = orderProcessingTimes.stream().mapToLong(pt -> pt).average();
-        return optional.isPresent() ? (long) optional.getAsDouble() : null;
+    private static Map<Operation, LatencyHistogram> createHistograms() {
+        Map<Operation, LatencyHistogram> m = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            m.put(operation, new LatencyHistogram());
+        }
+        return m;
     }
 
+    public static class Report {
+        private final boolean interval;
+        private final Map<Operation, LatencyHistogram.Snapshot> operations = new EnumMap<>(Operation.class);
+        private final Map<Long, Map<Operation, LatencyHistogram.Snapshot>> instruments = new TreeMap<>();
+
+        Report(boolean interval) {
+            this.interval = interval;
+        }
+
+        /**
+         * Interval report from the earlier report since startup (null for none) to this one.
+         */
+        Report since(Report earlier) {
+            Report report = new Report(true);
+            operations.forEach((operation, snapshot) ->
+                    report.operations.put(operation, snapshot.since(earlier != null ? earlier.operations.get(operation) : null)));
+
+            instruments.forEach((instrumentId, snapshots) -> {
+                Map<Operation, LatencyHistogram.Snapshot> earlierSnapshots = earlier != null ? earlier.instruments.get(instrumentId) : null;
+                Map<Operation, LatencyHistogram.Snapshot> interval = new EnumMap<>(Operation.class);
+                snapshots.forEach((operation, snapshot) ->
+                        interval.put(operation, snapshot.since(earlierSnapshots != null ? earlierSnapshots.get(operation) : null)));
+                report.instruments.put(instrumentId, interval);
+            });
+            return report;
+        }
+
+        public boolean isInterval() {
+            return interval;
+        }
+
+        public Map<Operation, LatencyHistogram.Snapshot> getOperations() {
+            return operations;
+        }
+
+        public Map<Long, Map<Operation, LatencyHistogram.Snapshot>> getInstruments() {
+            return instruments;
+        }
+    }
 }
@@ -0,0 +1,275 @@
+package com.acme.orderbook.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Point in time copy of one book, all orders in slot order as primitive columns. The history of order i is the
+ * entries partialOffsets[i] until partialOffsets[i + 1] of the partial columns followed by one partial execution for
+ * every execution from historyStarts[i] until historyEnds[i] on the book's tape, with the quantity of the fills
+ * fillOffsets[i] until fillOffsets[i + 1] (execution << 32 | quantity) and 0 for the others. A history end of -1 means
+ * the order still takes part in the executions. Both kinds of books write the tape, partials are only kept for archived
+ * orders and orders restored from older snapshots.
+ */
+public class BookSnapshot {
+
+    private static final byte ACTIVE = 0; // state of an active order, as in the order store
+    private static final int ACTIVE_HISTORY = -1;
+
+    private final long instrumentId;
+    private double tickSize;
+    private long journalSequence; // journal records of the book up to this sequence are included
+    private boolean offHeap; // restored into an off-heap book
+
+    private final boolean open;
+    private final boolean executed;
+
+    private final int executionCount;
+    private final int[] executionQuantities;
+    private final long[] executionPrices;
+
+    private final int orderCount;
+    private final long[] orderIds;
+    private final int[] quantities;
+    private final long[] limitPrices;
+    private final int[] executedQuantities;
+    private final long[] entryTimes;
+    private final long[] executionTimes;
+    private final byte[] states;
+
+    private final int[] historyStarts;
+    private final int[] historyEnds;
+    private final int fillCount;
+    private final int[] fillOffsets;
+    private final long[] fills;
+
+    private final int partialCount;
+    private final int[] partialOffsets;
+    private final int[] partialQuantities;
+    private final long[] partialPrices;
+
+    public BookSnapshot(long instrumentId, boolean open, boolean executed, int executionCount, int orderCount, int fillCount, int partialCount) {
+        this.instrumentId = instrumentId;
+        this.open = open;
+        this.executed = executed;
+
+        this.executionCount = executionCount;
+        executionQuantities = new int[executionCount];
+        executionPrices = new long[executionCount];
+
+        this.orderCount = orderCount;
+        orderIds = new long[orderCount];
+        quantities = new int[orderCount];
+        limitPrices = new long[orderCount];
+        executedQuantities = new int[orderCount];
+        entryTimes = new long[orderCount];
+        executionTimes = new long[orderCount];
+        states = new byte[orderCount];
+
+        historyStarts = new int[orderCount];
+        historyEnds = new int[orderCount];
+        this.fillCount = fillCount;
+        fillOffsets = new int[orderCount + 1];
+        fills = new long[fillCount];
+
+        this.partialCount = partialCount;
+        partialOffsets = new int[orderCount + 1];
+        partialQuantities = new int[partialCount];
+        partialPrices = new long[partialCount];
+    }
+
+    void write(SnapshotOutput out) throws IOException {
+        out.putLong(instrumentId);
+        out.putDouble(tickSize);
+        out.putLong(journalSequence);
+        out.putByte((byte) (offHeap ? 1 : 0));
+        out.putByte((byte) (open ? 1 : 0));
+        out.putByte((byte) (executed ? 1 : 0));
+        out.putInt(executionCount);
+        out.putInt(orderCount);
+        out.putInt(fillCount);
+        out.putInt(partialCount);
+
+        out.putInts(executionQuantities, executionCount);
+        out.putLongs(executionPrices, executionCount);
+
+        out.putLongs(orderIds, orderCount);
+        out.putInts(quantities, orderCount);
+        out.putLongs(limitPrices, orderCount);
+        out.putInts(executedQuantities, orderCount);
+        out.putLongs(entryTimes, orderCount);
+        out.putLongs(executionTimes, orderCount);
+        out.putBytes(states, orderCount);
+
+        out.putInts(historyStarts, orderCount);
+        out.putInts(historyEnds, orderCount);
+        out.putInts(fillOffsets, orderCount + 1);
+        out.putLongs(fills, fillCount);
+
+        out.putInts(partialOffsets, orderCount + 1);
+        out.putInts(partialQuantities, partialCount);
+        out.putLongs(partialPrices, partialCount);
+    }
+
+    static BookSnapshot read(SnapshotInput in, int version) throws IOException {
+        long instrumentId = in.getLong();
+        double tickSize = in.getDouble();
+        long journalSequence = in.getLong();
+        boolean offHeap = version >= 2 && in.getByte() != 0;
+        boolean open = in.getByte() != 0;
+        boolean executed = in.getByte() != 0;
+        int executionCount = in.getInt();
+        int orderCount = in.getInt();
+        int fillCount = version >= 3 ? in.getInt() : 0;
+        int partialCount = in.getInt();
+
+        BookSnapshot s = new BookSnapshot(instrumentId, open, executed, executionCount, orderCount, fillCount, partialCount);
+        s.setTickSize(tickSize);
+        s.setJournalSequence(journalSequence);
+        s.setOffHeap(offHeap);
+
+        in.getInts(s.executionQuantities, executionCount);
+        in.getLongs(s.executionPrices, executionCount);
+
+        in.getLongs(s.orderIds, orderCount);
+        in.getInts(s.quantities, orderCount);
+        in.getLongs(s.limitPrices, orderCount);
+        in.getInts(s.executedQuantities, orderCount);
+        in.getLongs(s.entryTimes, orderCount);
+        in.getLongs(s.executionTimes, orderCount);
+        in.getBytes(s.states, orderCount);
+
+        if (version >= 3) {
+            in.getInts(s.historyStarts, orderCount);
+            in.getInts(s.historyEnds, orderCount);
+            in.getInts(s.fillOffsets, orderCount + 1);
+            in.getLongs(s.fills, fillCount);
+        } else {
+            // the partials hold the whole history, only active orders take part in the executions to come
+            for (int i = 0; i < orderCount; i++) {
+                s.historyStarts[i] = executionCount;
+                s.historyEnds[i] = s.states[i] == ACTIVE ? ACTIVE_HISTORY : executionCount;
+            }
+        }
+
+        in.getInts(s.partialOffsets, orderCount + 1);
+        in.getInts(s.partialQuantities, partialCount);
+        in.getLongs(s.partialPrices, partialCount);
+        return s;
+    }
+
+    public long getInstrumentId() {
+        return instrumentId;
+    }
+
+    public double getTickSize() {
+        return tickSize;
+    }
+
+    public void setTickSize(double tickSize) {
+        this.tickSize = tickSize;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public int getExecutionCount() {
+        return executionCount;
+    }
+
+    public int[] getExecutionQuantities() {
+        return executionQuantities;
+    }
+
+    public long[] getExecutionPrices() {
+        return executionPrices;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public long[] getOrderIds() {
+        return orderIds;
+    }
+
+    public int[] getQuantities() {
+        return quantities;
+    }
+
+    public long[] getLimitPrices() {
+        return limitPrices;
+    }
+
+    public int[] getExecutedQuantities() {
+        return executedQuantities;
+    }
+
+    public long[] getEntryTimes() {
+        return entryTimes;
+    }
+
+    public long[] getExecutionTimes() {
+        return executionTimes;
+    }
+
+    public byte[] getStates() {
+        return states;
+    }
+
+    public int[] getHistoryStarts() {
+        return historyStarts;
+    }
+
+    public int[] getHistoryEnds() {
+        return historyEnds;
+    }
+
+    public int getFillCount() {
+        return fillCount;
+    }
+
+    public int[] getFillOffsets() {
+        return fillOffsets;
+    }
+
+    public long[] getFills() {
+        return fills;
+    }
+
+    public int getPartialCount() {
+        return partialCount;
+    }
+
+    public int[] getPartialOffsets() {
+        return partialOffsets;
+    }
+
+    public int[] getPartialQuantities() {
+        return partialQuantities;
+    }
+
+    public long[] getPartialPrices() {
+        return partialPrices;
+    }
+}
@@ -0,0 +1,146 @@
+package com.acme.orderbook.snapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Binary snapshot of all books: a header with the order sequence followed by the books. Files are written under a
+ * temporary name and renamed when complete, so a crash while writing never leaves a partial snapshot behind.
+ *
+ * The order sequence is the highest sequence reserved for order ids. Files written before the ids were routable hold
+ * the last order id there, which bounds the sequences as well. The retired instruments follow, their journal records
+ * may be gone once the snapshot covers them. The order ids carry the registry shard in their low bits, so the shard count
+ * they were made with is recorded as well, 0 when unknown, and so is the last journal sequence whose instrument
+ * creations and retirements the snapshot holds.
+ */
+public class SnapshotFile {
+
+    private static final int MAGIC = 0x4F424B53; // OBKS
+    private static final int VERSION = 4; // 2 added the off-heap flag of the books, 3 the execution tape and the retired instruments, 4 the registry shard count and the journal sequence
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".dat";
+
+    private final long orderSequence;
+    private final int registryShards;
+    private final long journalSequence;
+    private final long[] retiredInstrumentIds;
+    private final List<BookSnapshot> books;
+
+    public SnapshotFile(long orderSequence, int registryShards, long journalSequence, long[] retiredInstrumentIds, List<BookSnapshot> books) {
+        this.orderSequence = orderSequence;
+        this.registryShards = registryShards;
+        this.journalSequence = journalSequence;
+        this.retiredInstrumentIds = retiredInstrumentIds;
+        this.books = books;
+    }
+
+    public long getOrderSequence() {
+        return orderSequence;
+    }
+
+    public int getRegistryShards() {
+        return registryShards;
+    }
+
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public long[] getRetiredInstrumentIds() {
+        return retiredInstrumentIds;
+    }
+
+    public List<BookSnapshot> getBooks() {
+        return books;
+    }
+
+    /**
+     * Writes the snapshot to a new file in the directory and returns it.
+     */
+    public Path write(Path dir) {
+        Path file = dir.resolve(String.format("%s%020d%s", PREFIX, System.currentTimeMillis(), SUFFIX));
+        Path tmpFile = dir.resolve(file.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(dir);
+
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                SnapshotOutput out = new SnapshotOutput(channel);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putLong(orderSequence);
+                out.putInt(registryShards);
+                out.putLong(journalSequence);
+                out.putInt(retiredInstrumentIds.length);
+                out.putLongs(retiredInstrumentIds, retiredInstrumentIds.length);
+                out.putInt(books.size());
+
+                for (BookSnapshot book : books) {
+                    book.write(out);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static SnapshotFile read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SnapshotInput in = new SnapshotInput(channel);
+
+            if (in.getInt() != MAGIC) {
+                throw new IllegalStateException("not a snapshot file " + file);
+            }
+            int version = in.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IllegalStateException("unsupported snapshot version " + version + " " + file);
+            }
+            long orderSequence = in.getLong();
+            int registryShards = version >= 4 ? in.getInt() : 0;
+            long journalSequence = version >= 4 ? in.getLong() : 0;
+            long[] retiredInstrumentIds = new long[version >= 3 ? in.getInt() : 0];
+            in.getLongs(retiredInstrumentIds, retiredInstrumentIds.length);
+            int bookCount = in.getInt();
+
+            List<BookSnapshot> books = new ArrayList<>(bookCount);
+            for (int i = 0; i < bookCount; i++) {
+                books.add(BookSnapshot.read(in, version));
+            }
+            return new SnapshotFile(orderSequence, registryShards, journalSequence, retiredInstrumentIds, books);
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Most recent snapshot in the directory, null if there is none.
+     */
+    public static Path latest(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(PREFIX) && f.getFileName().toString().endsWith(SUFFIX))
+                    .max(Path::compareTo)
+                    .orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.acme.orderbook.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Little endian reader of snapshot files. The file is memory mapped in windows, so files above the 2GB limit of a
+ * single mapping can be read, arrays are copied out of the mapping in bulk.
+ */
+class SnapshotInput {
+
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    SnapshotInput(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        map(0);
+    }
+
+    byte getByte() throws IOException {
+        ensure(1);
+        return window.get();
+    }
+
+    int getInt() throws IOException {
+        ensure(4);
+        return window.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(8);
+        return window.getLong();
+    }
+
+    double getDouble() throws IOException {
+        ensure(8);
+        return window.getDouble();
+    }
+
+    void getBytes(byte[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(1);
+            int n = Math.min(count - i, window.remaining());
+            window.get(values, i, n);
+            i += n;
+        }
+    }
+
+    void getInts(int[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(4);
+            int n = Math.min(count - i, window.remaining() / 4);
+            window.asIntBuffer().get(values, i, n);
+            window.position(window.position() + n * 4);
+            i += n;
+        }
+    }
+
+    void getLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(8);
+            int n = Math.min(count - i, window.remaining() / 8);
+            window.asLongBuffer().get(values, i, n);
+            window.position(window.position() + n * 8);
+            i += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            long position = windowStart + window.position();
+            if (position + bytes > size) {
+                throw new IllegalStateException("snapshot truncated at " + position);
+            }
+            map(position);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,84 @@
+package com.acme.orderbook.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered little endian writer of snapshot files, arrays are copied into the buffer in bulk.
+ */
+class SnapshotOutput {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    SnapshotOutput(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void putByte(byte value) throws IOException {
+        ensure(1);
+        buffer.put(value);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    void putBytes(byte[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(1);
+            int n = Math.min(count - i, buffer.remaining());
+            buffer.put(values, i, n);
+            i += n;
+        }
+    }
+
+    void putInts(int[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(4);
+            int n = Math.min(count - i, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, i, n);
+            buffer.position(buffer.position() + n * 4);
+            i += n;
+        }
+    }
+
+    void putLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(8);
+            int n = Math.min(count - i, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, i, n);
+            buffer.position(buffer.position() + n * 8);
+            i += n;
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.acme.orderbook.store;
+
+import com.acme.orderbook.book.OrderArchive;
+import com.acme.orderbook.common.OrderBookUtil;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append only store of finished orders encoded into compact records in memory mapped segment files, so the operating
+ * system pages them out as needed and the tier takes neither heap nor a growing amount of direct memory. The order ids
+ * are spread over stripes, every stripe has its own segments, its own lock and a primitive open addressing index
+ * orderId -> record address, which is all the tier keeps on the heap. The segment files are scratch space and deleted
+ * on close, the tier is rebuilt from the snapshot and the journal on startup.
+ *
+ * Record layout: orderId (8), instrumentId (8), entryTime (8), executionTime (8), limitPrice (8), quantity (4),
+ * executedQuantity (4), partial execution count (4), then quantity (4) and price (8) of every partial execution.
+ */
+public class CompactOrderTier {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 52;
+    private static final int PARTIAL_EXECUTION_SIZE = 12;
+    private static final long EMPTY = Long.MIN_VALUE; // not a valid order id
+
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public CompactOrderTier(Path dir, int segmentSize, int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalStateException("stripe count must be a power of 2, " + stripeCount);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    public void add(OrderArchive.FinishedOrder order) {
+        stripe(order.getOrderId()).add(order);
+    }
+
+    /**
+     * Decodes the order into a new instance, null if the tier does not have it.
+     */
+    public Order get(long orderId) {
+        return stripe(orderId).get(orderId);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Bytes taken by the records, not counting the unused rest of the segments.
+     */
+    public long getRecordBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.recordBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops all records and deletes the segment files.
+     */
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    private Stripe stripe(long orderId) {
+        return stripes[(int) (orderId ^ (orderId >>> 32)) & stripeMask];
+    }
+
+    private static int recordSize(int partialCount) {
+        return HEADER_SIZE + partialCount * PARTIAL_EXECUTION_SIZE;
+    }
+
+    private class Stripe {
+        private final int index;
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private final List<Path> files = new ArrayList<>();
+        private ByteBuffer segment;
+
+        private long[] keys = emptyKeys(1024);
+        private long[] addresses = new long[1024]; // segment index << 32 | position
+        private int size;
+        private long recordBytes;
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Encodes the fields straight into the segment, the partial executions at the position of their index.
+         */
+        synchronized void add(OrderArchive.FinishedOrder order) {
+            int partialCount = order.getPartialExecutionCount();
+            int recordSize = recordSize(partialCount);
+
+            if (segment == null || segment.remaining() < recordSize) {
+                nextSegment(Math.max(segmentSize, recordSize));
+            }
+            ByteBuffer segment = this.segment;
+            int position = segment.position();
+
+            segment.putLong(order.getOrderId());
+            segment.putLong(order.getInstrumentId());
+            segment.putLong(order.getEntryTime());
+            segment.putLong(order.getExecutionTime());
+            segment.putLong(order.getLimitPrice());
+            segment.putInt(order.getQuantity());
+            segment.putInt(order.getExecutedQuantity());
+            segment.putInt(partialCount);
+
+            int partials = position + HEADER_SIZE;
+            order.forEachPartialExecution((i, quantity, price) -> {
+                segment.putInt(partials + i * PARTIAL_EXECUTION_SIZE, quantity);
+                segment.putLong(partials + i * PARTIAL_EXECUTION_SIZE + 4, price);
+            });
+            segment.position(position + recordSize);
+
+            put(order.getOrderId(), (long) (segments.size() - 1) << 32 | position);
+            recordBytes += recordSize;
+        }
+
+        synchronized Order get(long orderId) {
+            int i = indexOf(orderId);
+            if (keys[i] == EMPTY) {
+                return null;
+            }
+            ByteBuffer buffer = segments.get((int) (addresses[i] >>> 32));
+            int position = (int) addresses[i];
+
+            long instrumentId = buffer.getLong(position + 8);
+            long entryTime = buffer.getLong(position + 16);
+            long executionTime = buffer.getLong(position + 24);
+            long limitPrice = buffer.getLong(position + 32);
+            int quantity = buffer.getInt(position + 40);
+            int executedQuantity = buffer.getInt(position + 44);
+            int partialCount = buffer.getInt(position + 48);
+
+            List<OrderPartialExecution> partialExecutions = new ArrayList<>(partialCount);
+            for (int p = position + HEADER_SIZE, end = p + partialCount * PARTIAL_EXECUTION_SIZE; p < end; p += PARTIAL_EXECUTION_SIZE) {
+                partialExecutions.add(new OrderPartialExecution(buffer.getInt(p), buffer.getLong(p + 4)));
+            }
+            return new Order(instrumentId, orderId, OrderBookUtil.fromEpochNanos(entryTime), quantity, limitPrice, executedQuantity,
+                    executionTime != OrderArchive.NO_EXECUTION ? OrderBookUtil.fromEpochNanos(executionTime) : null, partialExecutions);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long recordBytes() {
+            return recordBytes;
+        }
+
+        synchronized void close() {
+            segments.clear();
+            segment = null;
+            keys = emptyKeys(1024);
+            addresses = new long[1024];
+            size = 0;
+            recordBytes = 0;
+
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            files.clear();
+        }
+
+        private void nextSegment(int capacity) {
+            Path file = dir.resolve(String.format("%s%02d-%06d%s", SEGMENT_PREFIX, index, segments.size(), SEGMENT_SUFFIX));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            files.add(file);
+            segment.order(ByteOrder.nativeOrder());
+            segments.add(segment);
+        }
+
+        private void put(long orderId, long address) {
+            int i = indexOf(orderId);
+            if (keys[i] == EMPTY) {
+                keys[i] = orderId;
+                size++;
+            }
+            addresses[i] = address; // an order archived again points to its latest record
+
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        private int indexOf(long orderId) {
+            int mask = keys.length - 1;
+            int i = (int) (orderId * 0x9E3779B97F4A7C15L >>> 32) & mask;
+
+            while (keys[i] != EMPTY && keys[i] != orderId) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            long[] oldAddresses = addresses;
+            keys = emptyKeys(oldKeys.length * 2);
+            addresses = new long[oldKeys.length * 2];
+
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = indexOf(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    addresses[i] = oldAddresses[j];
+                }
+            }
+        }
+    }
+
+    private static long[] emptyKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+}
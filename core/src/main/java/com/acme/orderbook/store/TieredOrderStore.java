@@ -0,0 +1,112 @@
+package com.acme.orderbook.store;
+
+import com.acme.orderbook.book.OrderArchive;
+import com.acme.orderbook.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The finished orders of the node, active orders are kept by their books. A book hands an order over straight from
+ * its own storage once it is executed or canceled, the order is encoded into the compact tier in memory mapped files
+ * and never built on the heap. Lookups decode the order from the compact tier, a bounded LRU cache keeps the orders
+ * read recently, evicting an order from the cache just drops the reference.
+ */
+@Component
+public class TieredOrderStore implements OrderArchive {
+
+    private final Map<Long, Order> cache; // orderId -> recently read order, access ordered
+    private final CompactOrderTier compactTier;
+    private final Path tempDir; // created for the compact tier without an archive directory, null otherwise
+
+    public TieredOrderStore() {
+        this(100_000, "", CompactOrderTier.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * With an empty archive directory the compact tier maps its segments in a temporary directory of its own, which is
+     * deleted on close.
+     */
+    @Autowired
+    public TieredOrderStore(@Value("${orders.cacheSize:100000}") int cacheSize,
+                            @Value("${orders.archiveDir:}") String archiveDir,
+                            @Value("${orders.archiveSegmentSize:16777216}") int archiveSegmentSize) {
+        this.cache = new LinkedHashMap<Long, Order>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Order> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        try {
+            this.tempDir = archiveDir.isEmpty() ? Files.createTempDirectory("orderbook-orders") : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.compactTier = new CompactOrderTier(tempDir != null ? tempDir : Paths.get(archiveDir), archiveSegmentSize, 16);
+    }
+
+    @PreDestroy
+    public void close() {
+        compactTier.close();
+        if (tempDir != null) {
+            try {
+                Files.deleteIfExists(tempDir);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The order is readable from the compact tier before the book drops it from its own storage, so concurrent lookups
+     * always find it. An order archived again replaces its cached copy.
+     */
+    @Override
+    public void archive(FinishedOrder order) {
+        compactTier.add(order);
+        synchronized (cache) {
+            cache.remove(order.getOrderId());
+        }
+    }
+
+    @Override
+    public Order get(long orderId) {
+        Order order;
+        synchronized (cache) {
+            order = cache.get(orderId);
+        }
+        if (order != null) {
+            return order;
+        }
+        order = compactTier.get(orderId);
+        if (order != null) {
+            synchronized (cache) {
+                cache.put(orderId, order);
+            }
+        }
+        return order;
+    }
+
+    public int getCachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getArchivedCount() {
+        return compactTier.size();
+    }
+
+    public long getArchivedBytes() {
+        return compactTier.getRecordBytes();
+    }
+}
@@ -0,0 +1,172 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.ExecutionPreview;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+import com.acme.orderbook.snapshot.BookSnapshot;
+import com.acme.orderbook.store.TieredOrderStore;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OffHeapOrderBookTest {
+
+    @Test
+    public void testSameAsHeapBook() {
+        for (boolean archived : new boolean[]{false, true}) {
+            Random random = new Random(42);
+            TieredOrderStore orderStore = new TieredOrderStore(1000, "", 1 << 16);
+
+            OrderBookImpl heapBook = new OrderBookImpl(1);
+            OffHeapOrderBook offHeapBook = new OffHeapOrderBook(1, archived ? orderStore : null);
+
+            LocalDateTime entryDate = LocalDateTime.now();
+            List<Order> batch = new ArrayList<>();
+            for (int i = 1; i <= 20_000; i++) {
+                int quantity = 1 + random.nextInt(100);
+                long limitPrice = random.nextInt(10) == 0 ? Order.MARKET_PRICE : 4900 + random.nextInt(200);
+                LocalDateTime orderEntryDate = entryDate.plusNanos(random.nextInt(1_000_000));
+
+                heapBook.addOrder(new Order(1, i, orderEntryDate, quantity, limitPrice));
+                batch.add(new Order(1, i, orderEntryDate, quantity, limitPrice));
+                if (batch.size() == 1000) {
+                    offHeapBook.addOrders(batch);
+                    batch.clear();
+                }
+            }
+            assertEquals(heapBook.generateStatistics().toString(), offHeapBook.generateStatistics().toString());
+
+            heapBook.close();
+            offHeapBook.close();
+
+            while (!heapBook.isExecuted()) {
+                Execution execution = new Execution(1, 1 + random.nextInt(40_000), 4950 + random.nextInt(100));
+                assertSamePreview(heapBook.previewExecution(execution), offHeapBook.previewExecution(execution));
+                heapBook.addExecution(execution);
+                offHeapBook.addExecution(execution);
+
+                assertEquals(heapBook.generateStatistics().toString(), offHeapBook.generateStatistics().toString());
+            }
+            assertTrue(offHeapBook.isExecuted());
+
+            for (long orderId : new long[]{1, 500, 19_999}) {
+                Order expected = getOrder(heapBook, orderId);
+                Order actual = offHeapBook.getOrder(orderId);
+                assertEquals(expected.getLimitPrice(), actual.getLimitPrice());
+                assertEquals(expected.getEntryDate(), actual.getEntryDate());
+                assertEquals(expected.getExecutedQuantity(), actual.getExecutedQuantity());
+                assertEquals(expected.getExecutionDate() == null, actual.getExecutionDate() == null);
+                assertEquals(expected.getPartialExecutions().size(), actual.getPartialExecutions().size());
+            }
+            assertNull(offHeapBook.getOrder(20_001));
+
+            BookSnapshot heapSnapshot = heapBook.snapshot();
+            BookSnapshot offHeapSnapshot = offHeapBook.snapshot();
+            assertArrayEquals(heapSnapshot.getOrderIds(), offHeapSnapshot.getOrderIds());
+            assertArrayEquals(heapSnapshot.getExecutedQuantities(), offHeapSnapshot.getExecutedQuantities());
+            assertArrayEquals(heapSnapshot.getStates(), offHeapSnapshot.getStates());
+            if (!archived) {
+                // both keep the histories as ranges on the tape with the same fills
+                assertArrayEquals(heapSnapshot.getHistoryStarts(), offHeapSnapshot.getHistoryStarts());
+                assertArrayEquals(heapSnapshot.getHistoryEnds(), offHeapSnapshot.getHistoryEnds());
+                assertArrayEquals(heapSnapshot.getFills(), offHeapSnapshot.getFills());
+                assertEquals(0, offHeapSnapshot.getPartialCount());
+            }
+
+            // archived orders are written with their histories as partials, both books restore either form
+            OffHeapOrderBook restored = new OffHeapOrderBook(heapSnapshot, new TieredOrderStore());
+            assertEquals(heapBook.generateStatistics().toString(), restored.generateStatistics().toString());
+            assertEquals(getOrder(heapBook, 7).toString(), restored.getOrder(7).toString());
+
+            OrderBookImpl restoredHeapBook = new OrderBookImpl(offHeapSnapshot, new TieredOrderStore());
+            assertEquals(heapBook.generateStatistics().toString(), restoredHeapBook.generateStatistics().toString());
+
+            for (long orderId : new long[]{1, 7, 500, 19_999}) {
+                List<OrderPartialExecution> expected = getOrder(heapBook, orderId).getPartialExecutions();
+                for (OrderBook book : new OrderBook[]{restored, restoredHeapBook}) {
+                    List<OrderPartialExecution> actual = book.getOrder(orderId).getPartialExecutions();
+                    assertEquals(expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i).getQuantity(), actual.get(i).getQuantity());
+                        assertEquals(expected.get(i).getPrice(), actual.get(i).getPrice());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedOrdersCostNothing() {
+        OffHeapOrderBook orderBook = new OffHeapOrderBook(1, null);
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 1000, 5050));
+        for (int i = 2; i <= 101; i++) {
+            orderBook.addOrder(new Order(1, i, LocalDateTime.now(), 10, 4850));
+        }
+        orderBook.close();
+        for (int i = 0; i < 5; i++) {
+            orderBook.addExecution(new Execution(1, 1, 4950));
+        }
+
+        // only the fills of the valid order are stored, the invalid orders take part through the tape
+        BookSnapshot snapshot = orderBook.snapshot();
+        assertEquals(5, snapshot.getFillCount());
+        assertEquals(0, snapshot.getPartialCount());
+
+        List<OrderPartialExecution> partialExecutions = orderBook.getOrder(50).getPartialExecutions();
+        assertEquals(5, partialExecutions.size());
+        for (OrderPartialExecution partialExecution : partialExecutions) {
+            assertEquals(0, partialExecution.getQuantity());
+            assertEquals(4950, partialExecution.getPrice());
+        }
+        assertEquals(5, orderBook.getOrder(1).getExecutedQuantity());
+    }
+
+    @Test
+    public void testRecordsReused() {
+        TieredOrderStore orderStore = new TieredOrderStore();
+        OffHeapOrderBook orderBook = new OffHeapOrderBook(1, orderStore);
+
+        orderBook.addOrders(Arrays.asList(
+                new Order(1, 1, LocalDateTime.now(), 10, 4950),
+                new Order(1, 2, LocalDateTime.now(), 10, 5050)));
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 20, 4950));
+
+        // both orders executed, archived and their records freed
+        assertTrue(orderBook.isExecuted());
+        assertEquals(2, orderStore.getArchivedCount());
+        long allocatedBytes = orderBook.getAllocatedBytes();
+
+        orderBook.open();
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 5, 4950));
+        assertEquals(allocatedBytes, orderBook.getAllocatedBytes());
+
+        assertTrue(orderBook.getOrder(1).isExecuted());
+        assertEquals(5, orderBook.getOrder(3).getUnexecutedQuantity());
+        assertEquals(3, orderBook.snapshot().getOrderCount());
+
+        orderBook.archiveActiveOrders();
+        assertEquals(5, orderStore.get(3).getQuantity());
+    }
+
+    private Order getOrder(OrderBookImpl orderBook, long orderId) {
+        Order order = orderBook.getExecutedOrderMap().get(orderId);
+        return order != null ? order : orderBook.getCanceledOrderMap().get(orderId);
+    }
+
+    private static void assertSamePreview(ExecutionPreview expected, ExecutionPreview actual) {
+        assertEquals(expected.getFillCount(), actual.getFillCount());
+        for (int i = 0; i < expected.getFillCount(); i++) {
+            assertEquals(expected.getOrderId(i), actual.getOrderId(i));
+            assertEquals(expected.getFillQuantity(i), actual.getFillQuantity(i));
+        }
+        assertEquals(expected.isExecuted(), actual.isExecuted());
+    }
+}
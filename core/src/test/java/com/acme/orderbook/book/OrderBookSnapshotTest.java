@@ -0,0 +1,100 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.Statistics;
+import com.acme.orderbook.snapshot.BookSnapshot;
+import com.acme.orderbook.snapshot.SnapshotFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class OrderBookSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRestore() throws Exception {
+        OrderBookImpl orderBook = new OrderBookImpl(1);
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 5050));
+        orderBook.addOrder(new Order(1, 4, LocalDateTime.now(), 5, Order.MARKET_PRICE));
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 20, 4950));
+
+        BookSnapshot bookSnapshot = orderBook.snapshot();
+        bookSnapshot.setTickSize(0.01);
+        bookSnapshot.setJournalSequence(42);
+
+        Path dir = folder.newFolder().toPath();
+        Path file = new SnapshotFile(4, 8, 40, new long[]{7}, Arrays.asList(bookSnapshot, new OrderBookImpl(2).snapshot())).write(dir);
+        assertEquals(file, SnapshotFile.latest(dir));
+
+        SnapshotFile snapshotFile = SnapshotFile.read(file);
+        assertEquals(4, snapshotFile.getOrderSequence());
+        assertEquals(8, snapshotFile.getRegistryShards());
+        assertEquals(40, snapshotFile.getJournalSequence());
+        assertArrayEquals(new long[]{7}, snapshotFile.getRetiredInstrumentIds());
+        assertEquals(2, snapshotFile.getBooks().size());
+        assertEquals(42, snapshotFile.getBooks().get(0).getJournalSequence());
+        assertEquals(0.01, snapshotFile.getBooks().get(0).getTickSize(), 0d);
+
+        OrderBookImpl restored = new OrderBookImpl(snapshotFile.getBooks().get(0));
+        assertFalse(restored.isOpen());
+        assertEquals(orderBook.generateStatistics().toString(), restored.generateStatistics().toString());
+        assertEquals(orderBook.getActiveOrderMap().keySet(), restored.getActiveOrderMap().keySet());
+        assertEquals(orderBook.getExecutedOrderMap().keySet(), restored.getExecutedOrderMap().keySet());
+
+        Order order = restored.getActiveOrderMap().get(3L);
+        assertEquals(1, order.getPartialExecutions().size());
+        assertEquals(order.getPartialExecutions().get(0).getQuantity(), order.getExecutedQuantity());
+
+        // the restored book keeps executing like the original
+        orderBook.addExecution(new Execution(1, 15, 4950));
+        restored.addExecution(new Execution(1, 15, 4950));
+        Statistics statistics = restored.generateStatistics();
+        assertEquals(orderBook.generateStatistics().toString(), statistics.toString());
+        assertTrue(restored.isExecuted());
+        assertEquals(1, statistics.getCanceledOrders());
+
+        assertTrue(new OrderBookImpl(snapshotFile.getBooks().get(1)).isOpen());
+    }
+
+    @Test
+    public void testRestoreHistories() {
+        OrderBookImpl orderBook = new OrderBookImpl(1);
+        for (int i = 1; i <= 20; i++) {
+            orderBook.addOrder(new Order(1, i, LocalDateTime.now(), 10 + i, i % 4 == 0 ? Order.MARKET_PRICE : 4800 + 10 * i));
+        }
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 40, 4900));
+        orderBook.addExecution(new Execution(1, 30, 4950));
+
+        BookSnapshot snapshot = orderBook.snapshot();
+        assertEquals(0, snapshot.getPartialCount()); // the histories are written as fills on the tape
+
+        OrderBookImpl restored = new OrderBookImpl(snapshot);
+        orderBook.addExecution(new Execution(1, 25, 4950));
+        restored.addExecution(new Execution(1, 25, 4950));
+
+        for (long orderId = 1; orderId <= 20; orderId++) {
+            Order expected = orderBook.getOrder(orderId);
+            Order actual = restored.getOrder(orderId);
+            assertEquals(expected.getExecutedQuantity(), actual.getExecutedQuantity());
+            assertEquals(expected.getPartialExecutions().size(), actual.getPartialExecutions().size());
+
+            for (int i = 0; i < expected.getPartialExecutions().size(); i++) {
+                assertEquals(expected.getPartialExecutions().get(i).getQuantity(), actual.getPartialExecutions().get(i).getQuantity());
+                assertEquals(expected.getPartialExecutions().get(i).getPrice(), actual.getPartialExecutions().get(i).getPrice());
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.acme.orderbook.book;
 
 import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.ExecutionPreview;
 import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
 import com.acme.orderbook.model.Statistics;
 import org.junit.Before;
 import org.junit.Rule;
@@ -13,8 +15,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -57,19 +58,19 @@ public class OrderBookTest {
         assertTrue(orderBook.isOpen());
         assertFalse(orderBook.isExecuted());
 
-        assertEquals(0, orderBook.getActiveValidOrders(49.5).size());
-        assertEquals(0, orderBook.getActiveInvalidOrders(49.5).size());
-        assertEquals(0, orderBook.getActiveValidOrdersDemand(49.5));
-        assertEquals(0, orderBook.getActiveInvalidOrdersDemand(49.5));
+        assertEquals(0, orderBook.getActiveValidOrders(4950).size());
+        assertEquals(0, orderBook.getActiveInvalidOrders(4950).size());
+        assertEquals(0, orderBook.getActiveValidOrdersDemand(4950));
+        assertEquals(0, orderBook.getActiveInvalidOrdersDemand(4950));
         assertNull(orderBook.getLastExecution());
 
         // add orders to the open book
-        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 90, 49.5));
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 90, 4950));
 
-        assertEquals(1, orderBook.getActiveValidOrders(49.5).size());
-        assertEquals(0, orderBook.getActiveInvalidOrders(49.5).size());
-        assertEquals(0, orderBook.getActiveValidOrders(49.6).size());
-        assertEquals(1, orderBook.getActiveInvalidOrders(49.6).size());
+        assertEquals(1, orderBook.getActiveValidOrders(4950).size());
+        assertEquals(0, orderBook.getActiveInvalidOrders(4950).size());
+        assertEquals(0, orderBook.getActiveValidOrders(4960).size());
+        assertEquals(1, orderBook.getActiveInvalidOrders(4960).size());
 
         // close the book
         orderBook.close();
@@ -78,39 +79,34 @@ public class OrderBookTest {
 
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("cannot add orders to closed book");
-        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 90, 49.2));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 90, 4920));
     }
 
     @Test
-    public void testCalculateOrderPartialExecutionQuantities() {
-        List<Integer> demands = Arrays.asList(5, 13, 17, 9, 15, 2, 23, 11, 4, 34);
-
-        // case 1 - partially executed
-        int executionQuantity = 48;
-        List<Integer> partialExecutionQuantities = orderBook.calculateOrderPartialExecutionQuantities(demands, executionQuantity);
-        List<Integer> expectedQuantities = Arrays.asList(2, 5, 7, 4, 6, 1, 9, 4, 2, 8); // calculated in excel
-
-        for (int i = 0; i < demands.size(); i++) {
-            assertEquals(expectedQuantities.get(i), partialExecutionQuantities.get(i));
-        }
-
-        // case 2 - all orders fully executed
-        executionQuantity = 150;
-        partialExecutionQuantities = orderBook.calculateOrderPartialExecutionQuantities(demands, executionQuantity);
-        expectedQuantities = Arrays.asList(5, 13, 17, 9, 15, 2, 23, 11, 4,34); // all orders fully executed
-
-        for (int i = 0; i < demands.size(); i++) {
-            assertEquals(expectedQuantities.get(i), partialExecutionQuantities.get(i));
+    public void testAddOrders() {
+        orderBook.addOrders(Arrays.asList(
+                new Order(1, 1, LocalDateTime.now(), 15, 4850),
+                new Order(1, 2, LocalDateTime.now(), 10, 4950),
+                new Order(1, 3, LocalDateTime.now(), 20, Order.MARKET_PRICE)));
+
+        assertEquals(2, orderBook.getActiveValidOrders(4950).size());
+        assertEquals(1, orderBook.getActiveInvalidOrders(4950).size());
+        assertEquals(30, orderBook.getActiveValidOrdersDemand(4950));
+
+        // a batch with an order of another instrument is rejected as a whole
+        try {
+            orderBook.addOrders(Arrays.asList(
+                    new Order(1, 4, LocalDateTime.now(), 5, 4950),
+                    new Order(2, 5, LocalDateTime.now(), 5, 4950)));
+            fail("batch with wrong instrument must be rejected");
+        } catch (IllegalStateException e) {
+            assertEquals(3, orderBook.getActiveOrderMap().size());
         }
 
-        // case 3 - partially executed, some zero executions
-        executionQuantity = 12;
-        partialExecutionQuantities = orderBook.calculateOrderPartialExecutionQuantities(demands, executionQuantity);
-        expectedQuantities = Arrays.asList(1, 2, 2, 1, 2, 1, 3, 0, 0, 0); // calculated in excel
-
-        for (int i = 0; i < demands.size(); i++) {
-            assertEquals(expectedQuantities.get(i), partialExecutionQuantities.get(i));
-        }
+        orderBook.close();
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("cannot add orders to closed book 1");
+        orderBook.addOrders(Arrays.asList(new Order(1, 6, LocalDateTime.now(), 5, 4950)));
     }
 
     @Test
@@ -119,21 +115,21 @@ public class OrderBookTest {
         assertFalse(orderBook.isExecuted());
 
         // add orders to an open book
-        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 48.5));
-        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 49.5));
-        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 50.5));
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 5050));
 
         assertEquals(3, orderBook.getActiveOrderMap().size());
-        assertEquals(2, orderBook.getActiveValidOrders(49.5).size());
-        assertEquals(1, orderBook.getActiveInvalidOrders(49.5).size());
-        assertEquals(30, orderBook.getActiveValidOrdersDemand(49.5));
-        assertEquals(15, orderBook.getActiveInvalidOrdersDemand(49.5));
+        assertEquals(2, orderBook.getActiveValidOrders(4950).size());
+        assertEquals(1, orderBook.getActiveInvalidOrders(4950).size());
+        assertEquals(30, orderBook.getActiveValidOrdersDemand(4950));
+        assertEquals(15, orderBook.getActiveInvalidOrdersDemand(4950));
 
         // close the book and add an execution
         orderBook.close();
         assertFalse(orderBook.isOpen());
 
-        orderBook.addExecution(new Execution(1, 10, 49.5));
+        orderBook.addExecution(new Execution(1, 10, 4950));
         assertFalse(orderBook.isExecuted());
 
         assertEquals(3, orderBook.getActiveOrderMap().size());
@@ -150,7 +146,7 @@ public class OrderBookTest {
         assertFalse(orderBook.getActiveOrderMap().get(3L).isExecuted());
 
         // add a second execution
-        orderBook.addExecution(new Execution(1, 20, 49.5));
+        orderBook.addExecution(new Execution(1, 20, 4950));
         assertTrue(orderBook.isExecuted());
 
         assertEquals(0, orderBook.getActiveOrderMap().size());
@@ -169,16 +165,16 @@ public class OrderBookTest {
         // try to add an execution to the already executed book
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("cannot add execution to already executed book");
-        orderBook.addExecution(new Execution(1, 30, 49.5));
+        orderBook.addExecution(new Execution(1, 30, 4950));
 
         // reopen the book again and add a new order
         orderBook.open();
-        orderBook.addOrder(new Order(1, 4, LocalDateTime.now(), 20, 50.5));
+        orderBook.addOrder(new Order(1, 4, LocalDateTime.now(), 20, 5050));
         assertFalse(orderBook.isExecuted());
 
         // close the book again and add a new execution
         orderBook.close();
-        orderBook.addExecution(new Execution(1, 20, 49.5));
+        orderBook.addExecution(new Execution(1, 20, 4950));
         assertTrue(orderBook.isExecuted());
 
         assertEquals(0, orderBook.getActiveOrderMap().size());
@@ -186,16 +182,70 @@ public class OrderBookTest {
         assertEquals(1, orderBook.getCanceledOrderMap().size());
     }
 
+    @Test
+    public void testPartialExecutionHistory() {
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 2, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 5050));
+        orderBook.close();
+
+        orderBook.addExecution(new Execution(1, 10, 4950));
+        orderBook.addExecution(new Execution(1, 7, 4850));
+        orderBook.addExecution(new Execution(1, 9, 4950));
+        assertTrue(orderBook.isExecuted());
+
+        // skipped orders take part with zero quantities, executed orders leave the tape
+        assertPartialExecutions(orderBook.getCanceledOrderMap().get(1L), 0, 4950, 4, 4850, 0, 4950);
+        assertPartialExecutions(orderBook.getExecutedOrderMap().get(2L), 1, 4950, 1, 4850);
+        assertPartialExecutions(orderBook.getExecutedOrderMap().get(3L), 9, 4950, 2, 4850, 9, 4950);
+    }
+
+    @Test
+    public void testConsistentOrderCopies() throws InterruptedException {
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 1_000_000, 5000));
+        for (int i = 2; i <= 1000; i++) {
+            orderBook.addOrder(new Order(1, i, LocalDateTime.now(), 1000, 4900 + i % 200));
+        }
+        orderBook.close();
+
+        Thread writer = new Thread(() -> {
+            while (!orderBook.isExecuted()) {
+                orderBook.addExecution(new Execution(1, 1000, 4950));
+            }
+        });
+        writer.start();
+
+        // every copy shows the order between two executions
+        while (writer.isAlive()) {
+            Order copy = orderBook.getOrder(1);
+            int partialQuantity = copy.getPartialExecutions().stream().mapToInt(OrderPartialExecution::getQuantity).sum();
+
+            assertEquals(copy.getExecutedQuantity(), partialQuantity);
+            assertEquals(copy.isExecuted(), copy.getExecutionDate() != null);
+        }
+        writer.join();
+        assertTrue(orderBook.getOrder(1).getPartialExecutions().size() > 1);
+    }
+
+    private void assertPartialExecutions(Order order, long... quantitiesAndPrices) {
+        assertEquals(quantitiesAndPrices.length / 2, order.getPartialExecutions().size());
+
+        for (int i = 0; i < order.getPartialExecutions().size(); i++) {
+            assertEquals(quantitiesAndPrices[2 * i], order.getPartialExecutions().get(i).getQuantity());
+            assertEquals(quantitiesAndPrices[2 * i + 1], order.getPartialExecutions().get(i).getPrice());
+        }
+    }
+
     @Test
     public void testGenerateStatistics() {
         // add some orders to an open book
-        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 48.5));
-        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 49.5));
-        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 50.5));
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 5050));
 
         // close the book and add an execution
         orderBook.close();
-        orderBook.addExecution(new Execution(1, 10, 49.5));
+        orderBook.addExecution(new Execution(1, 10, 4950));
 
         // generate statistics
         Statistics statistics = orderBook.generateStatistics();
@@ -208,20 +258,21 @@ public class OrderBookTest {
         assertEquals(2, statistics.getActiveValidOrders());
         assertEquals(1, statistics.getActiveInvalidOrders());
 
-        assertEquals(49.5, statistics.getLastExecutionPrice(), 0.0001);
+        assertEquals(4950, statistics.getLastExecutionPrice());
         assertEquals(20, statistics.getActiveValidOrdersDemand());
         assertEquals(15, statistics.getActiveInvalidOrdersDemand());
 
         assertEquals(20, statistics.getLargestActiveOrderQuantity());
         assertEquals(10, statistics.getSmallestActiveOrderQuantity());
 
-        Map<Double, Integer> t = statistics.getActiveOrderLimitBreakDownTable();
-        assertEquals(15, t.get(48.5).intValue());
-        assertEquals(6, t.get(49.5).intValue());
-        assertEquals(14, t.get(50.5).intValue());
+        assertFalse(statistics.getFirstActiveOrderEntry().isAfter(statistics.getLastActiveOrderEntry()));
+
+        assertEquals(15, statistics.getActiveOrderLimitDemand(4850));
+        assertEquals(6, statistics.getActiveOrderLimitDemand(4950));
+        assertEquals(14, statistics.getActiveOrderLimitDemand(5050));
 
         // add another execution to fully execute all orders
-        orderBook.addExecution(new Execution(1, 20, 49.5));
+        orderBook.addExecution(new Execution(1, 20, 4950));
         statistics = orderBook.generateStatistics();
         log.info(statistics.toString());
 
@@ -232,14 +283,167 @@ public class OrderBookTest {
         assertEquals(0, statistics.getActiveValidOrders());
         assertEquals(0, statistics.getActiveInvalidOrders());
 
-        assertEquals(49.5, statistics.getLastExecutionPrice(), 0.0001);
+        assertEquals(4950, statistics.getLastExecutionPrice());
         assertEquals(0, statistics.getActiveValidOrdersDemand());
         assertEquals(0, statistics.getActiveInvalidOrdersDemand());
 
         assertEquals(0, statistics.getLargestActiveOrderQuantity());
         assertEquals(0, statistics.getSmallestActiveOrderQuantity());
 
-        t = statistics.getActiveOrderLimitBreakDownTable();
-        assertTrue(t.isEmpty());
+        assertNull(statistics.getFirstActiveOrderEntry());
+        assertNull(statistics.getLastActiveOrderEntry());
+
+        assertEquals(0, statistics.getActiveOrderLimitPrices().length);
+    }
+
+    @Test
+    public void testActiveOrderExtremesAfterExecution() {
+        LocalDateTime entryDate = LocalDateTime.now();
+        orderBook.addOrder(new Order(1, 1, entryDate, 1, 5050));
+        orderBook.addOrder(new Order(1, 2, entryDate.plusSeconds(1), 100, 5050));
+        orderBook.addOrder(new Order(1, 3, entryDate.plusSeconds(2), 50, 4850));
+
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 50, 4950));
+
+        // the smallest and first order left, the extremes come from the remaining orders
+        Statistics statistics = orderBook.generateStatistics();
+        assertEquals(2, statistics.getActiveOrders());
+        assertEquals(1, statistics.getExecutedOrders());
+        assertEquals(100, statistics.getLargestActiveOrderQuantity());
+        assertEquals(50, statistics.getSmallestActiveOrderQuantity());
+        assertEquals(entryDate.plusSeconds(1), statistics.getFirstActiveOrderEntry());
+        assertEquals(entryDate.plusSeconds(2), statistics.getLastActiveOrderEntry());
+    }
+
+    @Test
+    public void testParallelExecution() {
+        Random random = new Random(42);
+        OrderBookImpl parallelBook = new OrderBookImpl(1);
+        parallelBook.setParallelThreshold(0);
+
+        LocalDateTime entryDate = LocalDateTime.now();
+        for (int i = 1; i <= 100_000; i++) {
+            int quantity = 1 + random.nextInt(100);
+            long limitPrice = random.nextInt(10) == 0 ? Order.MARKET_PRICE : 4900 + random.nextInt(200);
+
+            orderBook.addOrder(new Order(1, i, entryDate, quantity, limitPrice));
+            parallelBook.addOrder(new Order(1, i, entryDate, quantity, limitPrice));
+        }
+        orderBook.close();
+        parallelBook.close();
+
+        while (!orderBook.isExecuted()) {
+            Execution execution = new Execution(1, 1 + random.nextInt(200_000), 4950 + random.nextInt(100));
+            orderBook.addExecution(execution);
+            parallelBook.addExecution(execution);
+
+            assertEquals(orderBook.generateStatistics().toString(), parallelBook.generateStatistics().toString());
+        }
+        assertTrue(parallelBook.isExecuted());
+
+        assertArrayEquals(orderBook.snapshot().getExecutedQuantities(), parallelBook.snapshot().getExecutedQuantities());
+        assertArrayEquals(orderBook.snapshot().getPartialQuantities(), parallelBook.snapshot().getPartialQuantities());
+        assertArrayEquals(orderBook.snapshot().getPartialPrices(), parallelBook.snapshot().getPartialPrices());
+    }
+
+    @Test
+    public void testGetOrderById() {
+        for (long orderId = 10; orderId <= 1000; orderId += 10) {
+            orderBook.addOrder(new Order(1, orderId, LocalDateTime.now(), 10, 4900 + orderId % 100));
+        }
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 500, 4950));
+
+        Order order = orderBook.getOrder(550); // valid at 4950
+        assertEquals(550, order.getOrderId());
+        assertEquals(10, order.getExecutedQuantity());
+        assertEquals(0, orderBook.getOrder(500).getExecutedQuantity()); // invalid at 4950
+        assertNotSame(order, orderBook.getOrder(550)); // detached copies
+        assertNull(orderBook.getOrder(505));
+        assertNull(orderBook.getOrder(1010));
+    }
+
+    @Test
+    public void testPreviewExecution() {
+        Random random = new Random(7);
+        for (long orderId = 1; orderId <= 500; orderId++) {
+            long limitPrice = random.nextInt(10) == 0 ? Order.MARKET_PRICE : 4900 + random.nextInt(200);
+            orderBook.addOrder(new Order(1, orderId, LocalDateTime.now(), 1 + random.nextInt(100), limitPrice));
+        }
+        orderBook.close();
+
+        while (!orderBook.isExecuted()) {
+            Execution execution = new Execution(1, 1 + random.nextInt(3000), 4950 + random.nextInt(100));
+            String statistics = orderBook.generateStatistics().toString();
+
+            ExecutionPreview preview = orderBook.previewExecution(execution);
+            assertEquals(statistics, orderBook.generateStatistics().toString()); // book unchanged
+            if (preview.getFillCount() == 0) {
+                assertTrue(preview.isExecuted()); // no valid demand left
+                break;
+            }
+            long[] executedBefore = new long[preview.getFillCount()];
+            for (int i = 0; i < preview.getFillCount(); i++) {
+                executedBefore[i] = orderBook.getOrder(preview.getOrderId(i)).getExecutedQuantity();
+            }
+
+            orderBook.addExecution(execution);
+            for (int i = 0; i < preview.getFillCount(); i++) {
+                assertEquals(executedBefore[i] + preview.getFillQuantity(i), orderBook.getOrder(preview.getOrderId(i)).getExecutedQuantity());
+            }
+            assertEquals(preview.isExecuted(), orderBook.isExecuted());
+        }
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("cannot add execution to already executed book 1");
+        orderBook.previewExecution(new Execution(1, 10, 5000));
+    }
+
+    @Test
+    public void testPreviewExecutionOpenBook() {
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 10, 5000));
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("cannot add execution to open book 1");
+        orderBook.previewExecution(new Execution(1, 10, 5000));
+    }
+
+    @Test
+    public void testDemandCurve() {
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, Order.MARKET_PRICE));
+        orderBook.addOrder(new Order(1, 4, LocalDateTime.now(), 5, 4950));
+
+        Statistics s = orderBook.generateStatistics(); // while the book is open
+        assertArrayEquals(new long[]{50, 35}, s.getActiveOrderValidDemands());
+        assertEquals(20, s.getActiveMarketOrdersDemand());
+        for (long price : new long[]{4800, 4850, 4900, 4950, 5000}) {
+            assertEquals(orderBook.getActiveValidOrdersDemand(price), s.getValidDemand(price));
+        }
+
+        assertEquals(4950, s.getIndicativePrice(20)); // market orders alone take it
+        assertEquals(4950, s.getIndicativePrice(35));
+        assertEquals(4850, s.getIndicativePrice(36));
+        assertEquals(4850, s.getIndicativePrice(50));
+        assertEquals(0, s.getIndicativePrice(51));
+
+        orderBook.close();
+        orderBook.addExecution(new Execution(1, 30, 4950));
+
+        s = orderBook.generateStatistics();
+        assertArrayEquals(new long[]{20, 5}, s.getActiveOrderValidDemands());
+        assertEquals(4850, s.getIndicativePrice(6));
+    }
+
+    @Test
+    public void testIndicativePriceMarketOrdersOnly() {
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 20, Order.MARKET_PRICE));
+
+        Statistics s = orderBook.generateStatistics();
+        assertEquals(Order.MARKET_PRICE, s.getIndicativePrice(20)); // clears at any price
+        assertEquals(0, s.getIndicativePrice(21));
+        assertEquals(0, new OrderBookImpl(2).generateStatistics().getIndicativePrice(1));
     }
 }
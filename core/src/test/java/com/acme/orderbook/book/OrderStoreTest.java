@@ -0,0 +1,61 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OrderStoreTest {
+
+    @Test
+    public void testFindOrderIdsOutOfOrder() {
+        OrderStore orderStore = new OrderStore(1, 4, null);
+        long[] orderIds = {10, 20, 30, 15, 5, 1000, 25};
+        for (long orderId : orderIds) {
+            orderStore.add(new Order(1, orderId, LocalDateTime.now(), (int) orderId, 5000));
+        }
+
+        for (long orderId : orderIds) {
+            assertEquals((int) orderId, orderStore.find(orderId).getQuantity());
+        }
+        assertNull(orderStore.find(11));
+        assertNull(orderStore.find(2000));
+    }
+
+    @Test
+    public void testReadFailsOnConsistentState() {
+        OrderStore orderStore = new OrderStore(1);
+        try {
+            orderStore.read(() -> {
+                throw new IllegalStateException("reader failed");
+            });
+            fail("a reader failing on a consistent state must not be retried");
+        } catch (IllegalStateException e) {
+            assertEquals("reader failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLongFillHistory() {
+        OrderStore orderStore = new OrderStore(1);
+        int slot = orderStore.add(new Order(1, 1, LocalDateTime.now(), 10_000, 5000));
+
+        for (int i = 0; i < 3000; i++) {
+            orderStore.addExecution(4900 + i % 100);
+            if (i % 3 != 0) {
+                orderStore.addExecutedQuantity(slot, 2); // skipped by every third execution
+            }
+        }
+        List<OrderPartialExecution> partialExecutions = orderStore.getPartialExecutions(slot);
+        assertEquals(3000, partialExecutions.size());
+        assertEquals(4000, orderStore.getExecutedQuantity(slot));
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(i % 3 != 0 ? 2 : 0, partialExecutions.get(i).getQuantity());
+            assertEquals(4900 + i % 100, partialExecutions.get(i).getPrice());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.acme.orderbook.book;
+
+import com.acme.orderbook.model.Order;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.*;
+
+public class PriceLadderTest {
+
+    private OrderStore orderStore;
+    private PriceLadder priceLadder;
+
+    @Before
+    public void setup() {
+        orderStore = new OrderStore(1);
+        priceLadder = new PriceLadder(orderStore);
+    }
+
+    @Test
+    public void testValidInvalidSplit() {
+        add(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        add(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        add(new Order(1, 3, LocalDateTime.now(), 20, 5050));
+        add(new Order(1, 4, LocalDateTime.now(), 5, 4950));
+        add(new Order(1, 5, LocalDateTime.now(), 7, Order.MARKET_PRICE));
+
+        assertEquals(3, priceLadder.getLimitLevelCount());
+        assertEquals(5, priceLadder.getOrderCount());
+
+        assertEquals(4, priceLadder.getValidOrderCount(4950));
+        assertEquals(1, priceLadder.getInvalidOrderCount(4950));
+        assertEquals(42, priceLadder.getValidDemand(4950));
+        assertEquals(15, priceLadder.getInvalidDemand(4950));
+
+        // market orders are valid at any price
+        assertEquals(1, priceLadder.getValidOrderCount(6000));
+        assertEquals(7, priceLadder.getValidDemand(6000));
+        assertEquals(57, priceLadder.getValidDemand(1000));
+
+        // valid orders come in time priority regardless of their level
+        SlotList validSlots = new SlotList();
+        priceLadder.getValidOrders(4950, validSlots);
+        assertEquals(4, validSlots.size());
+        assertEquals(2, orderStore.getOrderId(validSlots.get(0)));
+        assertEquals(3, orderStore.getOrderId(validSlots.get(1)));
+        assertEquals(4, orderStore.getOrderId(validSlots.get(2)));
+        assertEquals(5, orderStore.getOrderId(validSlots.get(3)));
+
+        SlotList invalidSlots = new SlotList();
+        priceLadder.getInvalidOrders(4950, invalidSlots);
+        assertEquals(1, invalidSlots.size());
+        assertEquals(1, orderStore.getOrderId(invalidSlots.get(0)));
+    }
+
+    @Test
+    public void testRemoveExecutedOrders() {
+        Order order1 = new Order(1, 1, LocalDateTime.now(), 15, 4850);
+        Order order2 = new Order(1, 2, LocalDateTime.now(), 10, 4950);
+        Order order3 = new Order(1, 3, LocalDateTime.now(), 20, 5050);
+
+        add(order1);
+        int slot2 = add(order2);
+        int slot3 = add(order3);
+
+        orderStore.addExecution(4950);
+        orderStore.addPartialExecution(slot2, 10, 4950);
+        priceLadder.reduceDemand(slot2, 10);
+        orderStore.addPartialExecution(slot3, 4, 4950);
+        priceLadder.reduceDemand(slot3, 4);
+
+        assertEquals(16, priceLadder.getValidDemand(4950));
+
+        SlotList removedSlots = new SlotList();
+        priceLadder.removeExecutedOrders(4950, removedSlots);
+
+        assertEquals(1, removedSlots.size());
+        assertEquals(slot2, removedSlots.get(0));
+        assertEquals(OrderStore.EXECUTED, orderStore.getState(slot2));
+
+        assertEquals(2, priceLadder.getLimitLevelCount());
+        assertEquals(1, priceLadder.getValidOrderCount(4950));
+        assertEquals(16, priceLadder.getValidDemand(4950));
+        assertEquals(31, priceLadder.getValidDemand(4850));
+
+        priceLadder.clear();
+        assertEquals(0, priceLadder.getLimitLevelCount());
+        assertEquals(0, priceLadder.getValidDemand(0));
+    }
+
+    @Test
+    public void testManyLevels() {
+        // more levels than the initial capacity, added in descending order to shift the levels on every insert
+        for (int i = 0; i < 100; i++) {
+            add(new Order(1, i + 1, LocalDateTime.now(), 10, 5000 - i));
+        }
+        assertEquals(100, priceLadder.getLimitLevelCount());
+        assertEquals(510, priceLadder.getValidDemand(4950));
+        assertEquals(49, priceLadder.getInvalidOrderCount(4950));
+
+        for (int i = 0; i < 100; i++) {
+            priceLadder.reduceDemand(i, 1);
+            assertEquals(510 - Math.min(i + 1, 51), priceLadder.getValidDemand(4950));
+        }
+    }
+
+    private int add(Order order) {
+        int slot = orderStore.add(order);
+        priceLadder.add(slot);
+        return slot;
+    }
+}
@@ -0,0 +1,83 @@
+package com.acme.orderbook.book;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ProRataAllocatorTest {
+
+    private static final int[] DEMANDS = {5, 13, 17, 9, 15, 2, 23, 11, 4, 34};
+
+    private ProRataAllocator allocator;
+
+    @Before
+    public void setup() {
+        allocator = new ProRataAllocator(4);
+    }
+
+    @Test
+    public void testAllocate() {
+        // case 1 - partially executed
+        assertArrayEquals(new int[]{2, 5, 7, 4, 6, 1, 9, 4, 2, 8}, allocate(48)); // calculated in excel
+
+        // case 2 - all orders fully executed
+        assertArrayEquals(DEMANDS, allocate(150));
+
+        // case 3 - partially executed, some zero executions
+        assertArrayEquals(new int[]{1, 2, 2, 1, 2, 1, 3, 0, 0, 0}, allocate(12)); // calculated in excel
+    }
+
+    @Test
+    public void testReuseBuffers() {
+        allocate(48);
+        int[] allocations = allocator.allocate(DEMANDS.length, 48);
+        assertSame(allocations, allocator.allocate(DEMANDS.length, 12));
+
+        // a smaller allocation only uses the head of the buffers
+        int[] demands = allocator.demands(2);
+        demands[0] = 3;
+        demands[1] = 1;
+        allocations = allocator.allocate(2, 2);
+
+        assertEquals(2, allocations[0]);
+        assertEquals(0, allocations[1]);
+    }
+
+    @Test
+    public void testAllocateParallel() {
+        Random random = new Random(42);
+        int count = 10_000;
+        int[] demands = new int[count];
+        for (int i = 0; i < count; i++) {
+            demands[i] = 1 + random.nextInt(100);
+        }
+
+        for (int quantity : new int[]{1, 48, 4_999, 250_000, 504_213, 1_000_000}) {
+            int[] expected = new int[count];
+            ProRataAllocator.allocate(demands, expected, count, quantity);
+
+            for (int chunkSize : new int[]{1, 7, 1000, count}) {
+                System.arraycopy(demands, 0, allocator.demands(count), 0, count);
+                int[] allocations = allocator.allocateParallel(count, quantity, chunkSize);
+
+                for (int i = 0; i < count; i++) {
+                    assertEquals(expected[i], allocations[i]);
+                }
+            }
+        }
+    }
+
+    private int[] allocate(int quantity) {
+        int[] demands = allocator.demands(DEMANDS.length);
+        System.arraycopy(DEMANDS, 0, demands, 0, DEMANDS.length);
+
+        int[] allocations = allocator.allocate(DEMANDS.length, quantity);
+        int[] result = new int[DEMANDS.length];
+        System.arraycopy(allocations, 0, result, 0, DEMANDS.length);
+
+        return result;
+    }
+}
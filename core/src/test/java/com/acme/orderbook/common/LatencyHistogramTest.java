@@ -0,0 +1,64 @@
+package com.acme.orderbook.common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setup() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 1000, 123_456, 1_000_000_000L, 68_000_000_000L}) {
+            int i = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestValue(i);
+
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 32);
+            if (i > 0) {
+                assertTrue(LatencyHistogram.highestValue(i - 1) < value);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1000L);
+        }
+
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(1000, s.getCount());
+        assertEquals(500_500, s.getMeanNanos());
+        assertEquals(500_000, s.getP50Nanos(), 500_000 / 32);
+        assertEquals(990_000, s.getP99Nanos(), 990_000 / 32);
+        assertEquals(999_000, s.getP999Nanos(), 999_000 / 32);
+        assertEquals(1_000_000, s.getMaxNanos(), 1_000_000 / 32);
+    }
+
+    @Test
+    public void testIntervalSnapshot() {
+        histogram.recordNanos(100);
+        histogram.recordNanos(200);
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        assertEquals(2, first.since(null).getCount());
+
+        histogram.recordNanos(5_000);
+        LatencyHistogram.Snapshot second = histogram.snapshot();
+        LatencyHistogram.Snapshot interval = second.since(first);
+        assertEquals(1, interval.getCount());
+        assertEquals(5_000, interval.getMeanNanos());
+        assertEquals(5_000, interval.getP50Nanos(), 5_000 / 32);
+
+        assertEquals(0, histogram.snapshot().since(second).getCount());
+        assertEquals(3, histogram.snapshot().getCount());
+    }
+}
@@ -0,0 +1,156 @@
+package com.acme.orderbook.gateway;
+
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.service.OrderBookService;
+import com.acme.orderbook.service.PerformanceMetrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+
+import static com.acme.orderbook.gateway.GatewayMessages.*;
+import static org.junit.Assert.*;
+
+public class BinaryGatewayTest {
+
+    private OrderBookService orderBookService;
+    private BinaryGateway gateway;
+    private SocketChannel client;
+
+    @Before
+    public void setup() throws IOException {
+        orderBookService = new OrderBookService(new PerformanceMetrics(), "1,2", 0.01);
+        gateway = new BinaryGateway(orderBookService, true, 0);
+        gateway.start();
+
+        client = SocketChannel.open(new InetSocketAddress("localhost", gateway.getPort()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        gateway.stop();
+    }
+
+    @Test
+    public void testOrderEntry() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocate(6 * MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        putRequest(requests, NEW_ORDER, 11, 1, 10, 4950);
+        putRequest(requests, NEW_ORDER, 12, 1, 5, Order.MARKET_PRICE);
+        putRequest(requests, NEW_ORDER, 13, 1, 0, 4950); // invalid quantity
+        putRequest(requests, CLOSE, 14, 1, 0, 0);
+        putRequest(requests, EXECUTION, 15, 1, 6, 4950);
+        putRequest(requests, (byte) 42, 16, 1, 0, 0);
+        send(requests);
+
+        ByteBuffer responses = receive(6);
+        assertResponse(responses, 0, ACK, NEW_ORDER, 11);
+        long firstOrderId = getOrderId(responses, 0);
+        assertResponse(responses, 1, ACK, NEW_ORDER, 12);
+        long secondOrderId = getOrderId(responses, MESSAGE_SIZE);
+        assertTrue(secondOrderId > firstOrderId);
+        assertResponse(responses, 2, REJECT, NEW_ORDER, 13);
+        assertEquals(REJECTED, getRejectReason(responses, 2 * MESSAGE_SIZE));
+        assertResponse(responses, 3, ACK, CLOSE, 14);
+        assertResponse(responses, 4, ACK, EXECUTION, 15);
+        assertResponse(responses, 5, REJECT, (byte) 42, 16);
+        assertEquals(UNKNOWN_MESSAGE, getRejectReason(responses, 5 * MESSAGE_SIZE));
+
+        assertFalse(orderBookService.isOpen(1));
+        assertEquals(6, orderBookService.getOrder(firstOrderId).getExecutedQuantity() + orderBookService.getOrder(secondOrderId).getExecutedQuantity());
+    }
+
+    @Test
+    public void testManyRequests() throws Exception {
+        // more requests than fit into the gateway's buffers
+        int count = 10_000;
+        ByteBuffer requests = ByteBuffer.allocate(count * MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            putRequest(requests, NEW_ORDER, i, 2, 1, 100 + i % 10);
+        }
+        // the gateway stops reading while its responses are not taken, so send and receive concurrently
+        Thread sender = new Thread(() -> {
+            try {
+                send(requests);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        sender.start();
+
+        ByteBuffer responses = receive(count);
+        sender.join();
+        long previousOrderId = 0;
+        for (int i = 0; i < count; i++) {
+            assertResponse(responses, i, ACK, NEW_ORDER, i);
+            long orderId = getOrderId(responses, i * MESSAGE_SIZE);
+            assertTrue(orderId > previousOrderId); // ascending within the book
+            previousOrderId = orderId;
+        }
+        assertEquals(count, orderBookService.generateStatistics(2).getActiveOrders());
+    }
+
+    @Test
+    public void testUnexpectedFailure() throws IOException {
+        OrderBookService failingService = new OrderBookService(new PerformanceMetrics(), "1", 0.01) {
+            @Override
+            public CompletableFuture<Void> closeAsync(long instrumentId) {
+                throw new IllegalArgumentException("unexpected");
+            }
+        };
+        BinaryGateway failingGateway = new BinaryGateway(failingService, true, 0);
+        failingGateway.start();
+
+        try (SocketChannel failingClient = SocketChannel.open(new InetSocketAddress("localhost", failingGateway.getPort()))) {
+            ByteBuffer requests = ByteBuffer.allocate(2 * MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            putRequest(requests, CLOSE, 21, 1, 0, 0);
+            putRequest(requests, NEW_ORDER, 22, 1, 10, 4950);
+            requests.flip();
+            while (requests.hasRemaining()) {
+                failingClient.write(requests);
+            }
+
+            // the failed request is rejected, the connection keeps serving
+            ByteBuffer responses = ByteBuffer.allocate(2 * MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (responses.hasRemaining()) {
+                assertTrue(failingClient.read(responses) >= 0);
+            }
+            assertResponse(responses, 0, REJECT, CLOSE, 21);
+            assertEquals(REJECTED, getRejectReason(responses, 0));
+            assertResponse(responses, 1, ACK, NEW_ORDER, 22);
+        } finally {
+            failingGateway.stop();
+        }
+    }
+
+    private void send(ByteBuffer requests) throws IOException {
+        requests.flip();
+        while (requests.hasRemaining()) {
+            client.write(requests);
+        }
+    }
+
+    private ByteBuffer receive(int count) throws IOException {
+        ByteBuffer responses = ByteBuffer.allocate(count * MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (responses.hasRemaining()) {
+            if (client.read(responses) < 0) {
+                fail("gateway closed the connection");
+            }
+        }
+        return responses;
+    }
+
+    private void assertResponse(ByteBuffer responses, int i, byte type, byte requestType, long requestId) {
+        int p = i * MESSAGE_SIZE;
+        assertEquals(type, getType(responses, p));
+        assertEquals(requestType, getRequestType(responses, p));
+        assertEquals(requestId, getResponseRequestId(responses, p));
+    }
+}
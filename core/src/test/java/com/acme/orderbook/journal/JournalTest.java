@@ -0,0 +1,211 @@
+package com.acme.orderbook.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        Path dir = folder.newFolder().toPath();
+
+        // 4 records per segment, so the journal rolls over twice
+        Journal journal = new Journal(dir, Journal.SyncPolicy.INTERVAL, 1, 4 * Journal.RECORD_SIZE, null);
+        assertEquals(1, journal.addOrder(1, 1, 1000, 10, 4950));
+        assertEquals(2, journal.addOrder(2, 2, 2000, 20, Long.MAX_VALUE));
+        assertEquals(3, journal.close(1));
+        assertEquals(4, journal.addExecution(1, 5, 4950));
+        for (int i = 0; i < 5; i++) {
+            journal.addOrder(2, 3 + i, 3000, 1, 5000);
+        }
+        assertEquals(10, journal.open(1));
+        journal.shutdown();
+
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(10, Journal.replay(dir, handler));
+        assertEquals(10, handler.records.size());
+        assertEquals("order 1 1 1000 10 4950", handler.records.get(0));
+        assertEquals("order 2 2 2000 20 " + Long.MAX_VALUE, handler.records.get(1));
+        assertEquals("close 1", handler.records.get(2));
+        assertEquals("execution 1 5 4950", handler.records.get(3));
+        assertEquals("open 1", handler.records.get(9));
+
+        // reopened journal replays and continues the sequence
+        RecordingHandler reopenHandler = new RecordingHandler();
+        journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 4 * Journal.RECORD_SIZE, reopenHandler);
+        assertEquals(10, reopenHandler.records.size());
+        assertEquals(11, journal.close(2));
+        assertEquals(12, journal.createInstrument(3, 0.05, false));
+        assertEquals(13, journal.retireInstrument(3));
+        assertEquals(14, journal.createInstrument(4, 0.01, true));
+        journal.shutdown();
+
+        handler = new RecordingHandler();
+        assertEquals(14, Journal.replay(dir, handler));
+        assertEquals("close 2", handler.records.get(10));
+        assertEquals("create 3 0.05 false", handler.records.get(11));
+        assertEquals("retire 3", handler.records.get(12));
+        assertEquals("create 4 0.01 true", handler.records.get(13));
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        Path dir = folder.newFolder().toPath();
+
+        // segments start at sequences 1, 5 and 9
+        Journal journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 4 * Journal.RECORD_SIZE, null);
+        for (int i = 0; i < 10; i++) {
+            journal.addOrder(1, 1 + i, 1000, 1, 4950);
+        }
+
+        journal.truncate(6); // the second segment still holds 7 and 8
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(10, Journal.replay(dir, handler));
+        assertEquals(6, handler.records.size());
+
+        journal.truncate(10); // the segment appended to stays
+        journal.shutdown();
+        handler = new RecordingHandler();
+        assertEquals(10, Journal.replay(dir, handler));
+        assertEquals(2, handler.records.size());
+        assertEquals("order 1 9 1000 1 4950", handler.records.get(0));
+
+        journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 4 * Journal.RECORD_SIZE, null);
+        assertEquals(11, journal.open(1));
+        journal.shutdown();
+    }
+
+    @Test
+    public void testRecordsWithinPages() throws Exception {
+        Path dir = folder.newFolder().toPath();
+
+        Journal journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 2 * 4096, null);
+        for (int i = 0; i < 200; i++) { // 85 records per page, so the second segment holds the last 30
+            journal.addOrder(1, 1 + i, 1000, 1, 4950);
+        }
+        journal.shutdown();
+
+        ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(dir.resolve(String.format("journal-%020d.dat", 1)))).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(85, segment.getLong(84 * Journal.RECORD_SIZE));
+        assertEquals(0, segment.getLong(85 * Journal.RECORD_SIZE)); // rest of the first page
+        assertEquals(86, segment.getLong(4096));
+        assertTrue(Files.exists(dir.resolve(String.format("journal-%020d.dat", 171))));
+
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(200, Journal.replay(dir, handler));
+        assertEquals("order 1 200 1000 1 4950", handler.records.get(199));
+    }
+
+    @Test
+    public void testReopenAfterCrash() throws Exception {
+        Path dir = folder.newFolder().toPath();
+
+        Journal journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 4 * Journal.RECORD_SIZE, null);
+        for (int i = 0; i < 4; i++) {
+            journal.addOrder(1, 1 + i, 1000, 1, 4950);
+        }
+        journal.shutdown();
+        // created for the next record but never written to, and a stale one after it
+        Files.write(dir.resolve(String.format("journal-%020d.dat", 5)), new byte[4 * Journal.RECORD_SIZE]);
+        ByteBuffer stale = ByteBuffer.allocate(Journal.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        stale.putLong(0, 9);
+        stale.putInt(44, 1);
+        Files.write(dir.resolve(String.format("journal-%020d.dat", 9)), stale.array());
+
+        journal = new Journal(dir, Journal.SyncPolicy.NONE, 0, 4 * Journal.RECORD_SIZE, null);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(5 + i, journal.addOrder(1, 5 + i, 1000, 1, 4950));
+        }
+        assertEquals(9, journal.close(1));
+        journal.shutdown();
+
+        assertTrue(Files.exists(dir.resolve(String.format("journal-%020d.dat.discarded", 9))));
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(9, Journal.replay(dir, handler));
+        assertEquals("close 1", handler.records.get(8));
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        Path dir = folder.newFolder().toPath();
+
+        // every writer appends its own orders, the claims cross many small segments
+        Journal journal = new Journal(dir, Journal.SyncPolicy.INTERVAL, 1, 100 * Journal.RECORD_SIZE, null);
+        int writers = 4;
+        int ordersPerWriter = 10000;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long instrumentId = w + 1;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < ordersPerWriter; i++) {
+                    journal.addOrder(instrumentId, i + 1, 1000, 1, 4950);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(writers * ordersPerWriter, journal.getSequence());
+        journal.shutdown();
+
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(writers * ordersPerWriter, Journal.replay(dir, handler));
+        for (int w = 0; w < writers; w++) {
+            String prefix = "order " + (w + 1) + " ";
+            List<String> writerRecords = new ArrayList<>();
+            handler.records.stream().filter(r -> r.startsWith(prefix)).forEach(writerRecords::add);
+            assertEquals(ordersPerWriter, writerRecords.size());
+            for (int i = 0; i < ordersPerWriter; i++) {
+                assertEquals(prefix + (i + 1) + " 1000 1 4950", writerRecords.get(i)); // in the writer's order
+            }
+        }
+    }
+
+    private static class RecordingHandler implements JournalHandler {
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void createInstrument(long sequence, long instrumentId, double tickSize, boolean offHeap) {
+            records.add("create " + instrumentId + " " + tickSize + " " + offHeap);
+        }
+
+        @Override
+        public void retireInstrument(long sequence, long instrumentId) {
+            records.add("retire " + instrumentId);
+        }
+
+        @Override
+        public void open(long sequence, long instrumentId) {
+            records.add("open " + instrumentId);
+        }
+
+        @Override
+        public void close(long sequence, long instrumentId) {
+            records.add("close " + instrumentId);
+        }
+
+        @Override
+        public void addOrder(long sequence, long instrumentId, long orderId, long entryTime, int quantity, long limitPrice) {
+            records.add("order " + instrumentId + " " + orderId + " " + entryTime + " " + quantity + " " + limitPrice);
+        }
+
+        @Override
+        public void addExecution(long sequence, long instrumentId, int quantity, long price) {
+            records.add("execution " + instrumentId + " " + quantity + " " + price);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.acme.orderbook.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.*;
+
+public class InstrumentTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void testTickConversion() {
+        Instrument instrument = new Instrument(1, 0.01);
+
+        assertEquals(4950, instrument.toTicks(49.5));
+        assertEquals(4951, instrument.toTicks(49.51));
+        assertEquals(49.5, instrument.toPrice(4950), 0d);
+        assertEquals(0.07, instrument.toPrice(7), 0d);
+
+        instrument = new Instrument(2, 0.05);
+        assertEquals(991, instrument.toTicks(49.55));
+        assertEquals(49.55, instrument.toPrice(991), 0d);
+
+        // double noise rounds to the nearest tick
+        instrument = new Instrument(3, 0.1);
+        assertEquals(3, instrument.toTicks(0.1 + 0.2));
+        assertEquals(-3, instrument.toTicks(-(0.1 + 0.2)));
+        assertEquals(10000000001L, instrument.toTicks(1000000000.1));
+    }
+
+    @Test
+    public void testPriceOutOfRange() {
+        Instrument instrument = new Instrument(1, 0.01);
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("is out of range");
+        instrument.toTicks(Double.NaN);
+    }
+
+    @Test
+    public void testPriceOffTickGrid() {
+        Instrument instrument = new Instrument(1, 0.05);
+
+        exceptionRule.expect(IllegalStateException.class);
+        exceptionRule.expectMessage("is not a multiple of tick size");
+        instrument.toTicks(49.51);
+    }
+}
@@ -0,0 +1,52 @@
+package com.acme.orderbook.model;
+
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.service.OrderBookService;
+import com.acme.orderbook.service.PerformanceMetrics;
+import com.acme.orderbook.store.TieredOrderStore;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class MarketStatisticsTest {
+
+    @Test
+    public void testGenerateMarketStatistics() {
+        for (int sequencerWorkers : new int[]{0, 2}) {
+            OrderBookService orderBookService = new OrderBookService(new PerformanceMetrics(), new TieredOrderStore(), "1,2,3", "", 0.01,
+                    Integer.MAX_VALUE, 64, sequencerWorkers, 1024, 4, 1024, "", Journal.SyncPolicy.NONE, 0, "");
+
+            orderBookService.addOrder(1, 15, 4850);
+            orderBookService.addOrder(1, 10, 4950);
+            orderBookService.addOrder(2, 20, 5050);
+            orderBookService.addOrder(3, 5, 5000);
+            orderBookService.close(1);
+            orderBookService.addExecution(1, 10, 4950);
+
+            MarketStatistics all = orderBookService.generateMarketStatistics(null);
+            assertEquals(3, all.getInstrumentCount());
+            assertEquals(2, all.getActiveOrders());
+            assertEquals(1, all.getExecutedOrders());
+            assertEquals(1, all.getCanceledOrders()); // book 1 executed, its invalid order canceled
+            assertEquals(20, all.getLargestActiveOrderQuantity());
+            assertEquals(5, all.getSmallestActiveOrderQuantity());
+
+            long activeOrders = 0;
+            for (Statistics s : all.getInstruments()) {
+                activeOrders += s.getActiveOrders();
+            }
+            assertEquals(activeOrders, all.getActiveOrders());
+            assertEquals(orderBookService.getVersion(1), all.getVersion(0));
+
+            MarketStatistics filtered = orderBookService.generateMarketStatistics(Arrays.asList(3L, 2L));
+            assertEquals(2, filtered.getInstrumentCount());
+            assertEquals(2, filtered.getInstruments().get(0).getInstrumentId());
+            assertEquals(2, filtered.getActiveOrders());
+            assertEquals(5, filtered.getSmallestActiveOrderQuantity());
+
+            orderBookService.shutdown();
+        }
+    }
+}
@@ -24,8 +24,8 @@ public class OrderTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
 
-        limitOrder = new Order(1, 1, LocalDateTime.now(), 90, 49.5);
-        marketOrder = new Order(1, 2, LocalDateTime.now(), 50, null);
+        limitOrder = new Order(1, 1, LocalDateTime.now(), 90, 4950);
+        marketOrder = new Order(1, 2, LocalDateTime.now(), 50, Order.MARKET_PRICE);
     }
 
     @Test
@@ -33,34 +33,34 @@ public class OrderTest {
         assertTrue(limitOrder.isLimitOrder());
         assertFalse(limitOrder.isExecuted());
 
-        assertTrue(limitOrder.isValid(49.4));
-        assertTrue(limitOrder.isValid(49.5));
-        assertFalse(limitOrder.isValid(49.6));
+        assertTrue(limitOrder.isValid(4940));
+        assertTrue(limitOrder.isValid(4950));
+        assertFalse(limitOrder.isValid(4960));
 
         assertEquals(90, limitOrder.getUnexecutedQuantity());
 
-        limitOrder.addPartialExecution(15, 48.3);
+        limitOrder.addPartialExecution(15, 4830);
         assertEquals(75, limitOrder.getUnexecutedQuantity());
         assertFalse(limitOrder.isExecuted());
         assertEquals(1, limitOrder.getPartialExecutions().size());
 
-        limitOrder.addPartialExecution(30, 47.9);
+        limitOrder.addPartialExecution(30, 4790);
         assertEquals(45, limitOrder.getUnexecutedQuantity());
         assertFalse(limitOrder.isExecuted());
         assertEquals(2, limitOrder.getPartialExecutions().size());
 
-        limitOrder.addPartialExecution(45, 47.8);
+        limitOrder.addPartialExecution(45, 4780);
         assertEquals(0, limitOrder.getUnexecutedQuantity());
         assertTrue(limitOrder.isExecuted());
         assertEquals(3, limitOrder.getPartialExecutions().size());
 
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("order already executed");
-        limitOrder.addPartialExecution(20, 47.7);
+        limitOrder.addPartialExecution(20, 4770);
 
         assertEquals(0, limitOrder.getUnexecutedQuantity());
         assertTrue(limitOrder.isExecuted());
-        assertEquals(47.9, limitOrder.getPartialExecutions().get(1).getPrice(), 0.001);
+        assertEquals(4790, limitOrder.getPartialExecutions().get(1).getPrice());
         assertEquals(45, limitOrder.getPartialExecutions().get(2).getQuantity());
     }
 
@@ -68,14 +68,14 @@ public class OrderTest {
     public void testAddPartialExecutionLimitOrder_wrongQuantity() {
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("invalid partial quantity");
-        limitOrder.addPartialExecution(100, 48.3);
+        limitOrder.addPartialExecution(100, 4830);
     }
 
     @Test
     public void testAddPartialExecutionLimitOrder_wrongPrice() {
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("invalid partial price");
-        limitOrder.addPartialExecution(10, 55.3);
+        limitOrder.addPartialExecution(10, 5530);
     }
 
     @Test
@@ -83,24 +83,24 @@ public class OrderTest {
         assertFalse(marketOrder.isLimitOrder());
         assertFalse(marketOrder.isExecuted());
 
-        assertTrue(marketOrder.isValid(13.4));
-        assertTrue(marketOrder.isValid(49.5));
-        assertTrue(marketOrder.isValid(72.6));
+        assertTrue(marketOrder.isValid(1340));
+        assertTrue(marketOrder.isValid(4950));
+        assertTrue(marketOrder.isValid(7260));
 
         assertEquals(50, marketOrder.getUnexecutedQuantity());
 
-        marketOrder.addPartialExecution(10, 48.3);
+        marketOrder.addPartialExecution(10, 4830);
         assertEquals(40, marketOrder.getUnexecutedQuantity());
         assertFalse(marketOrder.isExecuted());
         assertEquals(1, marketOrder.getPartialExecutions().size());
 
-        marketOrder.addPartialExecution(5, 49.5);
+        marketOrder.addPartialExecution(5, 4950);
         assertEquals(35, marketOrder.getUnexecutedQuantity());
         assertFalse(marketOrder.isExecuted());
         assertEquals(2, marketOrder.getPartialExecutions().size());
 
         // a market order will work with any price
-        marketOrder.addPartialExecution(35, 72.6);
+        marketOrder.addPartialExecution(35, 7260);
         assertEquals(0, marketOrder.getUnexecutedQuantity());
         assertTrue(marketOrder.isExecuted());
         assertEquals(3, marketOrder.getPartialExecutions().size());
@@ -108,11 +108,11 @@ public class OrderTest {
         // cannot add a partial execution to an already executed order
         exceptionRule.expect(IllegalStateException.class);
         exceptionRule.expectMessage("order already executed");
-        marketOrder.addPartialExecution(20, 47.7);
+        marketOrder.addPartialExecution(20, 4770);
 
         assertEquals(0, marketOrder.getUnexecutedQuantity());
         assertTrue(marketOrder.isExecuted());
-        assertEquals(49.5, marketOrder.getPartialExecutions().get(1).getPrice(), 0.001);
+        assertEquals(4950, marketOrder.getPartialExecutions().get(1).getPrice());
         assertEquals(35, marketOrder.getPartialExecutions().get(2).getQuantity());
     }
 }
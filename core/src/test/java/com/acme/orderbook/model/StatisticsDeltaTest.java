@@ -0,0 +1,91 @@
+package com.acme.orderbook.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class StatisticsDeltaTest {
+
+    @Test
+    public void testBetween() {
+        Statistics s1 = statistics(3, new long[]{4850, 4950, 5050}, new int[]{15, 10, 20});
+
+        StatisticsDelta snapshot = StatisticsDelta.between(null, s1);
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(13, snapshot.getCounters().size());
+        assertEquals(3, snapshot.getCounters().get("activeOrders"));
+        assertEquals(3, snapshot.getLimitDemands().size());
+
+        Statistics s2 = statistics(3, new long[]{4850, 4950, 5000}, new int[]{15, 6, 5});
+        StatisticsDelta delta = StatisticsDelta.between(s1, s2);
+
+        assertFalse(delta.isSnapshot());
+        assertTrue(delta.getCounters().isEmpty());
+        assertEquals(3, delta.getLimitDemands().size());
+        assertEquals(6, (int) delta.getLimitDemands().get(4950L));
+        assertEquals(5, (int) delta.getLimitDemands().get(5000L));
+        assertEquals(0, (int) delta.getLimitDemands().get(5050L)); // level gone
+
+        assertTrue(StatisticsDelta.between(s2, s2).isEmpty());
+    }
+
+    @Test
+    public void testMerge() {
+        Statistics s1 = statistics(3, new long[]{4850, 4950, 5050}, new int[]{15, 10, 20});
+        Statistics s2 = statistics(2, new long[]{4850, 4950}, new int[]{15, 10});
+        Statistics s3 = statistics(4, new long[]{4850, 4950, 5100}, new int[]{15, 12, 7});
+
+        StatisticsDelta merged = StatisticsDelta.between(s1, s2).merge(StatisticsDelta.between(s2, s3));
+        assertEquals(4, merged.getCounters().get("activeOrders"));
+        assertEquals(0, (int) merged.getLimitDemands().get(5050L));
+        assertEquals(12, (int) merged.getLimitDemands().get(4950L));
+        assertEquals(7, (int) merged.getLimitDemands().get(5100L));
+
+        // a snapshot merged with later changes stays a snapshot of the existing levels
+        StatisticsDelta snapshot = StatisticsDelta.between(null, s1).merge(StatisticsDelta.between(s1, s2));
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(2, snapshot.getCounters().get("activeOrders"));
+        assertEquals(2, snapshot.getLimitDemands().size());
+    }
+
+    @Test
+    public void testDemandCurveFromLevels() {
+        Statistics s1 = statistics(3, new long[]{4850, 4950, 5050}, new int[]{15, 10, 20});
+        s1.setDemandCurve(5, new long[]{50, 35, 25});
+        Statistics s2 = statistics(3, new long[]{4850, 4950}, new int[]{15, 6});
+        s2.setDemandCurve(8, new long[]{29, 14});
+
+        // the levels and the market demand a client holds after the snapshot and the delta
+        Map<Long, Integer> levels = new TreeMap<>();
+        Map<String, Object> counters = new HashMap<>();
+        for (StatisticsDelta d : new StatisticsDelta[]{StatisticsDelta.between(null, s1), StatisticsDelta.between(s1, s2)}) {
+            d.getLimitDemands().forEach((price, demand) -> {
+                if (demand == 0) {
+                    levels.remove(price);
+                } else {
+                    levels.put(price, demand);
+                }
+            });
+            counters.putAll(d.getCounters());
+        }
+
+        for (long price : new long[]{4800, 4850, 4900, 4950, 5000, 5050, 5100}) {
+            long validDemand = (Long) counters.get("activeMarketOrdersDemand");
+            for (Map.Entry<Long, Integer> level : levels.entrySet()) {
+                validDemand += level.getKey() >= price ? level.getValue() : 0;
+            }
+            assertEquals(s2.getValidDemand(price), validDemand);
+        }
+    }
+
+    private Statistics statistics(int activeOrders, long[] limitPrices, int[] limitDemands) {
+        Statistics s = new Statistics(1);
+        s.setActiveOrders(activeOrders);
+        s.setActiveOrderLimitBreakDown(limitPrices, limitDemands);
+        return s;
+    }
+}
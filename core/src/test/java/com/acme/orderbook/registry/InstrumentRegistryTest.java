@@ -0,0 +1,134 @@
+package com.acme.orderbook.registry;
+
+import com.acme.orderbook.book.OrderBookImpl;
+import com.acme.orderbook.model.Instrument;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InstrumentRegistryTest {
+
+    @Test
+    public void testCreateRetire() {
+        InstrumentRegistry registry = new InstrumentRegistry(4);
+
+        InstrumentRegistry.Entry entry = registry.create(new Instrument(-1, 0.01), new OrderBookImpl(-1));
+        registry.create(new Instrument(7, 0.05), new OrderBookImpl(7));
+        assertSame(entry, registry.get(-1));
+        assertEquals(registry.shardOf(-1), entry.getShard());
+        assertEquals(2, registry.size());
+        assertNull(registry.get(8));
+
+        try {
+            registry.create(new Instrument(7, 0.01), new OrderBookImpl(7));
+            fail("duplicate instrument");
+        } catch (IllegalStateException e) {
+            assertEquals("instrument already exists 7", e.getMessage());
+        }
+
+        assertSame(entry, registry.retire(-1));
+        assertTrue(entry.isRetired());
+        assertNull(registry.get(-1));
+        assertEquals(1, registry.size());
+        assertEquals(7, registry.getInstruments().get(0).getId());
+    }
+
+    @Test
+    public void testManyInstruments() throws Exception {
+        InstrumentRegistry registry = new InstrumentRegistry(64);
+        int count = 50_000;
+
+        // readers keep looking up the first instrument while the others are created
+        registry.create(new Instrument(1, 0.01), new OrderBookImpl(1));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                if (registry.get(1) == null) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        for (long id = 2; id <= count; id++) {
+            registry.create(new Instrument(id, 0.01), new OrderBookImpl(id));
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, misses.get());
+        assertEquals(count, registry.size());
+        for (long id = 1; id <= count; id++) {
+            assertEquals(id, registry.get(id).getInstrument().getId());
+        }
+
+        for (long id = 1; id <= count; id += 2) {
+            registry.retire(id);
+        }
+        assertEquals(count / 2, registry.size());
+        assertNull(registry.get(1));
+        assertNotNull(registry.get(2));
+
+        List<Instrument> instruments = registry.getInstruments();
+        assertEquals(2, instruments.get(0).getId());
+        assertEquals(count, instruments.get(instruments.size() - 1).getId());
+    }
+
+    @Test
+    public void testOrderIds() {
+        InstrumentRegistry registry = new InstrumentRegistry(4);
+        long[] instrumentIds = {1, 2, 3, 4, 5, 6, 7, 8};
+        for (long instrumentId : instrumentIds) {
+            registry.create(new Instrument(instrumentId, 0.01), new OrderBookImpl(instrumentId));
+        }
+
+        for (long instrumentId : instrumentIds) {
+            InstrumentRegistry.Entry entry = registry.get(instrumentId);
+            long previous = 0;
+
+            for (int i = 0; i < 3000; i++) { // more than one block
+                long orderId = entry.nextOrderId();
+                assertTrue(orderId > previous);
+                assertEquals(entry.getShard(), orderId & 3);
+                previous = orderId;
+            }
+            // the id routes to its book
+            long orderId = entry.nextOrderId();
+            assertSame(entry, registry.getOrderBookEntry(orderId));
+        }
+        // earlier ids still route to their books after the others took blocks, ids of retired books do not
+        long firstOrderId = 1L << 2 | registry.get(instrumentIds[0]).getShard();
+        assertSame(registry.get(instrumentIds[0]), registry.getOrderBookEntry(firstOrderId));
+        InstrumentRegistry.Entry retired = registry.retire(instrumentIds[0]);
+        assertNotSame(retired, registry.getOrderBookEntry(firstOrderId));
+
+        // a batch takes contiguous ids, one larger than a block gets a block of its own
+        InstrumentRegistry.Entry batchEntry = registry.get(instrumentIds[1]);
+        for (int count : new int[]{10, 5000}) {
+            long[] orderIds = new long[count];
+            batchEntry.nextOrderIds(orderIds, count);
+            for (int i = 1; i < count; i++) {
+                assertEquals(orderIds[i - 1] + 4, orderIds[i]);
+            }
+            assertSame(batchEntry, registry.getOrderBookEntry(orderIds[count - 1]));
+        }
+
+        // continues above recorded ids and restored sequences
+        InstrumentRegistry restored = new InstrumentRegistry(4);
+        restored.create(new Instrument(1, 0.01), new OrderBookImpl(1));
+        int shard = restored.get(1).getShard();
+        restored.markOrderIdUsed(restored.get(1), 5000L << 2 | shard);
+        assertSame(restored.get(1), restored.getOrderBookEntry(5000L << 2 | shard));
+        assertTrue(restored.get(1).nextOrderId() >>> 2 > 5000);
+        assertEquals(5000 + 1024, restored.getOrderSequence());
+
+        restored.advanceOrderSequence(10_000);
+        restored.create(new Instrument(2, 0.01), new OrderBookImpl(2));
+        assertTrue(restored.get(2).nextOrderId() >>> 2 > 10_000);
+    }
+}
@@ -0,0 +1,96 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+import com.acme.orderbook.book.OrderBookImpl;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BookQueueTest {
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTasksInSubmissionOrderOneAtATime() {
+        executor = Executors.newFixedThreadPool(4);
+        BookQueue queue = new BookQueue(new OrderBookImpl(1), executor);
+        List<Integer> executed = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            futures.add(queue.submit(book -> {
+                boolean alone = running.incrementAndGet() == 1;
+                executed.add(n);
+                running.decrementAndGet();
+                return alone;
+            }));
+        }
+        futures.forEach(f -> assertTrue(f.join()));
+
+        assertEquals(1000, executed.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, executed.get(i).intValue());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testLongQueueHandsBackThread() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        BookQueue hot = new BookQueue(new OrderBookImpl(1), executor);
+        BookQueue other = new BookQueue(new OrderBookImpl(2), executor);
+        CountDownLatch release = new CountDownLatch(1);
+
+        hot.submit(book -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        for (int i = 0; i < 199; i++) {
+            hot.submit(OrderBook::isOpen);
+        }
+        CompletableFuture<Integer> otherResult = other.submit(book -> hot.size());
+        release.countDown();
+
+        // the other book ran after the first batch of the hot book, not after all of it
+        assertTrue(otherResult.join() > 0);
+        assertTrue(hot.submit(OrderBook::isOpen).join());
+    }
+
+    @Test
+    public void testFailures() {
+        executor = Executors.newSingleThreadExecutor();
+        BookQueue queue = new BookQueue(new OrderBookImpl(1), executor);
+
+        CompletableFuture<Boolean> error = queue.submit(book -> {
+            throw new AssertionError("failed");
+        });
+        assertTrue(queue.submit(OrderBook::isOpen).join());
+        assertTrue(error.isCompletedExceptionally());
+
+        // a rejected drain fails the task and leaves the queue empty
+        executor.shutdown();
+        CompletableFuture<Boolean> rejected = queue.submit(OrderBook::isOpen);
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,130 @@
+package com.acme.orderbook.sequencer;
+
+import com.acme.orderbook.book.OrderBook;
+import com.acme.orderbook.book.OrderBookImpl;
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OrderBookSequencerTest {
+
+    private OrderBookSequencer sequencer;
+
+    @Before
+    public void setup() {
+        sequencer = new OrderBookSequencer(2, 64);
+    }
+
+    @After
+    public void tearDown() {
+        sequencer.shutdown();
+    }
+
+    @Test
+    public void testCommandsOfOneInstrumentInSubmissionOrder() {
+        OrderBook orderBook = new OrderBookImpl(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 1; i <= 1000; i++) {
+            Order order = new Order(1, i, LocalDateTime.now(), 10, 5000 + i % 7);
+            futures.add(sequencer.submit(1, orderBook, book -> {
+                book.addOrder(order);
+                return null;
+            }));
+        }
+        sequencer.submit(1, orderBook, book -> {
+            book.close();
+            return null;
+        });
+        sequencer.submit(1, orderBook, book -> {
+            book.addExecution(new Execution(1, 1000, 5000));
+            return null;
+        });
+        Statistics statistics = sequencer.submit(1, orderBook, OrderBook::generateStatistics).join();
+
+        futures.forEach(f -> assertTrue(f.isDone()));
+        assertEquals(1000, statistics.getActiveOrders());
+        assertEquals(5000, statistics.getLastExecutionPrice());
+    }
+
+    @Test
+    public void testBatchListenerRunsBeforeCompletion() {
+        AtomicInteger batches = new AtomicInteger();
+        OrderBookSequencer listenedSequencer = new OrderBookSequencer(1, 64, batches::incrementAndGet);
+        OrderBook orderBook = new OrderBookImpl(1);
+
+        for (int i = 1; i <= 100; i++) {
+            Order order = new Order(1, i, LocalDateTime.now(), 10, 5000);
+            int batchesSeen = listenedSequencer.submit(1, orderBook, book -> {
+                book.addOrder(order);
+                return null;
+            }).thenApply(v -> batches.get()).join();
+
+            assertTrue(batchesSeen >= 1);
+        }
+        assertTrue(batches.get() <= 100);
+        listenedSequencer.shutdown();
+    }
+
+    @Test
+    public void testFailurePropagated() {
+        OrderBook orderBook = new OrderBookImpl(1);
+
+        CompletableFuture<Void> future = sequencer.submit(1, orderBook, book -> {
+            book.addExecution(new Execution(1, 10, 5000));
+            return null;
+        });
+        try {
+            future.join();
+            fail("execution must not be accepted by an open book");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // the worker keeps running after a failed command
+        assertTrue(sequencer.submit(1, orderBook, OrderBook::isOpen).join());
+    }
+
+    @Test
+    public void testTrySubmitRejectedWhenFull() throws Exception {
+        OrderBook orderBook = new OrderBookImpl(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        sequencer.submit(1, orderBook, book -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        blocked.await();
+
+        for (int i = 0; i < 64; i++) {
+            sequencer.trySubmit(1, orderBook, OrderBook::isOpen);
+        }
+        try {
+            sequencer.trySubmit(1, orderBook, OrderBook::isOpen);
+            fail("ring buffer must be full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        release.countDown();
+        assertTrue(sequencer.submit(1, orderBook, OrderBook::isOpen).join());
+    }
+}
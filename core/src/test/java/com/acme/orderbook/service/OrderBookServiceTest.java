@@ -0,0 +1,231 @@
+package com.acme.orderbook.service;
+
+import com.acme.orderbook.journal.Journal;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.model.OrderPartialExecution;
+import com.acme.orderbook.store.TieredOrderStore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Restarts the service from its journal and snapshots and checks that the books come back as they were written.
+ */
+public class OrderBookServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<TieredOrderStore> orderStores = new ArrayList<>();
+
+    @After
+    public void closeOrderStores() {
+        orderStores.forEach(TieredOrderStore::close);
+    }
+
+    @Test
+    public void testRestartFromJournal() throws Exception {
+        for (int sequencerWorkers : new int[]{0, 2}) {
+            File journalDir = folder.newFolder();
+
+            // book 1 is on the heap, book 2 off-heap
+            OrderBookService service = service(journalDir, null, sequencerWorkers, 64);
+            List<Long> orderIds = writeCommands(service);
+            Map<Long, String> statistics = statistics(service, 1, 2);
+            Map<Long, Order> orders = orders(service, orderIds);
+            service.shutdown();
+
+            OrderBookService restarted = service(journalDir, null, sequencerWorkers, 64);
+            assertEquals(statistics, statistics(restarted, 1, 2));
+            assertSameOrders(orders, orders(restarted, orderIds));
+            restarted.open(1);
+            assertFalse(orderIds.contains(restarted.addOrder(1, 1, 5000)));
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    public void testRestartFromSnapshot() throws Exception {
+        File journalDir = folder.newFolder();
+        File snapshotDir = folder.newFolder();
+
+        OrderBookService service = service(journalDir, snapshotDir, 0, 64);
+        List<Long> orderIds = writeCommands(service);
+        service.writeSnapshot();
+
+        // after the snapshot, replayed from the journal
+        service.createInstrument(3, 0.01);
+        orderIds.add(service.addOrder(3, 7, 5000));
+        service.addExecution(1, 1, 4950);
+        Map<Long, String> statistics = statistics(service, 1, 2, 3);
+        Map<Long, Order> orders = orders(service, orderIds);
+        service.shutdown();
+
+        OrderBookService restarted = service(journalDir, snapshotDir, 0, 64);
+        assertEquals(statistics, statistics(restarted, 1, 2, 3));
+        assertSameOrders(orders, orders(restarted, orderIds));
+        restarted.shutdown();
+
+        // a second snapshot truncates the journal, the snapshot alone restores the books
+        restarted = service(journalDir, snapshotDir, 0, 64);
+        restarted.writeSnapshot();
+        restarted.shutdown();
+        for (File file : journalDir.listFiles((dir, name) -> name.startsWith("journal-"))) {
+            Files.delete(file.toPath());
+        }
+        restarted = service(journalDir, snapshotDir, 0, 64);
+        assertEquals(statistics, statistics(restarted, 1, 2, 3));
+        assertSameOrders(orders, orders(restarted, orderIds));
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testRetireThenReplay() throws Exception {
+        File journalDir = folder.newFolder();
+
+        OrderBookService service = service(journalDir, null, 0, 64);
+        service.createInstrument(5, 0.01);
+        List<Long> retiredOrderIds = new ArrayList<>();
+        retiredOrderIds.add(service.addOrder(5, 10, 4950));
+        retiredOrderIds.add(service.addOrder(5, 20, 5050));
+        service.close(5);
+        service.addExecution(5, 5, 5000);
+        service.retireInstrument(5);
+
+        // created again under the same id, the new book starts empty
+        service.createInstrument(5, 0.01);
+        long orderId = service.addOrder(5, 3, 5000);
+        Map<Long, String> statistics = statistics(service, 5);
+        Map<Long, Order> orders = orders(service, retiredOrderIds);
+        service.shutdown();
+
+        OrderBookService restarted = service(journalDir, null, 0, 64);
+        assertEquals(statistics, statistics(restarted, 5));
+        assertEquals(1, restarted.generateStatistics(5).getActiveOrders());
+        assertSameOrders(orders, orders(restarted, retiredOrderIds));
+        assertEquals(5, restarted.getOrder(orderId).getInstrumentId());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testOrderIdRoutingAcrossShards() throws Exception {
+        File journalDir = folder.newFolder();
+
+        // more instruments than shards, so shards hold several books
+        OrderBookService service = service(journalDir, null, 2, 4);
+        for (long instrumentId = 3; instrumentId <= 9; instrumentId++) {
+            service.createInstrument(instrumentId, 0.01, instrumentId % 2 == 0);
+        }
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            orderIds.add(service.addOrder(1 + i % 9, 1 + i, 4900 + i));
+        }
+        Map<Long, Order> orders = orders(service, orderIds);
+        for (int i = 0; i < orderIds.size(); i++) {
+            assertEquals(1 + i % 9, orders.get(orderIds.get(i)).getInstrumentId());
+        }
+        service.shutdown();
+
+        OrderBookService restarted = service(journalDir, null, 2, 4);
+        assertSameOrders(orders, orders(restarted, orderIds));
+        for (long instrumentId = 1; instrumentId <= 9; instrumentId++) {
+            long newOrderId = restarted.addOrder(instrumentId, 1, 5000);
+            assertFalse(orderIds.contains(newOrderId));
+            assertEquals(instrumentId, restarted.getOrder(newOrderId).getInstrumentId());
+        }
+        restarted.shutdown();
+    }
+
+    /**
+     * Orders on both books, executions and commands the books reject, returns the ids of the orders added.
+     */
+    private static List<Long> writeCommands(OrderBookService service) {
+        List<Long> orderIds = new ArrayList<>();
+        for (long instrumentId = 1; instrumentId <= 2; instrumentId++) {
+            orderIds.add(service.addOrder(instrumentId, 15, 4850));
+            orderIds.add(service.addOrder(instrumentId, 10, 4950));
+            orderIds.add(service.addOrder(instrumentId, 20, 5050));
+            for (long orderId : service.addOrders(instrumentId, new int[]{5, 8}, new long[]{5000, 4900}, 2)) {
+                orderIds.add(orderId);
+            }
+        }
+        assertRejected(() -> service.addExecution(1, 10, 4950)); // book still open
+
+        service.close(1);
+        service.addExecution(1, 10, 4950);
+        assertRejected(() -> service.addOrder(1, 1, 5000)); // book closed
+        service.close(2);
+        service.addExecution(2, 43, 4950); // executes the book, the invalid orders are canceled
+        assertRejected(() -> service.addExecution(2, 1, 4950));
+        return orderIds;
+    }
+
+    private static void assertRejected(Runnable command) {
+        try {
+            command.run();
+            fail("command not rejected");
+        } catch (IllegalStateException expected) {
+            // journaled all the same
+        }
+    }
+
+    private OrderBookService service(File journalDir, File snapshotDir, int sequencerWorkers, int registryShards) {
+        TieredOrderStore orderStore = new TieredOrderStore();
+        orderStores.add(orderStore);
+        return new OrderBookService(new PerformanceMetrics(), orderStore, "1,2", "2", 0.01, Integer.MAX_VALUE, registryShards,
+                sequencerWorkers, 1024, 4, 1024, journalDir.getPath(), Journal.SyncPolicy.NONE, 0,
+                snapshotDir != null ? snapshotDir.getPath() : "");
+    }
+
+    private static Map<Long, String> statistics(OrderBookService service, long... instrumentIds) {
+        Map<Long, String> statistics = new HashMap<>();
+        for (long instrumentId : instrumentIds) {
+            statistics.put(instrumentId, service.generateStatistics(instrumentId).toString());
+        }
+        return statistics;
+    }
+
+    private static Map<Long, Order> orders(OrderBookService service, List<Long> orderIds) {
+        Map<Long, Order> orders = new HashMap<>();
+        for (long orderId : orderIds) {
+            Order order = service.getOrder(orderId);
+            assertNotNull("order " + orderId, order);
+            orders.put(orderId, order);
+        }
+        return orders;
+    }
+
+    /**
+     * Execution dates are taken when the execution is applied, so only whether an order was executed is compared.
+     */
+    private static void assertSameOrders(Map<Long, Order> expected, Map<Long, Order> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((orderId, order) -> {
+            Order other = actual.get(orderId);
+            assertEquals(order.getInstrumentId(), other.getInstrumentId());
+            assertEquals(order.getEntryDate(), other.getEntryDate());
+            assertEquals(order.getQuantity(), other.getQuantity());
+            assertEquals(order.getLimitPrice(), other.getLimitPrice());
+            assertEquals(order.getExecutedQuantity(), other.getExecutedQuantity());
+            assertEquals(order.getExecutionDate() != null, other.getExecutionDate() != null);
+
+            List<OrderPartialExecution> partials = order.getPartialExecutions();
+            List<OrderPartialExecution> otherPartials = other.getPartialExecutions();
+            assertEquals("partial executions of order " + orderId, partials.size(), otherPartials.size());
+            for (int i = 0; i < partials.size(); i++) {
+                assertEquals(partials.get(i).getQuantity(), otherPartials.get(i).getQuantity());
+                assertEquals(partials.get(i).getPrice(), otherPartials.get(i).getPrice());
+            }
+        });
+    }
+}
@@ -0,0 +1,172 @@
+package com.acme.orderbook.store;
+
+import com.acme.orderbook.book.OrderArchive;
+import com.acme.orderbook.book.OrderBookImpl;
+import com.acme.orderbook.model.Execution;
+import com.acme.orderbook.model.Order;
+import com.acme.orderbook.snapshot.BookSnapshot;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TieredOrderStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFallThroughTiers() {
+        TieredOrderStore orderStore = new TieredOrderStore(1, "", 1024);
+        OrderBookImpl orderBook = new OrderBookImpl(1, orderStore);
+
+        orderBook.addOrder(new Order(1, 1, LocalDateTime.now(), 15, 4850));
+        orderBook.addOrder(new Order(1, 2, LocalDateTime.now(), 10, 4950));
+        orderBook.addOrder(new Order(1, 3, LocalDateTime.now(), 20, 5050));
+        orderBook.addOrder(new Order(1, 4, LocalDateTime.now(), 5, Order.MARKET_PRICE));
+        orderBook.close();
+
+        String statistics = orderBook.generateStatistics().toString();
+        orderBook.addExecution(new Execution(1, 34, 4950));
+
+        // orders 2 and 3 get their full demand rounded up, they are executed and archived without entering the cache
+        assertEquals(2, orderStore.getArchivedCount());
+        assertEquals(0, orderStore.getCachedCount());
+        assertNotEquals(statistics, orderBook.generateStatistics().toString());
+
+        Order order = orderStore.get(2);
+        assertEquals(2, order.getOrderId());
+        assertEquals(1, order.getInstrumentId());
+        assertEquals(4950, order.getLimitPrice());
+        assertTrue(order.isExecuted());
+        assertNotNull(order.getExecutionDate());
+        assertEquals(1, order.getPartialExecutions().size());
+        assertEquals(4950, order.getPartialExecutions().get(0).getPrice());
+        assertEquals(1, orderStore.getCachedCount());
+
+        assertTrue(orderBook.getOrder(3).isExecuted()); // falls through to the archive
+        assertEquals(4, orderBook.getOrder(4).getExecutedQuantity()); // still in the book's columns
+        assertNull(orderStore.get(5));
+        assertNull(new OrderBookImpl(2, orderStore).getOrder(2)); // the archive is shared, the order is not of book 2
+
+        // executes the market order, the invalid order is canceled
+        orderBook.addExecution(new Execution(1, 1, 4950));
+        assertTrue(orderBook.isExecuted());
+        assertEquals(4, orderStore.getArchivedCount());
+
+        Order canceled = orderStore.get(1);
+        assertEquals(0, canceled.getExecutedQuantity());
+        assertNull(canceled.getExecutionDate());
+        assertEquals(2, canceled.getPartialExecutions().size());
+
+        // the released orders are read back from the archive, their histories are written as partials
+        BookSnapshot snapshot = orderBook.snapshot();
+        assertEquals(4, snapshot.getOrderCount());
+        assertEquals(0, snapshot.getFillOffsets()[4]);
+        assertEquals(6, snapshot.getPartialOffsets()[4]);
+
+        TieredOrderStore restoredStore = new TieredOrderStore(16, "", 1024);
+        OrderBookImpl restored = new OrderBookImpl(snapshot, restoredStore);
+        assertEquals(orderBook.generateStatistics().toString(), restored.generateStatistics().toString());
+        assertEquals(4, restoredStore.getArchivedCount());
+        assertEquals(2, restoredStore.get(4).getPartialExecutions().size());
+        assertEquals(orderBook.getOrder(1).toString(), restored.getOrder(1).toString());
+
+        orderStore.close();
+        restoredStore.close();
+    }
+
+    /**
+     * The archived orders leave the book's columns, the book behaves like one that keeps them.
+     */
+    @Test
+    public void testEvictedOrders() {
+        Random random = new Random(7);
+        TieredOrderStore orderStore = new TieredOrderStore(64, "", 1 << 16);
+        OrderBookImpl archivingBook = new OrderBookImpl(1, orderStore);
+        OrderBookImpl keepingBook = new OrderBookImpl(1);
+
+        for (int i = 0; i < 2000; i++) {
+            long orderId = i % 2 == 0 ? i : 10_000 - i; // out of order, the book indexes the ids
+            int quantity = 1 + random.nextInt(50);
+            long limitPrice = random.nextInt(10) == 0 ? Order.MARKET_PRICE : 4900 + random.nextInt(200);
+            LocalDateTime entryDate = LocalDateTime.now();
+            archivingBook.addOrder(new Order(1, orderId, entryDate, quantity, limitPrice));
+            keepingBook.addOrder(new Order(1, orderId, entryDate, quantity, limitPrice));
+        }
+        archivingBook.close();
+        keepingBook.close();
+
+        while (!keepingBook.isExecuted()) {
+            Execution execution = new Execution(1, 1 + random.nextInt(5000), 4950 + random.nextInt(100));
+            archivingBook.addExecution(execution);
+            keepingBook.addExecution(execution);
+            assertEquals(keepingBook.generateStatistics().toString(), archivingBook.generateStatistics().toString());
+
+            for (long orderId : new long[]{0, 9_999, 1000, 9_001, 1998, 8_003}) {
+                assertSameOrder(keepingBook.getOrder(orderId), archivingBook.getOrder(orderId));
+            }
+        }
+        assertEquals(2000, orderStore.getArchivedCount());
+
+        BookSnapshot snapshot = archivingBook.snapshot();
+        assertEquals(2000, snapshot.getOrderCount());
+        OrderBookImpl restored = new OrderBookImpl(snapshot);
+        assertEquals(keepingBook.generateStatistics().toString(), restored.generateStatistics().toString());
+        assertEquals(archivingBook.getOrder(9_999).toString(), restored.getOrder(9_999).toString());
+
+        orderStore.close();
+    }
+
+    @Test
+    public void testMappedSegments() throws Exception {
+        File dir = folder.newFolder();
+        CompactOrderTier tier = new CompactOrderTier(dir.toPath(), 1024, 2);
+
+        for (int i = 1; i <= 1000; i++) {
+            Order order = new Order(1, i, LocalDateTime.now(), 10, 5000 + i);
+            for (int p = 0; p < i % 5; p++) {
+                order.addPartialExecution(p == 0 ? 1 : 0, 5000);
+            }
+            tier.add(OrderArchive.FinishedOrder.of(order));
+        }
+        // a record larger than a segment gets a segment of its own
+        Order large = new Order(1, 1001, LocalDateTime.now(), 10, 5000);
+        for (int p = 0; p < 100; p++) {
+            large.addPartialExecution(0, 6000);
+        }
+        tier.add(OrderArchive.FinishedOrder.of(large));
+
+        assertEquals(1001, tier.size());
+        assertTrue(dir.listFiles().length > 2);
+
+        for (int i = 1; i <= 1000; i++) {
+            Order order = tier.get(i);
+            assertEquals(5000 + i, order.getLimitPrice());
+            assertEquals(i % 5, order.getPartialExecutions().size());
+            assertEquals(i % 5 > 0 ? 1 : 0, order.getExecutedQuantity());
+        }
+        assertEquals(100, tier.get(1001).getPartialExecutions().size());
+        assertNull(tier.get(1002));
+
+        tier.close();
+        assertEquals(0, dir.listFiles().length);
+        assertNull(tier.get(1));
+    }
+
+    private void assertSameOrder(Order expected, Order actual) {
+        assertEquals(expected.getEntryDate(), actual.getEntryDate());
+        assertEquals(expected.getExecutedQuantity(), actual.getExecutedQuantity());
+        assertEquals(expected.getExecutionDate() == null, actual.getExecutionDate() == null);
+        assertEquals(expected.getPartialExecutions().size(), actual.getPartialExecutions().size());
+        for (int i = 0; i < expected.getPartialExecutions().size(); i++) {
+            assertEquals(expected.getPartialExecutions().get(i).getQuantity(), actual.getPartialExecutions().get(i).getQuantity());
+            assertEquals(expected.getPartialExecutions().get(i).getPrice(), actual.getPartialExecutions().get(i).getPrice());
+        }
+    }
+}